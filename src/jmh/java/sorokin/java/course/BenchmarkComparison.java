@@ -0,0 +1,188 @@
+package sorokin.java.course;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Compares two JMH result files written with -rf json, e.g. the runs of two commits:
+// java -cp target/benchmarks.jar sorokin.java.course.BenchmarkComparison jmh-results/<base>.json jmh-results/<new>.json
+// A change is only marked when it is larger than the two error margins together.
+public class BenchmarkComparison {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: BenchmarkComparison <baseline.json> <candidate.json>");
+            System.exit(2);
+        }
+        Map<String, Result> baseline = read(Path.of(args[0]));
+        Map<String, Result> candidate = read(Path.of(args[1]));
+
+        System.out.printf("%-90s %14s %14s %9s%n", "benchmark", "baseline", "candidate", "change");
+        for (var entry : candidate.entrySet()) {
+            Result after = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s  %s%n", entry.getKey(), "-", after.score, "new", after.unit);
+                continue;
+            }
+            double change = (after.score - before.score) / before.score * 100;
+            boolean significant = Math.abs(after.score - before.score) > before.error + after.error;
+            boolean better = after.higherIsBetter() == after.score > before.score;
+            String verdict = !significant ? "" : better ? "  better" : "  WORSE";
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s%s%n",
+                    entry.getKey(), before.score, after.score, change, after.unit, verdict);
+        }
+        baseline.keySet().stream()
+                .filter(it -> !candidate.containsKey(it))
+                .forEach(it -> System.out.printf("%-90s %14.3f %14s %9s%n", it, baseline.get(it).score, "-", "removed"));
+    }
+
+    private record Result(String mode, double score, double error, String unit) {
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Result> read(Path file) throws IOException {
+        List<Object> runs = (List<Object>) new JsonParser(Files.readString(file)).parseValue();
+        Map<String, Result> results = new TreeMap<>();
+        for (Object run : runs) {
+            Map<String, Object> fields = (Map<String, Object>) run;
+            Map<String, Object> params = (Map<String, Object>) fields.getOrDefault("params", Map.of());
+            Map<String, Object> metric = (Map<String, Object>) fields.get("primaryMetric");
+            String mode = (String) fields.get("mode");
+            String key = fields.get("benchmark") + new TreeMap<>(params).toString() + " " + mode + " threads=" + ((Double) fields.get("threads")).intValue();
+            double error = metric.get("scoreError") instanceof Double value && !value.isNaN() ? value : 0;
+            results.put(key, new Result(mode, (Double) metric.get("score"), error, (String) metric.get("scoreUnit")));
+        }
+        return results;
+    }
+
+    // Just enough JSON for JMH result files: objects, arrays, strings, numbers, literals.
+    private static final class JsonParser {
+
+        private final String text;
+        private int position;
+
+        private JsonParser(String text) {
+            this.text = text;
+        }
+
+        private Object parseValue() {
+            skipWhitespace();
+            char c = text.charAt(position);
+            return switch (c) {
+                case '{' -> parseObject();
+                case '[' -> parseArray();
+                case '"' -> parseString();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> parseNumber();
+            };
+        }
+
+        private Map<String, Object> parseObject() {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == '}') {
+                position++;
+                return fields;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = parseString();
+                skipWhitespace();
+                expect(':');
+                fields.put(name, parseValue());
+                skipWhitespace();
+                if (text.charAt(position++) == '}') {
+                    return fields;
+                }
+            }
+        }
+
+        private List<Object> parseArray() {
+            List<Object> values = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == ']') {
+                position++;
+                return values;
+            }
+            while (true) {
+                values.add(parseValue());
+                skipWhitespace();
+                if (text.charAt(position++) == ']') {
+                    return values;
+                }
+            }
+        }
+
+        private String parseString() {
+            expect('"');
+            var value = new StringBuilder();
+            char c;
+            while ((c = text.charAt(position++)) != '"') {
+                if (c == '\\') {
+                    char escaped = text.charAt(position++);
+                    switch (escaped) {
+                        case 'n' -> value.append('\n');
+                        case 't' -> value.append('\t');
+                        case 'r' -> value.append('\r');
+                        case 'b' -> value.append('\b');
+                        case 'f' -> value.append('\f');
+                        case 'u' -> {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                            position += 4;
+                        }
+                        default -> value.append(escaped);
+                    }
+                } else {
+                    value.append(c);
+                }
+            }
+            return value.toString();
+        }
+
+        private Object parseNumber() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            // JMH writes "NaN" for a missing error margin.
+            if (start == position && text.startsWith("\"NaN\"", position)) {
+                position += 5;
+                return Double.NaN;
+            }
+            return Double.parseDouble(text.substring(start, position));
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, position)) {
+                throw new IllegalArgumentException("Unexpected JSON at offset " + position);
+            }
+            position += word.length();
+            return value;
+        }
+
+        private void expect(char c) {
+            if (text.charAt(position++) != c) {
+                throw new IllegalArgumentException("Expected '%s' at offset %s".formatted(c, position - 1));
+            }
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package sorokin.java.course;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Time to first command of a short batch job: from starting the JVM to the first output line of
+// TOTALS run with --batch, and to the exit of the process. Each configuration is the java arguments
+// that start Main, configurations are separated by --, and runs go round-robin so that noise of the
+// machine hits all of them alike. Every run starts from an empty journal and history.
+// mvn -Paot,bench package && java -cp target/benchmarks.jar sorokin.java.course.StartupTime 20 \
+//     -jar target/spring-bank-1.0-SNAPSHOT.jar -- \
+//     -XX:SharedArchiveFile=target/spring-bank.jsa -Dspring.aot.enabled=true -jar target/spring-bank-1.0-SNAPSHOT.jar
+public class StartupTime {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: StartupTime <runs> <java args> [-- <java args> ...]");
+            System.exit(2);
+        }
+        int runs = Integer.parseInt(args[0]);
+        List<List<String>> configurations = new ArrayList<>();
+        configurations.add(new ArrayList<>());
+        for (String arg : Arrays.asList(args).subList(1, args.length)) {
+            if (arg.equals("--")) {
+                configurations.add(new ArrayList<>());
+            } else {
+                configurations.getLast().add(arg);
+            }
+        }
+
+        long[][] firstCommand = new long[configurations.size()][runs];
+        long[][] exit = new long[configurations.size()][runs];
+        // One unmeasured round warms up the page cache.
+        for (int run = -1; run < runs; run++) {
+            for (int i = 0; i < configurations.size(); i++) {
+                long[] times = startOnce(configurations.get(i));
+                if (run >= 0) {
+                    firstCommand[i][run] = times[0];
+                    exit[i][run] = times[1];
+                }
+            }
+        }
+
+        int width = configurations.stream().mapToInt(it -> String.join(" ", it).length()).max().orElse(0);
+        String format = "%-" + width + "s %22s %22s%n";
+        System.out.printf(format, "configuration", "first command, ms", "exit, ms");
+        System.out.printf(format, "", "min / median / max", "min / median / max");
+        for (int i = 0; i < configurations.size(); i++) {
+            System.out.printf(format, String.join(" ", configurations.get(i)), summary(firstCommand[i]), summary(exit[i]));
+        }
+    }
+
+    private static long[] startOnce(List<String> javaArgs) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("startup-time");
+        try {
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.add("-Djournal.directory=" + directory.resolve("journal"));
+            command.add("-Dhistory.directory=" + directory.resolve("history"));
+            command.addAll(javaArgs);
+            command.add("--batch");
+            command.add("-");
+
+            long startedAt = System.nanoTime();
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            try (OutputStream input = process.getOutputStream()) {
+                input.write("TOTALS\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            long firstLineAt = 0;
+            try (var output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = output.readLine();
+                firstLineAt = System.nanoTime();
+                if (line == null || !line.startsWith("Money in accounts")) {
+                    throw new IllegalStateException("Unexpected output of %s: %s".formatted(command, line));
+                }
+                while (output.readLine() != null) {
+                    // drained so that the process is not blocked on a full pipe
+                }
+            }
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("%s exited with %d".formatted(command, process.exitValue()));
+            }
+            long exitedAt = System.nanoTime();
+            return new long[]{firstLineAt - startedAt, exitedAt - startedAt};
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(it -> it.toFile().delete());
+            }
+        }
+    }
+
+    private static String summary(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return "%d / %d / %d".formatted(sorted[0] / 1_000_000, sorted[sorted.length / 2] / 1_000_000,
+                sorted[sorted.length - 1] / 1_000_000);
+    }
+}
@@ -0,0 +1,82 @@
+package sorokin.java.course.account;
+
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.user.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hammers a single account from many threads and checks that no update was lost, also with the
+// account configured as hot: 8 slots, so withdrawals often have to gather from several of them.
+// java -cp target/benchmarks.jar sorokin.java.course.account.AccountContentionStress [threads] [opsPerThread]
+public class AccountContentionStress {
+
+    private static final int INITIAL_AMOUNT = 500;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        boolean ok = run("object", new ObjectAccountStore(), threads, opsPerThread);
+        ok &= run("primitive", new PrimitiveAccountStore(), threads, opsPerThread);
+        ok &= run("object-hot", new ObjectAccountStore(new HotAccounts(new int[]{1}, 8)), threads, opsPerThread);
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean run(String storeName, AccountStore store, int threads, int opsPerThread)
+            throws InterruptedException {
+        var accountService = AccountServices.locking(new AccountProperties(INITIAL_AMOUNT, 0, 0, 0), store, LedgerJournal.disabled());
+        int hotAccountId = accountService.createAccount(new User(1, "merchant", List.of())).getId();
+        var deposited = new LongAdder();
+        var withdrawn = new LongAdder();
+        var start = new CountDownLatch(1);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                awaitQuietly(start);
+                var random = ThreadLocalRandom.current();
+                for (int i = 0; i < opsPerThread; i++) {
+                    int amount = random.nextInt(1, 100);
+                    if (random.nextBoolean()) {
+                        accountService.deposit(hotAccountId, amount);
+                        deposited.add(amount);
+                    } else {
+                        try {
+                            accountService.withdraw(hotAccountId, amount);
+                            withdrawn.add(amount);
+                        } catch (IllegalArgumentException insufficientFunds) {
+                            // expected when the balance runs low
+                        }
+                    }
+                }
+            }));
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+
+        long expected = INITIAL_AMOUNT + deposited.sum() - withdrawn.sum();
+        long actual = accountService.findAccountById(hotAccountId).orElseThrow().getMoneyAmount();
+        System.out.printf("%-10s threads=%d ops=%,d time=%d ms expected=%d actual=%d %s%n",
+                storeName, threads, (long) threads * opsPerThread, elapsedMillis, expected, actual,
+                expected == actual ? "OK" : "LOST UPDATES");
+        return expected == actual;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
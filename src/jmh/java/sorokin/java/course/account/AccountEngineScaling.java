@@ -0,0 +1,126 @@
+package sorokin.java.course.account;
+
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.user.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Transfer throughput of the locking and the sharded engine for 1, 2, 4 ... maxThreads callers.
+// Accounts are closed now and then while transfers run, and every run checks that no money was
+// created or lost and that the running total of BankTotals agrees. The sharded engine gets one
+// shard per CPU.
+// java -cp target/benchmarks.jar sorokin.java.course.account.AccountEngineScaling [maxThreads] [accounts] [seconds]
+public class AccountEngineScaling {
+
+    private static final long INITIAL_AMOUNT = 1_000_000;
+    private static final int ACCOUNTS_PER_USER = 4;
+    private static final int CLOSE_EVERY = 50_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int shards = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("cpus=%d accounts=%,d seconds=%d%n", shards, accounts, seconds);
+        System.out.printf("%-8s %8s %14s %14s%n", "threads", "engine", "transfers/s", "money");
+        boolean ok = true;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ok &= run("locking", threads, accounts, seconds, 0);
+            ok &= run("sharded", threads, accounts, seconds, shards);
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean run(String engineName, int threads, int accounts, int seconds, int shards)
+            throws InterruptedException {
+        var properties = new AccountProperties(INITIAL_AMOUNT, 0, 0, 0);
+        var store = new ObjectAccountStore();
+        var totals = new BankTotals();
+        ShardedAccountEngine shardedEngine = shards > 0
+                ? new ShardedAccountEngine(store, LedgerJournal.disabled(), AccountHistory.disabled(), totals, properties, shards)
+                : null;
+        try {
+            var accountService = shardedEngine != null
+                    ? AccountServices.sharded(properties, store, LedgerJournal.disabled(), shardedEngine, totals)
+                    : AccountServices.locking(properties, store, LedgerJournal.disabled());
+            for (int userId = 1; userId <= accounts / ACCOUNTS_PER_USER; userId++) {
+                var user = new User(userId, "user" + userId, List.of());
+                for (int i = 0; i < ACCOUNTS_PER_USER; i++) {
+                    accountService.createAccount(user);
+                }
+            }
+            int accountCount = store.size();
+            long expectedMoney = accountCount * INITIAL_AMOUNT;
+
+            var completed = new LongAdder();
+            var start = new CountDownLatch(1);
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(Thread.ofPlatform().start(() -> {
+                    awaitQuietly(start);
+                    var random = ThreadLocalRandom.current();
+                    long done = 0;
+                    for (int i = 1; (i & 1023) != 0 || System.nanoTime() < deadline; i++) {
+                        if (i % CLOSE_EVERY == 0) {
+                            closeQuietly(accountService, random.nextInt(1, accountCount + 1));
+                        }
+                        int from = random.nextInt(1, accountCount + 1);
+                        int to = random.nextInt(1, accountCount + 1);
+                        if (accountService.tryTransfer(from, to, random.nextInt(1, 100)) == TransferStatus.COMPLETED) {
+                            done++;
+                        }
+                    }
+                    completed.add(done);
+                }));
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            long actualMoney = 0;
+            for (int accountId = 1; accountId <= accountCount; accountId++) {
+                Account account = store.get(accountId);
+                if (account != null) {
+                    actualMoney += account.getMoneyAmount();
+                }
+            }
+            // The running total has to agree with the walk once the workers are done.
+            long totalBalance = accountService.getTotals().getTotalBalance();
+            boolean conserved = actualMoney == expectedMoney && totalBalance == actualMoney;
+            System.out.printf("%-8d %8s %,14d %14s%n", threads, engineName, completed.sum() / seconds,
+                    actualMoney != expectedMoney ? "LOST " + (expectedMoney - actualMoney)
+                            : totalBalance != actualMoney ? "TOTAL OFF BY " + (totalBalance - actualMoney) : "OK");
+            return conserved;
+        } finally {
+            if (shardedEngine != null) {
+                shardedEngine.close();
+            }
+        }
+    }
+
+    private static void closeQuietly(AccountService accountService, int accountId) {
+        try {
+            accountService.closeAccount(accountId);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // already closed, or the last account of its user
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
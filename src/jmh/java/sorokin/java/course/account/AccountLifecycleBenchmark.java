@@ -0,0 +1,71 @@
+package sorokin.java.course.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sorokin.java.course.user.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Creating and closing accounts changes the store, so each iteration is a fixed batch of
+// operations (single shot) instead of a timed loop that would grow the store without bound.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = AccountLifecycleBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = AccountLifecycleBenchmark.BATCH)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class AccountLifecycleBenchmark {
+
+    static final int BATCH = 10_000;
+
+    @Param({"1000", "100000", "10000000"})
+    private int accounts;
+
+    @Param({"object", "primitive"})
+    private String store;
+
+    private AccountService accountService;
+    private int[] accountsToClose;
+    private int nextToClose;
+    private int nextUserId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountService = AccountServiceBenchmark.populatedService(store, accounts, 500);
+        accountsToClose = new int[BATCH];
+    }
+
+    // Every user already owns two accounts, so each extra one can be closed.
+    @Setup(Level.Iteration)
+    public void openAccountsToClose() {
+        int users = accounts / AccountServiceBenchmark.ACCOUNTS_PER_USER;
+        for (int i = 0; i < BATCH; i++) {
+            int userId = i % users + 1;
+            accountsToClose[i] = accountService.createAccount(new User(userId, "user" + userId, List.of())).getId();
+        }
+        nextToClose = 0;
+    }
+
+    @Benchmark
+    public Account createAccount() {
+        int users = accounts / AccountServiceBenchmark.ACCOUNTS_PER_USER;
+        int userId = nextUserId++ % users + 1;
+        return accountService.createAccount(new User(userId, "user" + userId, List.of()));
+    }
+
+    @Benchmark
+    public Account closeAccount() {
+        return accountService.closeAccount(accountsToClose[nextToClose++]);
+    }
+}
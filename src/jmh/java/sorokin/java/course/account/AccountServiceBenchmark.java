@@ -0,0 +1,115 @@
+package sorokin.java.course.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.user.User;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Steady-state money movement on a populated store. Balances start high and every operation moves
+// a single unit, so no benchmark runs into insufficient funds and the store size never changes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class AccountServiceBenchmark {
+
+    static final int ACCOUNTS_PER_USER = 2;
+    static final int INITIAL_AMOUNT = 1_000_000_000;
+
+    @Param({"1000", "100000", "10000000"})
+    private int accounts;
+
+    @Param({"object", "primitive"})
+    private String store;
+
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountService = populatedService(store, accounts, INITIAL_AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transfer() {
+        doTransfer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferContended() {
+        doTransfer();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void depositWithdraw() {
+        doDepositWithdraw();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void depositWithdrawContended() {
+        doDepositWithdraw();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<Account> getUserAccounts() {
+        return accountService.getUserAccounts(ThreadLocalRandom.current().nextInt(1, accounts / ACCOUNTS_PER_USER + 1));
+    }
+
+    private void doTransfer() {
+        var random = ThreadLocalRandom.current();
+        int from = random.nextInt(1, accounts + 1);
+        int to = random.nextInt(1, accounts);
+        accountService.transfer(from, to >= from ? to + 1 : to, 1);
+    }
+
+    private void doDepositWithdraw() {
+        int accountId = ThreadLocalRandom.current().nextInt(1, accounts + 1);
+        accountService.deposit(accountId, 1);
+        accountService.withdraw(accountId, 1);
+    }
+
+    static AccountService populatedService(String store, int accounts, long initialAmount) {
+        return populatedService(store, accounts, initialAmount, LedgerJournal.disabled());
+    }
+
+    static AccountService populatedService(String store, int accounts, long initialAmount, LedgerJournal journal) {
+        AccountStore accountStore = switch (store) {
+            case "object" -> new ObjectAccountStore();
+            case "primitive" -> new PrimitiveAccountStore();
+            default -> throw new IllegalArgumentException("Unknown account store: " + store);
+        };
+        var accountService = AccountServices.locking(new AccountProperties(initialAmount, 200, 0, 0), accountStore, journal);
+        openAccounts(accountService, accounts);
+        return accountService;
+    }
+
+    static void openAccounts(AccountService accountService, int accounts) {
+        for (int userId = 1; userId <= accounts / ACCOUNTS_PER_USER; userId++) {
+            var user = new User(userId, "user" + userId, List.of());
+            for (int i = 0; i < ACCOUNTS_PER_USER; i++) {
+                accountService.createAccount(user);
+            }
+        }
+    }
+}
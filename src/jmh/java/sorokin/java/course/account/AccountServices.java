@@ -0,0 +1,40 @@
+package sorokin.java.course.account;
+
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.metrics.BankMetrics;
+
+// Wires an AccountService outside of Spring the same way ApplicationConfiguration does, without history.
+public final class AccountServices {
+
+    private static final int LOCK_STRIPES = 1024;
+    static final int IDEMPOTENCY_KEYS = 100_000;
+    private static final long IDEMPOTENCY_TTL_SECONDS = 600;
+
+    private AccountServices() {
+    }
+
+    public static AccountService locking(AccountProperties properties, AccountStore store, LedgerJournal journal) {
+        var locks = new AccountLocks(LOCK_STRIPES);
+        var totals = new BankTotals();
+        return new AccountService(properties, store, locks,
+                new LockingAccountEngine(store, locks, journal, AccountHistory.disabled(), totals, properties), journal,
+                AccountHistory.disabled(), idempotencyCache(), totals, new BankMetrics(8));
+    }
+
+    public static IdempotencyCache idempotencyCache() {
+        return new IdempotencyCache(IDEMPOTENCY_KEYS, IDEMPOTENCY_TTL_SECONDS);
+    }
+
+    // The caller owns the engine and must close it; the engine has to update the same totals.
+    public static AccountService sharded(
+            AccountProperties properties,
+            AccountStore store,
+            LedgerJournal journal,
+            ShardedAccountEngine engine,
+            BankTotals totals
+    ) {
+        return new AccountService(properties, store, new AccountLocks(LOCK_STRIPES), engine, journal,
+                AccountHistory.disabled(), idempotencyCache(), totals, new BankMetrics(8));
+    }
+}
@@ -0,0 +1,33 @@
+package sorokin.java.course.account;
+
+import java.util.function.Supplier;
+
+// java -Xmx8g -cp target/benchmarks.jar sorokin.java.course.account.AccountStoreFootprint 50000000
+public class AccountStoreFootprint {
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        measure("hashmap", HashMapAccountStore::new, accounts);
+        measure("object", ObjectAccountStore::new, accounts);
+        measure("primitive", PrimitiveAccountStore::new, accounts);
+    }
+
+    private static void measure(String name, Supplier<AccountStore> storeFactory, int accounts) {
+        long before = usedHeap();
+        AccountStore store = storeFactory.get();
+        for (int id = 1; id <= accounts; id++) {
+            store.add(id, id / 2 + 1, 500);
+        }
+        long after = usedHeap();
+        System.out.printf("%-10s accounts=%,d heap=%,d MB (%.1f bytes/account)%n",
+                name, store.size(), (after - before) >> 20, (double) (after - before) / accounts);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,126 @@
+package sorokin.java.course.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.journal.FsyncPolicy;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.journal.MappedLedgerJournal;
+import sorokin.java.course.metrics.BankMetrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// The same transfers through the blocking API and through AsyncAccountService with WINDOW of them
+// in flight, on both engines, without a journal and with journals forcing every record or every
+// 10 ms. Scores are transfers per second. Set -Djournal.bench.dir to put the journal on a specific device.
+// java -jar target/benchmarks.jar AsyncAccountServiceBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class AsyncAccountServiceBenchmark {
+
+    private static final int ACCOUNTS = 100_000;
+    private static final int WINDOW = 1024;
+
+    @Param({"locking", "sharded"})
+    private String engine;
+
+    @Param({"disabled", "PER_OP", "INTERVAL"})
+    private String journal;
+
+    private Path directory;
+    private LedgerJournal ledgerJournal;
+    private ShardedAccountEngine shardedEngine;
+    private AccountService accountService;
+    private AsyncAccountService asyncAccountService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (journal.equals("disabled")) {
+            ledgerJournal = LedgerJournal.disabled();
+        } else {
+            Path parent = Path.of(System.getProperty("journal.bench.dir", System.getProperty("java.io.tmpdir")));
+            directory = Files.createTempDirectory(parent, "async-bench");
+            ledgerJournal = new MappedLedgerJournal(directory, 64 << 20, FsyncPolicy.valueOf(journal), 1, 10);
+        }
+        if (engine.equals("sharded")) {
+            var properties = new AccountProperties(AccountServiceBenchmark.INITIAL_AMOUNT, 200, 0, 0);
+            var store = new ObjectAccountStore();
+            var totals = new BankTotals();
+            shardedEngine = new ShardedAccountEngine(store, ledgerJournal, AccountHistory.disabled(), totals, properties,
+                    Runtime.getRuntime().availableProcessors());
+            accountService = AccountServices.sharded(properties, store, ledgerJournal, shardedEngine, totals);
+            AccountServiceBenchmark.openAccounts(accountService, ACCOUNTS);
+        } else {
+            accountService = AccountServiceBenchmark.populatedService("object", ACCOUNTS, AccountServiceBenchmark.INITIAL_AMOUNT, ledgerJournal);
+        }
+        asyncAccountService = new AsyncAccountService(accountService, new BankMetrics(8), 1 << 16, 256);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        asyncAccountService.close();
+        if (shardedEngine != null) {
+            shardedEngine.close();
+        }
+        ledgerJournal.close();
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(it -> it.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(WINDOW)
+    public void blocking() {
+        var random = ThreadLocalRandom.current();
+        for (int i = 0; i < WINDOW; i++) {
+            accountService.tryTransfer(random.nextInt(1, ACCOUNTS / 2 + 1), random.nextInt(ACCOUNTS / 2 + 1, ACCOUNTS + 1), 1);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(WINDOW)
+    public void blockingFourThreads() {
+        blocking();
+    }
+
+    // Batches are completed in queue order, so the last future completes last.
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(WINDOW)
+    public TransferStatus pipelined() {
+        var random = ThreadLocalRandom.current();
+        CompletableFuture<TransferStatus> last = null;
+        for (int i = 0; i < WINDOW; i++) {
+            last = asyncAccountService.transferAsync(random.nextInt(1, ACCOUNTS / 2 + 1), random.nextInt(ACCOUNTS / 2 + 1, ACCOUNTS + 1), 1);
+        }
+        return last.join();
+    }
+}
@@ -0,0 +1,62 @@
+package sorokin.java.course.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// What keeping the totals adds to one transfer between users, and what reading them costs. For the
+// whole transfer path compare AccountServiceBenchmark.transfer before and after with BenchmarkComparison.
+// java -jar target/benchmarks.jar BankTotalsBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BankTotalsBenchmark {
+
+    private static final int USERS = 50_000;
+
+    private BankTotals totals;
+
+    @Setup
+    public void setUp() {
+        totals = new BankTotals();
+        for (int userId = 1; userId <= USERS; userId++) {
+            totals.accountOpened(userId, 1_000_000);
+        }
+    }
+
+    @Benchmark
+    public void transferred() {
+        var random = ThreadLocalRandom.current();
+        totals.transferred(random.nextInt(1, USERS + 1), random.nextInt(1, USERS + 1), 100, 98);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferred4Threads() {
+        transferred();
+    }
+
+    @Benchmark
+    public long totalBalance() {
+        return totals.getTotalBalance();
+    }
+
+    @Benchmark
+    public long userBalance() {
+        return totals.getUserBalance(ThreadLocalRandom.current().nextInt(1, USERS + 1));
+    }
+}
@@ -0,0 +1,60 @@
+package sorokin.java.course.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// The credited-amount arithmetic of a cross-user transfer in isolation: the basis-point integer
+// formula used by AccountService against the double formula it replaced.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommissionBenchmark {
+
+    private static final int AMOUNTS = 1024;
+
+    private final long[] amounts = new long[AMOUNTS];
+    private final int basisPoints = 200;
+    private final double commission = 0.02;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < AMOUNTS; i++) {
+            amounts[i] = ThreadLocalRandom.current().nextLong(1, 1_000_000_000L);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AMOUNTS)
+    public long basisPoints() {
+        long sum = 0;
+        for (long amount : amounts) {
+            sum += amount - TransferCommission.commission(amount, basisPoints);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AMOUNTS)
+    public long doubleRound() {
+        long sum = 0;
+        for (long amount : amounts) {
+            sum += Math.round(amount * (1 - commission));
+        }
+        return sum;
+    }
+}
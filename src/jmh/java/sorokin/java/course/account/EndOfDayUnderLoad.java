@@ -0,0 +1,117 @@
+package sorokin.java.course.account;
+
+import sorokin.java.course.journal.FsyncPolicy;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.journal.MappedLedgerJournal;
+import sorokin.java.course.user.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Runs end of day (1 bp interest, fee 3) over all accounts, first alone and then while writers transfer
+// money, and checks that the money that exists is the initial total plus what end of day credited minus
+// what it charged (there is no transfer commission), in a snapshot as well as in BankTotals.
+// With "journal" every adjustment is also written to a journal in a temporary directory.
+// java -Xmx4g -cp target/benchmarks.jar sorokin.java.course.account.EndOfDayUnderLoad [accounts] [writers] [object|primitive] [journal]
+public class EndOfDayUnderLoad {
+
+    private static final long INITIAL_AMOUNT = 100_000;
+    private static final int ACCOUNTS_PER_USER = 4;
+    private static final int INTEREST_BPS = 1;
+    private static final long FEE = 3;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        AccountStore store = args.length > 2 && args[2].equals("object") ? new ObjectAccountStore() : new PrimitiveAccountStore();
+        boolean journaled = args.length > 3 && args[3].equals("journal");
+
+        Path directory = Files.createTempDirectory("end-of-day");
+        try (LedgerJournal journal = journaled
+                ? new MappedLedgerJournal(directory, 256 << 20, FsyncPolicy.INTERVAL, 0, 100)
+                : LedgerJournal.disabled()) {
+            var accountService = AccountServices.locking(new AccountProperties(INITIAL_AMOUNT, 0, INTEREST_BPS, FEE),
+                    store, journal);
+            long startedAt = System.nanoTime();
+            for (int userId = 1; userId <= accounts / ACCOUNTS_PER_USER; userId++) {
+                var user = new User(userId, "user" + userId, List.of());
+                for (int i = 0; i < ACCOUNTS_PER_USER; i++) {
+                    accountService.createAccount(user);
+                }
+            }
+            System.out.printf("opened %,d accounts in %.1f s, store=%s, journal=%s%n", store.size(),
+                    (System.nanoTime() - startedAt) / 1e9, store.getClass().getSimpleName(), journaled);
+
+            long expectedTotal = store.size() * INITIAL_AMOUNT;
+            boolean consistent = true;
+            for (int round = 0; round < 3; round++) {
+                BulkAdjustmentResult result = accountService.endOfDay();
+                expectedTotal += result.credited() - result.charged();
+                consistent &= check(accountService, expectedTotal);
+                print("alone", result, 0, 0);
+            }
+            for (int round = 0; round < 3; round++) {
+                var transfers = new LongAdder();
+                var stop = new AtomicBoolean();
+                int accountCount = store.size();
+                List<Thread> workers = new ArrayList<>();
+                for (int t = 0; t < writers; t++) {
+                    workers.add(Thread.ofPlatform().start(() -> {
+                        var random = ThreadLocalRandom.current();
+                        long done = 0;
+                        while (!stop.get()) {
+                            int from = random.nextInt(1, accountCount + 1);
+                            int to = random.nextInt(1, accountCount + 1);
+                            if (accountService.tryTransfer(from, to, random.nextInt(1, 100)) == TransferStatus.COMPLETED) {
+                                done++;
+                            }
+                        }
+                        transfers.add(done);
+                    }));
+                }
+                Thread.sleep(200);
+                BulkAdjustmentResult result = accountService.endOfDay();
+                stop.set(true);
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+                expectedTotal += result.credited() - result.charged();
+                consistent &= check(accountService, expectedTotal);
+                print("with " + writers + " writers", result, transfers.sum(), result.elapsedNanos() + 200_000_000L);
+            }
+            System.out.println(consistent ? "OK" : "INCONSISTENT");
+            if (!consistent) {
+                System.exit(1);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(it -> it.toFile().delete());
+            }
+        }
+    }
+
+    private static boolean check(AccountService accountService, long expectedTotal) {
+        long inSnapshot = accountService.snapshot().getTotalBalance();
+        long inTotals = accountService.getTotals().getTotalBalance();
+        if (inSnapshot != expectedTotal || inTotals != expectedTotal) {
+            System.out.printf("expected=%d snapshot=%d totals=%d%n", expectedTotal, inSnapshot, inTotals);
+            return false;
+        }
+        return true;
+    }
+
+    private static void print(String label, BulkAdjustmentResult result, long transfers, long transferNanos) {
+        System.out.printf("%-16s accounts=%,d changed=%,d credited=%,d charged=%,d time=%.2f s (%.0f ns/account)%s%n",
+                label, result.accounts(), result.changed(), result.credited(), result.charged(),
+                result.elapsedNanos() / 1e9, (double) result.elapsedNanos() / Math.max(1, result.accounts()),
+                transfers == 0 ? "" : ", transfers/s=%,d".formatted((long) (transfers / (transferNanos / 1e9))));
+    }
+}
@@ -0,0 +1,57 @@
+package sorokin.java.course.account;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// The ConcurrentHashMap<Integer, Account> store the service used before ObjectAccountStore, kept only as
+// the baseline for AccountStoreFootprint.
+public class HashMapAccountStore implements AccountStore {
+
+    private final Map<Integer, Account> accountMap;
+
+    public HashMapAccountStore() {
+        this.accountMap = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Account add(int accountId, int userId, long moneyAmount) {
+        Account account = new Account(accountId, userId, moneyAmount);
+        accountMap.put(accountId, account);
+        return account;
+    }
+
+    @Override
+    public Account get(int accountId) {
+        return accountMap.get(accountId);
+    }
+
+    @Override
+    public boolean contains(int accountId) {
+        return accountMap.containsKey(accountId);
+    }
+
+    @Override
+    public boolean remove(int accountId) {
+        return accountMap.remove(accountId) != null;
+    }
+
+    @Override
+    public int size() {
+        return accountMap.size();
+    }
+
+    @Override
+    public void forEach(Consumer<Account> action) {
+        accountMap.values().forEach(action);
+    }
+
+    @Override
+    public void readRange(int firstAccountId, int[] userIds, long[] balances) {
+        for (int i = 0; i < userIds.length; i++) {
+            Account account = accountMap.get(firstAccountId + i);
+            userIds[i] = account == null ? 0 : account.getUserId();
+            balances[i] = account == null ? 0 : account.getMoneyAmount();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package sorokin.java.course.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.user.User;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Deposits and transfers whose target account follows a Zipf distribution: account N gets a share
+// proportional to 1 / N^skew. Of 100K accounts the top 8 take ~7% of the operations at skew 0.8 and
+// ~46% at skew 1.2. With hot=true these 8 accounts are configured as hot. Sources of transfers are
+// uniform over the other accounts. Compare hot=false and hot=true at 4 threads on a machine with at
+// least 4 CPUs; on fewer the threads take turns and there is little contention to relieve.
+// java -jar target/benchmarks.jar HotAccountBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotAccountBenchmark {
+
+    private static final int ACCOUNTS = 100_000;
+    private static final int HOT_ACCOUNTS = 8;
+    private static final int TARGETS = 1 << 20;
+
+    @Param({"0.8", "1.2"})
+    private double skew;
+
+    @Param({"false", "true"})
+    private boolean hot;
+
+    private AccountService accountService;
+    private int[] targets;
+
+    @Setup
+    public void setUp() {
+        AccountStore store = hot
+                ? new ObjectAccountStore(new HotAccounts(IntStream.rangeClosed(1, HOT_ACCOUNTS).toArray(), 0))
+                : new ObjectAccountStore();
+        accountService = AccountServices.locking(new AccountProperties(AccountServiceBenchmark.INITIAL_AMOUNT, 200, 0, 0),
+                store, LedgerJournal.disabled());
+        for (int userId = 1; userId <= ACCOUNTS / AccountServiceBenchmark.ACCOUNTS_PER_USER; userId++) {
+            var user = new User(userId, "user" + userId, List.of());
+            for (int i = 0; i < AccountServiceBenchmark.ACCOUNTS_PER_USER; i++) {
+                accountService.createAccount(user);
+            }
+        }
+        targets = zipfTargets(skew);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void deposit() {
+        accountService.deposit(target(), 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void deposit4Threads() {
+        deposit();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransferStatus transfer() {
+        int from = ThreadLocalRandom.current().nextInt(HOT_ACCOUNTS + 1, ACCOUNTS + 1);
+        return accountService.tryTransfer(from, target(), 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public TransferStatus transfer4Threads() {
+        return transfer();
+    }
+
+    // The withdrawal finds the deposit in the caller's own slot of a hot account.
+    @Benchmark
+    @Threads(4)
+    public void depositWithdraw4Threads() {
+        int accountId = target();
+        accountService.deposit(accountId, 1);
+        accountService.withdraw(accountId, 1);
+    }
+
+    private int target() {
+        return targets[ThreadLocalRandom.current().nextInt(TARGETS)];
+    }
+
+    // Account ids at evenly spaced points of the inverse CDF, so that a uniform pick from the table is a Zipf draw.
+    private static int[] zipfTargets(double skew) {
+        double[] cumulative = new double[ACCOUNTS + 1];
+        for (int rank = 1; rank <= ACCOUNTS; rank++) {
+            cumulative[rank] = cumulative[rank - 1] + 1 / Math.pow(rank, skew);
+        }
+        int[] result = new int[TARGETS];
+        int rank = 1;
+        for (int i = 0; i < TARGETS; i++) {
+            double point = (i + 0.5) / TARGETS * cumulative[ACCOUNTS];
+            while (cumulative[rank] < point) {
+                rank++;
+            }
+            result[i] = rank;
+        }
+        return result;
+    }
+}
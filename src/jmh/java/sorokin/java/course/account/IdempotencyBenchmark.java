@@ -0,0 +1,88 @@
+package sorokin.java.course.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Transfers without a key, with a new key each (a sustained stream of keys, so the cache is full
+// and evicts on every call) and retries of one key. Keys are built up front so that only the cache
+// is measured; there are many more of them than the cache holds, and its size is checked after.
+// java -jar target/benchmarks.jar IdempotencyBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class IdempotencyBenchmark {
+
+    private static final int ACCOUNTS = 100_000;
+    private static final int KEYS = 1 << 20;
+
+    private AccountService accountService;
+    private String[] keys;
+    private AtomicInteger nextKey;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountService = AccountServiceBenchmark.populatedService("object", ACCOUNTS, AccountServiceBenchmark.INITIAL_AMOUNT);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "request-" + i;
+        }
+        nextKey = new AtomicInteger();
+    }
+
+    @TearDown(Level.Trial)
+    public void checkBounded() {
+        int size = accountService.getIdempotencyKeyCount();
+        if (size > AccountServices.IDEMPOTENCY_KEYS) {
+            throw new IllegalStateException("idempotency cache holds %s keys, limit is %s".formatted(size, AccountServices.IDEMPOTENCY_KEYS));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransferStatus withoutKey() {
+        return transfer(null);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransferStatus newKey() {
+        return transfer(keys[nextKey.getAndIncrement() & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public TransferStatus newKeyContended() {
+        return newKey();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransferStatus retriedKey() {
+        return accountService.tryTransfer(1, 2, 1, "retried");
+    }
+
+    private TransferStatus transfer(String key) {
+        var random = ThreadLocalRandom.current();
+        int from = random.nextInt(1, ACCOUNTS + 1);
+        int to = random.nextInt(1, ACCOUNTS);
+        return accountService.tryTransfer(from, to >= from ? to + 1 : to, 1, key);
+    }
+}
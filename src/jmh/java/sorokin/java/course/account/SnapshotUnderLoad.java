@@ -0,0 +1,122 @@
+package sorokin.java.course.account;
+
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.user.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Takes snapshots while writers transfer money and close accounts, and checks that every snapshot
+// holds exactly the money that exists (there is no commission, so the total never changes).
+// Prints writer throughput without and with snapshots, and how long a snapshot takes.
+// java -cp target/benchmarks.jar sorokin.java.course.account.SnapshotUnderLoad [accounts] [writers] [snapshotIntervalMs] [seconds]
+public class SnapshotUnderLoad {
+
+    private static final long INITIAL_AMOUNT = 1_000_000;
+    private static final int ACCOUNTS_PER_USER = 4;
+    private static final int CLOSE_EVERY = 50_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long intervalMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        run(accounts, writers, seconds, -1);
+        if (!run(accounts, writers, seconds, intervalMillis)) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean run(int accounts, int writers, int seconds, long intervalMillis) throws InterruptedException {
+        var store = new ObjectAccountStore();
+        var accountService = AccountServices.locking(new AccountProperties(INITIAL_AMOUNT, 0, 0, 0), store, LedgerJournal.disabled());
+        for (int userId = 1; userId <= accounts / ACCOUNTS_PER_USER; userId++) {
+            var user = new User(userId, "user" + userId, List.of());
+            for (int i = 0; i < ACCOUNTS_PER_USER; i++) {
+                accountService.createAccount(user);
+            }
+        }
+        int accountCount = store.size();
+        long expectedTotal = accountCount * INITIAL_AMOUNT;
+
+        var transfers = new LongAdder();
+        var start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                awaitQuietly(start);
+                var random = ThreadLocalRandom.current();
+                long done = 0;
+                for (int i = 1; (i & 1023) != 0 || System.nanoTime() < deadline; i++) {
+                    if (i % CLOSE_EVERY == 0) {
+                        closeQuietly(accountService, random.nextInt(1, accountCount + 1));
+                    }
+                    int from = random.nextInt(1, accountCount + 1);
+                    int to = random.nextInt(1, accountCount + 1);
+                    if (accountService.tryTransfer(from, to, random.nextInt(1, 100)) == TransferStatus.COMPLETED) {
+                        done++;
+                    }
+                }
+                transfers.add(done);
+            }));
+        }
+
+        start.countDown();
+        boolean consistent = true;
+        int snapshots = 0;
+        long totalSnapshotNanos = 0;
+        long maxSnapshotNanos = 0;
+        if (intervalMillis >= 0) {
+            while (System.nanoTime() < deadline) {
+                long startedAt = System.nanoTime();
+                AccountSnapshot snapshot = accountService.snapshot();
+                long elapsed = System.nanoTime() - startedAt;
+                snapshots++;
+                totalSnapshotNanos += elapsed;
+                maxSnapshotNanos = Math.max(maxSnapshotNanos, elapsed);
+                long total = snapshot.getTotalBalance();
+                if (total != expectedTotal) {
+                    System.out.printf("snapshot %d: total=%d expected=%d%n", snapshot.getVersion(), total, expectedTotal);
+                    consistent = false;
+                }
+                Thread.sleep(intervalMillis);
+            }
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (intervalMillis < 0) {
+            System.out.printf("no snapshots:       accounts=%,d writers=%d transfers/s=%,d%n",
+                    accountCount, writers, transfers.sum() / seconds);
+        } else {
+            System.out.printf("snapshot every %dms: accounts=%,d writers=%d transfers/s=%,d snapshots=%d "
+                            + "avg=%.1f ms max=%.1f ms %s%n",
+                    intervalMillis, accountCount, writers, transfers.sum() / seconds, snapshots,
+                    snapshots == 0 ? 0 : totalSnapshotNanos / 1e6 / snapshots, maxSnapshotNanos / 1e6,
+                    consistent ? "OK" : "INCONSISTENT");
+        }
+        return consistent;
+    }
+
+    private static void closeQuietly(AccountService accountService, int accountId) {
+        try {
+            accountService.closeAccount(accountId);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // already closed, or the last account of its user
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package sorokin.java.course.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Run with -prof gc: gc.alloc.rate.norm is the number of bytes allocated per transfer attempt.
+// java -jar target/benchmarks.jar TransferAllocation -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class TransferAllocationBenchmark {
+
+    @Param({"100000"})
+    private int accounts;
+
+    @Param({"object", "primitive"})
+    private String store;
+
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountService = AccountServiceBenchmark.populatedService(store, accounts, AccountServiceBenchmark.INITIAL_AMOUNT);
+    }
+
+    @Benchmark
+    public TransferStatus tryTransferCompleted() {
+        var random = ThreadLocalRandom.current();
+        int from = random.nextInt(1, accounts + 1);
+        int to = random.nextInt(1, accounts);
+        return accountService.tryTransfer(from, to >= from ? to + 1 : to, 1);
+    }
+
+    @Benchmark
+    public TransferStatus tryTransferInsufficientFunds() {
+        var random = ThreadLocalRandom.current();
+        int from = random.nextInt(1, accounts + 1);
+        int to = random.nextInt(1, accounts);
+        return accountService.tryTransfer(from, to >= from ? to + 1 : to, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public TransferStatus tryTransferNoSuchAccount() {
+        return accountService.tryTransfer(ThreadLocalRandom.current().nextInt(1, accounts + 1), accounts + 1, 1);
+    }
+
+    // The exception-based API on the same rejection, for comparison.
+    @Benchmark
+    public Exception transferInsufficientFunds() {
+        var random = ThreadLocalRandom.current();
+        int from = random.nextInt(1, accounts + 1);
+        int to = random.nextInt(1, accounts);
+        try {
+            accountService.transfer(from, to >= from ? to + 1 : to, Integer.MAX_VALUE);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package sorokin.java.course.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.user.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class UserAccountsLookupBenchmark {
+
+    private static final int ACCOUNTS_PER_USER = 2;
+
+    @Param({"1000000"})
+    private int accounts;
+
+    private int users;
+    private AccountService accountService;
+    private Map<Integer, Account> scannedAccountMap;
+
+    @Setup
+    public void setUp() {
+        users = accounts / ACCOUNTS_PER_USER;
+        accountService = AccountServices.locking(new AccountProperties(500, 200, 0, 0), new ObjectAccountStore(), LedgerJournal.disabled());
+        scannedAccountMap = new HashMap<>();
+        for (int userId = 1; userId <= users; userId++) {
+            var user = new User(userId, "user" + userId, new ArrayList<>());
+            for (int i = 0; i < ACCOUNTS_PER_USER; i++) {
+                Account account = accountService.createAccount(user);
+                scannedAccountMap.put(account.getId(), account);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Account> indexedLookup() {
+        return accountService.getUserAccounts(randomUserId());
+    }
+
+    // The lookup AccountService used before the userId index: a filter over every account.
+    @Benchmark
+    public List<Account> fullScanLookup() {
+        Integer userId = randomUserId();
+        return scannedAccountMap.values().stream()
+                .filter(it -> userId.equals(it.getUserId()))
+                .toList();
+    }
+
+    private int randomUserId() {
+        return ThreadLocalRandom.current().nextInt(1, users + 1);
+    }
+}
@@ -0,0 +1,86 @@
+package sorokin.java.course.history;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// record: one history entry, including the share of spill writes of full rings.
+// recentStatement: the entries of the last 10 ms of one account, served from its ring.
+// fullStatement: an account's whole history, most of it read back from the spill file.
+// java -jar target/benchmarks.jar AccountHistoryBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountHistoryBenchmark {
+
+    private static final int ENTRIES_PER_ACCOUNT = 1_000;
+
+    @Param({"10000"})
+    private int accounts;
+
+    @Param({"64"})
+    private int entriesInMemory;
+
+    private Path directory;
+    private SpillingAccountHistory history;
+    private int accountId;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("history-bench");
+        history = new SpillingAccountHistory(directory, entriesInMemory, false);
+        for (int i = 0; i < ENTRIES_PER_ACCOUNT; i++) {
+            for (int id = 1; id <= accounts; id++) {
+                history.record(id, HistoryEntryType.DEPOSIT, 0, i, i);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        history.close();
+        Files.deleteIfExists(directory.resolve(SpillingAccountHistory.SPILL_FILE));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void record() {
+        accountId = accountId == accounts ? 1 : accountId + 1;
+        history.record(accountId, HistoryEntryType.TRANSFER_IN, 1, 100, 100);
+    }
+
+    @Benchmark
+    public List<HistoryEntry> recentStatement() {
+        long now = System.currentTimeMillis();
+        return history.statement(randomAccountId(), now - 10, now);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<HistoryEntry> fullStatement() {
+        return history.statement(randomAccountId(), 0, Long.MAX_VALUE);
+    }
+
+    private int randomAccountId() {
+        return ThreadLocalRandom.current().nextInt(1, accounts + 1);
+    }
+}
@@ -0,0 +1,78 @@
+package sorokin.java.course.journal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Set -Djournal.bench.dir=/path/on/the/disk/under/test to benchmark a specific device.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerJournalBenchmark {
+
+    @Param({"EVERY_N_OPS", "INTERVAL"})
+    private FsyncPolicy fsync;
+
+    @Param({"1000"})
+    private int fsyncEveryOps;
+
+    @Param({"10"})
+    private long fsyncIntervalMillis;
+
+    private Path directory;
+    private MappedLedgerJournal journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path parent = Path.of(System.getProperty("journal.bench.dir", System.getProperty("java.io.tmpdir")));
+        directory = Files.createTempDirectory(parent, "journal-bench");
+        journal = new MappedLedgerJournal(directory, 64 << 20, fsync, fsyncEveryOps, fsyncIntervalMillis);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(it -> it.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void deposit() {
+        journal.deposited(ThreadLocalRandom.current().nextInt(1, 1_000_000), 100);
+    }
+
+    @Benchmark
+    public void transfer() {
+        var random = ThreadLocalRandom.current();
+        journal.transferred(random.nextInt(1, 1_000_000), random.nextInt(1, 1_000_000), 100, 98);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferFourThreads() {
+        transfer();
+    }
+}
@@ -0,0 +1,75 @@
+package sorokin.java.course.journal;
+
+import sorokin.java.course.account.AccountProperties;
+import sorokin.java.course.account.AccountServices;
+import sorokin.java.course.account.PrimitiveAccountStore;
+import sorokin.java.course.user.UserService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+// Measures recovery of a ledger with a long history: a snapshot of N accounts plus a journal tail.
+// java -Xms8g -Xmx8g -cp target/benchmarks.jar sorokin.java.course.journal.SnapshotStartupTime 10000000 1000000
+public class SnapshotStartupTime {
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int tailOps = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Path directory = Files.createTempDirectory("snapshot-startup");
+        try {
+            prepare(directory, accounts, tailOps);
+            recover(directory);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(it -> it.toFile().delete());
+            }
+        }
+    }
+
+    private static void prepare(Path directory, int accounts, int tailOps) {
+        long startedAt = System.nanoTime();
+        try (var journal = new MappedLedgerJournal(directory, 64 << 20, FsyncPolicy.INTERVAL, 0, 100)) {
+            for (int accountId = 1; accountId <= accounts; accountId++) {
+                int userId = (accountId + 1) / 2;
+                if (accountId % 2 == 1) {
+                    journal.userCreated(userId, "user" + userId);
+                }
+                journal.accountCreated(accountId, userId, 500);
+            }
+            var random = ThreadLocalRandom.current();
+            for (int i = 0; i < accounts; i++) {
+                journal.deposited(random.nextInt(1, accounts + 1), 10);
+            }
+            journal.sealSegment();
+            var snapshotter = new LedgerSnapshotter(journal, properties(directory));
+            long snapshotStartedAt = System.nanoTime();
+            snapshotter.snapshot();
+            long snapshotMillis = (System.nanoTime() - snapshotStartedAt) / 1_000_000;
+
+            for (int i = 0; i < tailOps; i++) {
+                journal.transferred(random.nextInt(1, accounts + 1), random.nextInt(1, accounts + 1), 1, 1);
+            }
+            System.out.printf("history: %,d accounts, %,d deposits, %,d tail transfers; prepared in %d ms, snapshot took %d ms%n",
+                    accounts, accounts, tailOps, (System.nanoTime() - startedAt) / 1_000_000, snapshotMillis);
+        }
+    }
+
+    private static void recover(Path directory) {
+        var properties = properties(directory);
+        try (var journal = new MappedLedgerJournal(directory, 64 << 20, FsyncPolicy.INTERVAL, 0, 100)) {
+            var accountService = AccountServices.locking(new AccountProperties(500, 200, 0, 0), new PrimitiveAccountStore(), journal);
+            var userService = new UserService(accountService, journal);
+            long startedAt = System.nanoTime();
+            new JournalRecovery(journal, properties, userService, accountService).recover();
+            System.out.printf("recovery: %d ms%n", (System.nanoTime() - startedAt) / 1_000_000);
+        }
+    }
+
+    private static JournalProperties properties(Path directory) {
+        return new JournalProperties(true, directory, 64, FsyncPolicy.INTERVAL, 0, 100, 0, true);
+    }
+}
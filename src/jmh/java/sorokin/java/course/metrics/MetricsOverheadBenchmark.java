@@ -0,0 +1,68 @@
+package sorokin.java.course.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import sorokin.java.course.operations.ConsoleOperationType;
+
+import java.util.concurrent.TimeUnit;
+
+// What instrumentation adds to one operation: a timed service call plus the command counter of
+// the dispatcher. The budget is 50 ns; nanoTime shows what reading the clock costs on this machine.
+// java -jar target/benchmarks.jar MetricsOverheadBenchmark -p sampleEvery=1,8
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"1", "8"})
+    private int sampleEvery;
+
+    private OperationTimer timer;
+    private CommandCounter counter;
+    private LatencyHistogram histogram;
+    private long value;
+
+    @Setup
+    public void setUp() {
+        var bankMetrics = new BankMetrics(sampleEvery);
+        timer = bankMetrics.timer("benchmark");
+        counter = bankMetrics.command(ConsoleOperationType.ACCOUNT_TRANSFER);
+        histogram = new LatencyHistogram();
+    }
+
+    @Benchmark
+    public void instrumentedOperation() {
+        long startedAt = timer.start();
+        timer.stop(startedAt);
+        counter.completed();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void instrumentedOperation4Threads() {
+        instrumentedOperation();
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        histogram.record(value++ & 0xFFFFF);
+    }
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,179 @@
+package sorokin.java.course.server;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Closed-loop load against a running server (Main --server): every client is a virtual thread with
+// its own keep-alive connection, sending one DEPOSIT or TRANSFER per request and waiting for the
+// answer before the next one. HTTP is written by hand to keep the generator itself cheap.
+// java -cp target/benchmarks.jar sorokin.java.course.server.ServerLoadGenerator [url] [clients] [seconds] [accounts]
+public class ServerLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080/operations");
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int accounts = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        try (var connection = new Connection(uri)) {
+            connection.send(usersBody(accounts));
+        }
+
+        var rejected = new LongAdder();
+        var failed = new LongAdder();
+        var start = new CountDownLatch(1);
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+
+        List<Thread> workers = new ArrayList<>(clients);
+        long[] deadline = new long[1];
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            workers.add(Thread.ofVirtual().start(() -> {
+                var random = ThreadLocalRandom.current();
+                long[] samples = new long[1024];
+                int count = 0;
+                Connection connection = null;
+                try {
+                    connection = new Connection(uri);
+                    start.await();
+                    while (System.nanoTime() < deadline[0]) {
+                        String line = random.nextBoolean()
+                                ? "DEPOSIT %d 10\n".formatted(random.nextInt(1, accounts + 1))
+                                : "TRANSFER %d %d 1\n".formatted(random.nextInt(1, accounts + 1), random.nextInt(1, accounts + 1));
+                        long startedAt = System.nanoTime();
+                        if (!connection.send(line).startsWith("OK")) {
+                            rejected.increment();
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - startedAt;
+                    }
+                } catch (IOException e) {
+                    failed.increment();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (connection != null) {
+                        connection.close();
+                    }
+                    latencies[client] = samples;
+                    counts[client] = count;
+                }
+            }));
+        }
+        // Let every client connect before the clock starts.
+        Thread.sleep(Math.max(1000, clients / 10));
+        long startedAt = System.nanoTime();
+        deadline[0] = startedAt + seconds * 1_000_000_000L;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+
+        System.out.printf("clients=%d, requests=%d, rejected=%d, failed clients=%d, time=%.1f s, throughput=%.0f req/s%n",
+                clients, total, rejected.sum(), failed.sum(), elapsedSeconds, total / elapsedSeconds);
+        if (total > 0) {
+            System.out.printf("latency us: p50=%d, p99=%d, p999=%d, max=%d%n",
+                    percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), all[total - 1] / 1000);
+        }
+    }
+
+    private static String usersBody(int users) {
+        String prefix = "load-" + System.currentTimeMillis() + "-";
+        var body = new StringBuilder();
+        for (int i = 0; i < users; i++) {
+            body.append("USER ").append(prefix).append(i).append('\n');
+        }
+        return body.toString();
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1000;
+    }
+
+    private static final class Connection implements AutoCloseable {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final String requestHead;
+
+        private Connection(URI uri) throws IOException {
+            this.socket = new Socket(uri.getHost(), uri.getPort());
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+            this.requestHead = "POST " + uri.getPath() + " HTTP/1.1\r\nHost: " + uri.getHost() + "\r\nContent-Length: ";
+        }
+
+        private String send(String body) throws IOException {
+            byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+            byte[] head = (requestHead + bodyBytes.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            byte[] request = Arrays.copyOf(head, head.length + bodyBytes.length);
+            System.arraycopy(bodyBytes, 0, request, head.length, bodyBytes.length);
+            out.write(request);
+            return readResponse();
+        }
+
+        private String readResponse() throws IOException {
+            int contentLength = -1;
+            String headerLine;
+            while (!(headerLine = readLine()).isEmpty()) {
+                int colon = headerLine.indexOf(':');
+                if (colon > 0 && headerLine.substring(0, colon).equalsIgnoreCase("Content-Length")) {
+                    contentLength = Integer.parseInt(headerLine.substring(colon + 1).trim());
+                }
+            }
+            if (contentLength < 0) {
+                throw new IOException("response without Content-Length");
+            }
+            return new String(in.readNBytes(contentLength), StandardCharsets.UTF_8);
+        }
+
+        private String readLine() throws IOException {
+            var line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    throw new IOException("connection closed");
+                }
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
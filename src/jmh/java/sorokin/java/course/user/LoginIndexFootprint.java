@@ -0,0 +1,61 @@
+package sorokin.java.course.user;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Heap taken by the login index alone: the logins are created up front and are shared by all
+// variants, as they are shared with the User objects in UserService.
+// java -Xmx4g -cp target/benchmarks.jar sorokin.java.course.user.LoginIndexFootprint 10000000
+public class LoginIndexFootprint {
+
+    public static void main(String[] args) {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String[] loginsById = new String[logins + 1];
+        for (int id = 1; id <= logins; id++) {
+            loginsById[id] = "user" + id;
+        }
+
+        long before = usedHeap();
+        var index = new LoginIndex(id -> loginsById[id]);
+        for (int id = 1; id <= logins; id++) {
+            index.putIfAbsent(loginsById[id], id);
+        }
+        report("LoginIndex", before, logins);
+        check(index.get(loginsById[logins / 2]) == logins / 2);
+        index = null;
+
+        measureMap("HashMap", new HashMap<>(), loginsById);
+        measureMap("ConcurrentHashMap", new ConcurrentHashMap<>(), loginsById);
+    }
+
+    private static void measureMap(String name, Map<String, Integer> map, String[] loginsById) {
+        int logins = loginsById.length - 1;
+        long before = usedHeap();
+        for (int id = 1; id <= logins; id++) {
+            map.put(loginsById[id], id);
+        }
+        report(name, before, logins);
+        check(map.get(loginsById[logins / 2]) == logins / 2);
+    }
+
+    private static void report(String name, long before, int logins) {
+        long after = usedHeap();
+        System.out.printf("%-18s logins=%,d heap=%,d MB (%.1f bytes/login)%n",
+                name, logins, (after - before) >> 20, (double) (after - before) / logins);
+    }
+
+    private static void check(boolean found) {
+        if (!found) {
+            throw new IllegalStateException("lookup failed");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,92 @@
+package sorokin.java.course.user;
+
+import sorokin.java.course.account.AccountProperties;
+import sorokin.java.course.account.AccountServices;
+import sorokin.java.course.account.PrimitiveAccountStore;
+import sorokin.java.course.journal.FsyncPolicy;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.journal.MappedLedgerJournal;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Writes an import file of N users with 1-3 accounts each (the same file for a given N), then imports it
+// into a fresh UserService a few times and, for comparison, creates the same users one by one with
+// createUser. With "journal" the users and accounts are also written to a journal in a temporary directory.
+// java -Xmx4g -cp target/benchmarks.jar sorokin.java.course.user.UserImportTime [users] [rounds] [journal]
+public class UserImportTime {
+
+    private static final long SEED = 42;
+
+    public static void main(String[] args) throws IOException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        boolean journaled = args.length > 2 && args[2].equals("journal");
+
+        Path directory = Files.createTempDirectory("user-import");
+        try {
+            Path file = directory.resolve("users.csv");
+            writeImportFile(file, users);
+            System.out.printf("import file: %,d users, %,d MB, journal=%s%n", users, Files.size(file) >> 20, journaled);
+            for (int round = 1; round <= rounds; round++) {
+                try (LedgerJournal journal = journal(directory, journaled, round)) {
+                    UserService userService = userService(journal);
+                    UserImportResult result = userService.importUsers(file);
+                    long nanos = result.parseNanos() + result.commitNanos();
+                    System.out.printf("import   round %d: users=%,d accounts=%,d parse=%d ms commit=%d ms total=%d ms (%,d users/s)%n",
+                            round, result.users(), result.accounts(), result.parseNanos() / 1_000_000,
+                            result.commitNanos() / 1_000_000, nanos / 1_000_000, (long) (result.users() / (nanos / 1e9)));
+                }
+            }
+            try (LedgerJournal journal = journal(directory, journaled, 0)) {
+                UserService userService = userService(journal);
+                long startedAt = System.nanoTime();
+                for (int user = 1; user <= users; user++) {
+                    userService.createUser("user" + user);
+                }
+                long nanos = System.nanoTime() - startedAt;
+                System.out.printf("createUser one by one: users=%,d total=%d ms (%,d users/s), one default account each%n",
+                        users, nanos / 1_000_000, (long) (users / (nanos / 1e9)));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(it -> it.toFile().delete());
+            }
+        }
+    }
+
+    private static UserService userService(LedgerJournal journal) {
+        var accountService = AccountServices.locking(new AccountProperties(500, 200, 0, 0), new PrimitiveAccountStore(), journal);
+        return new UserService(accountService, journal);
+    }
+
+    private static LedgerJournal journal(Path directory, boolean journaled, int round) throws IOException {
+        if (!journaled) {
+            return LedgerJournal.disabled();
+        }
+        return new MappedLedgerJournal(Files.createDirectories(directory.resolve("journal-" + round)),
+                256 << 20, FsyncPolicy.INTERVAL, 0, 100);
+    }
+
+    private static void writeImportFile(Path file, int users) throws IOException {
+        var random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int user = 1; user <= users; user++) {
+                writer.write("User");
+                writer.write(Integer.toString(user));
+                int accounts = random.nextInt(4);
+                for (int i = 0; i < accounts; i++) {
+                    writer.write(',');
+                    writer.write(Long.toString(random.nextLong(1_000_000)));
+                }
+                writer.write('\n');
+            }
+        }
+    }
+}
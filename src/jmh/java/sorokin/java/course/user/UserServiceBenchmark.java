@@ -0,0 +1,77 @@
+package sorokin.java.course.user;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import sorokin.java.course.account.AccountProperties;
+import sorokin.java.course.account.AccountServices;
+import sorokin.java.course.account.ObjectAccountStore;
+import sorokin.java.course.journal.LedgerJournal;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class UserServiceBenchmark {
+
+    @Param({"1000", "100000", "5000000"})
+    private int users;
+
+    private UserService userService;
+    private int nextLogin;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var accountService = AccountServices.locking(new AccountProperties(500, 200, 0, 0), new ObjectAccountStore(), LedgerJournal.disabled());
+        userService = new UserService(accountService, LedgerJournal.disabled());
+        for (int i = 1; i <= users; i++) {
+            userService.createUser("user" + i);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public User findUserById() {
+        return userService.findUserById(ThreadLocalRandom.current().nextInt(1, users + 1));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public User findUserByIdContended() {
+        return userService.findUserById(ThreadLocalRandom.current().nextInt(1, users + 1));
+    }
+
+    // Mixed case, so the lookup goes through case folding like a login typed by a person.
+    @Benchmark
+    @Threads(1)
+    public User findUserByLogin() {
+        return userService.findUserByLogin("User" + ThreadLocalRandom.current().nextInt(1, users + 1)).orElseThrow();
+    }
+
+    // Grows the service by one user (and one account) per call; the store is already large
+    // enough that the extra users don't change what is being measured.
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = 10_000)
+    @Measurement(iterations = 10, batchSize = 10_000)
+    public User createUser() {
+        return userService.createUser("bench-user" + nextLogin++);
+    }
+}
@@ -1,13 +1,87 @@
 package sorokin.java.course;
 
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.ClassUtils;
+import sorokin.java.course.console.BatchOperationsRunner;
 import sorokin.java.course.console.OperationsConsoleListener;
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.journal.JournalRecovery;
+import sorokin.java.course.server.BankHttpServer;
+
+import java.io.PrintStream;
 
 public class Main {
-    public static void main(String[] args) {
-        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext("sorokin.java.course")) {
+
+    public static final String BASE_PACKAGE = "sorokin.java.course";
+
+    // Generated by BankAotProcessor in the aot profile.
+    private static final String AOT_INITIALIZER = "sorokin.java.course.Main__ApplicationContextInitializer";
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            configureHttpServer();
+        }
+        try (GenericApplicationContext context = createContext()) {
+            boolean batch = args.length > 0 && args[0].equals("--batch");
+            // Batch output goes to stdout, so the notes of the start go to stderr there.
+            reportStart(context, batch ? System.err : System.out);
+            if (batch) {
+                BatchOperationsRunner batchRunner = context.getBean(BatchOperationsRunner.class);
+                batchRunner.run(args.length > 1 ? args[1] : "-");
+                return;
+            }
+            if (args.length > 0 && args[0].equals("--server")) {
+                context.registerShutdownHook();
+                BankHttpServer server = context.getBean(BankHttpServer.class);
+                server.start();
+                server.awaitStop();
+                return;
+            }
             OperationsConsoleListener consoleListener = context.getBean(OperationsConsoleListener.class);
             consoleListener.runBank();
         }
     }
+
+    private static void reportStart(GenericApplicationContext context, PrintStream out) {
+        String historyNote = context.getBean(AccountHistory.class).getRestoreNote();
+        String journalNote = context.getBean(JournalRecovery.class).getRestoreNote();
+        if (historyNote != null) {
+            out.println(historyNote);
+        }
+        if (journalNote != null) {
+            out.println(journalNote);
+        }
+    }
+
+    // The JDK HTTP server reads these once, when its classes initialize, so they are set before anything
+    // else runs; the same -D flags on the command line win. Answers are small and written separately from
+    // the headers, and without TCP_NODELAY every exchange can stall on a delayed ACK (~40 ms). Above 200
+    // idle keep-alive connections (the JDK default) the server closes them, which would make most clients
+    // of a large pool reconnect on every request.
+    private static void configureHttpServer() {
+        System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+        System.getProperties().putIfAbsent("sun.net.httpserver.maxIdleConnections", "100000");
+    }
+
+    // With -Dspring.aot.enabled=true the beans are registered by generated code instead of a classpath scan.
+    private static GenericApplicationContext createContext() {
+        if (!AotDetector.useGeneratedArtifacts()) {
+            return new AnnotationConfigApplicationContext(BASE_PACKAGE);
+        }
+        if (!ClassUtils.isPresent(AOT_INITIALIZER, Main.class.getClassLoader())) {
+            throw new IllegalStateException("%s not found: build with mvn -Paot package or start without -D%s=true"
+                    .formatted(AOT_INITIALIZER, AotDetector.AOT_ENABLED));
+        }
+        GenericApplicationContext context = new GenericApplicationContext();
+        @SuppressWarnings("unchecked")
+        ApplicationContextInitializer<GenericApplicationContext> initializer = BeanUtils.instantiateClass(
+                ClassUtils.resolveClassName(AOT_INITIALIZER, Main.class.getClassLoader()), ApplicationContextInitializer.class);
+        initializer.initialize(context);
+        context.refresh();
+        return context;
+    }
 }
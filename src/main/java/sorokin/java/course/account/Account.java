@@ -1,12 +1,30 @@
 package sorokin.java.course.account;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public class Account {
 
+    // Stored in place of the balance once the account is closed, so that a
+    // concurrent credit or debit can never touch money that was moved away.
+    static final long CLOSED = Long.MIN_VALUE;
+    static final long INSUFFICIENT_FUNDS = -1;
+
+    private static final VarHandle MONEY_AMOUNT;
+
+    static {
+        try {
+            MONEY_AMOUNT = MethodHandles.lookup().findVarHandle(Account.class, "moneyAmount", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final int id;
     private final int userId;
-    private int moneyAmount;
+    private volatile long moneyAmount;
 
-    public Account(int id, int userId, int moneyAmount) {
+    public Account(int id, int userId, long moneyAmount) {
         this.id = id;
         this.userId = userId;
         this.moneyAmount = moneyAmount;
@@ -20,15 +38,108 @@ public class Account {
         return userId;
     }
 
-    public int getMoneyAmount() {
-        return moneyAmount;
+    public long getMoneyAmount() {
+        long current = getRawMoneyAmount();
+        return current == CLOSED ? 0 : current;
     }
 
-    public void setMoneyAmount(int moneyAmount) {
+    public void setMoneyAmount(long moneyAmount) {
         if (moneyAmount < 0) {
             throw new IllegalArgumentException("Attempted to set moneyAmount less than 0");
         }
-        this.moneyAmount = moneyAmount;
+        while (true) {
+            long current = getRawMoneyAmount();
+            if (current == CLOSED) {
+                throw new IllegalStateException("Account is closed: id=%s".formatted(id));
+            }
+            if (compareAndSetRawMoneyAmount(current, moneyAmount)) {
+                return;
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return getRawMoneyAmount() == CLOSED;
+    }
+
+    public boolean credit(long amount) {
+        return creditAndGet(amount) != CLOSED;
+    }
+
+    public boolean tryDebit(long amount) {
+        return debitAndGet(amount) >= 0;
+    }
+
+    // The balance right after this credit, or CLOSED.
+    public long creditAndGet(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Attempted to credit negative amount");
+        }
+        while (true) {
+            long current = getRawMoneyAmount();
+            if (current == CLOSED) {
+                return CLOSED;
+            }
+            long updated = Math.addExact(current, amount);
+            if (compareAndSetRawMoneyAmount(current, updated)) {
+                return updated;
+            }
+        }
+    }
+
+    // The balance right after this debit, INSUFFICIENT_FUNDS or CLOSED; both are negative.
+    public long debitAndGet(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Attempted to debit negative amount");
+        }
+        while (true) {
+            long current = getRawMoneyAmount();
+            if (current == CLOSED) {
+                return CLOSED;
+            }
+            if (current < amount) {
+                return INSUFFICIENT_FUNDS;
+            }
+            if (compareAndSetRawMoneyAmount(current, current - amount)) {
+                return current - amount;
+            }
+        }
+    }
+
+    long close() {
+        while (true) {
+            long current = getRawMoneyAmount();
+            if (current == CLOSED) {
+                throw new IllegalStateException("Account is already closed: id=%s".formatted(id));
+            }
+            if (compareAndSetRawMoneyAmount(current, CLOSED)) {
+                return current;
+            }
+        }
+    }
+
+    protected long getRawMoneyAmount() {
+        return moneyAmount;
+    }
+
+    protected boolean compareAndSetRawMoneyAmount(long expected, long newValue) {
+        return MONEY_AMOUNT.compareAndSet(this, expected, newValue);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Account account)) {
+            return false;
+        }
+        return id == account.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
     }
 
     @Override
@@ -36,7 +147,7 @@ public class Account {
         return "Account{" +
                 "id=" + id +
                 ", userId=" + userId +
-                ", moneyAmount=" + moneyAmount +
+                ", moneyAmount=" + getMoneyAmount() +
                 '}';
     }
 }
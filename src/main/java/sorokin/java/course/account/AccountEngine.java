@@ -0,0 +1,39 @@
+package sorokin.java.course.account;
+
+import java.util.List;
+
+// Applies balance changes for AccountService. Ids and amounts are validated before they get here,
+// so implementations only report what happened to the accounts.
+public interface AccountEngine {
+
+    TransferStatus deposit(int accountId, long amount);
+
+    TransferStatus withdraw(int accountId, long amount);
+
+    TransferStatus transfer(int fromAccountId, int toAccountId, long amount);
+
+    // Applies operations queued by AsyncAccountService, already checked and announced to snapshots,
+    // leaving each outcome in the operation. This one applies them in order; an engine running them on
+    // threads of its own may start all of them before waiting for any.
+    default void applyQueued(List<AsyncAccountService.QueuedOperation> operations) {
+        for (AsyncAccountService.QueuedOperation operation : operations) {
+            try {
+                operation.status = switch (operation.type) {
+                    case DEPOSIT -> deposit(operation.fromAccountId, operation.amount);
+                    case WITHDRAW -> withdraw(operation.fromAccountId, operation.amount);
+                    case TRANSFER -> transfer(operation.fromAccountId, operation.toAccountId, operation.amount);
+                };
+            } catch (RuntimeException e) {
+                operation.failure = e;
+            }
+        }
+    }
+
+    // Called by closeAccount with both accounts locked, right before the account is closed.
+    default void accountClosing(int accountId, int targetAccountId) {
+    }
+
+    // Called by closeAccount, still under both locks, once the account is marked closed.
+    default void accountClosed(int accountId) {
+    }
+}
@@ -0,0 +1,78 @@
+package sorokin.java.course.account;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class AccountLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public AccountLocks(int stripeCount) {
+        if (stripeCount <= 0 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("stripe count must be a positive power of two");
+        }
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = stripeCount - 1;
+    }
+
+    int stripeOf(int accountId) {
+        return accountId & mask;
+    }
+
+    void lock(int accountId) {
+        stripes[stripeOf(accountId)].lock();
+    }
+
+    void unlock(int accountId) {
+        stripes[stripeOf(accountId)].unlock();
+    }
+
+    // Stripes are always taken in ascending index order, so two transfers
+    // touching the same pair of accounts in opposite directions cannot deadlock.
+    void lockBoth(int firstAccountId, int secondAccountId) {
+        int first = stripeOf(firstAccountId);
+        int second = stripeOf(secondAccountId);
+        if (first == second) {
+            stripes[first].lock();
+            return;
+        }
+        stripes[Math.min(first, second)].lock();
+        stripes[Math.max(first, second)].lock();
+    }
+
+    void unlockBoth(int firstAccountId, int secondAccountId) {
+        int first = stripeOf(firstAccountId);
+        int second = stripeOf(secondAccountId);
+        if (first == second) {
+            stripes[first].unlock();
+            return;
+        }
+        stripes[Math.max(first, second)].unlock();
+        stripes[Math.min(first, second)].unlock();
+    }
+
+    int[] stripesOf(int[] accountIds) {
+        int[] result = new int[accountIds.length];
+        for (int i = 0; i < accountIds.length; i++) {
+            result[i] = stripeOf(accountIds[i]);
+        }
+        return Arrays.stream(result).sorted().distinct().toArray();
+    }
+
+    // Expects the ascending, duplicate-free output of stripesOf, which keeps the global lock order.
+    void lockStripes(int[] sortedStripes) {
+        for (int stripe : sortedStripes) {
+            stripes[stripe].lock();
+        }
+    }
+
+    void unlockStripes(int[] sortedStripes) {
+        for (int i = sortedStripes.length - 1; i >= 0; i--) {
+            stripes[sortedStripes[i]].unlock();
+        }
+    }
+}
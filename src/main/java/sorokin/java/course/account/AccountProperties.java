@@ -5,22 +5,54 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class AccountProperties {
-    private final int defaultAmount;
-    private final double transferCommission;
+
+    // Commission is configured in basis points: 1 bp = 0.01%, so 10 000 bp is the whole amount.
+    public static final int BASIS_POINTS = 10_000;
+
+    private final long defaultAmount;
+    private final int transferCommissionBasisPoints;
+    private final int endOfDayInterestBasisPoints;
+    private final long endOfDayFee;
 
     public AccountProperties(
-            @Value("${account.default-amount}") int defaultAmount,
-            @Value("${account.transfer-commission}") double transferCommission
+            @Value("${account.default-amount}") long defaultAmount,
+            @Value("${account.transfer-commission-bps}") int transferCommissionBasisPoints,
+            @Value("${account.end-of-day-interest-bps:0}") int endOfDayInterestBasisPoints,
+            @Value("${account.end-of-day-fee:0}") long endOfDayFee
     ) {
+        if (defaultAmount < 0) {
+            throw new IllegalArgumentException("account.default-amount must be >= 0");
+        }
+        if (transferCommissionBasisPoints < 0 || transferCommissionBasisPoints > BASIS_POINTS) {
+            throw new IllegalArgumentException("account.transfer-commission-bps must be between 0 and " + BASIS_POINTS);
+        }
+        if (endOfDayInterestBasisPoints < 0 || endOfDayInterestBasisPoints > BASIS_POINTS) {
+            throw new IllegalArgumentException("account.end-of-day-interest-bps must be between 0 and " + BASIS_POINTS);
+        }
+        if (endOfDayFee < 0) {
+            throw new IllegalArgumentException("account.end-of-day-fee must be >= 0");
+        }
         this.defaultAmount = defaultAmount;
-        this.transferCommission = transferCommission;
+        this.transferCommissionBasisPoints = transferCommissionBasisPoints;
+        this.endOfDayInterestBasisPoints = endOfDayInterestBasisPoints;
+        this.endOfDayFee = endOfDayFee;
     }
 
-    public int getDefaultAmount() {
+    public long getDefaultAmount() {
         return defaultAmount;
     }
 
-    public double getTransferCommission() {
-        return transferCommission;
+    public int getTransferCommissionBasisPoints() {
+        return transferCommissionBasisPoints;
+    }
+
+    // Interest credited by each end-of-day run, on the balance at that moment.
+    public int getEndOfDayInterestBasisPoints() {
+        return endOfDayInterestBasisPoints;
+    }
+
+    // Maintenance fee charged to every account by each end-of-day run, never more than the account has.
+    public long getEndOfDayFee() {
+        return endOfDayFee;
     }
 }
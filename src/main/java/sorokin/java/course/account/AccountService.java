@@ -1,117 +1,669 @@
 package sorokin.java.course.account;
 
 import org.springframework.stereotype.Component;
-import sorokin.java.course.account.Account;
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.history.HistoryEntry;
+import sorokin.java.course.history.HistoryEntryType;
+import sorokin.java.course.journal.LedgerGroup;
+import sorokin.java.course.journal.LedgerImage;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.metrics.OperationTimer;
 import sorokin.java.course.user.User;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class AccountService {
 
-    private int idCounter;
-    private final Map<Integer, Account> accountMap;
+    // Operation codes for idempotency fingerprints.
+    private static final int CREATE = 1;
+    private static final int DEPOSIT = 2;
+    private static final int WITHDRAW = 3;
+    private static final int TRANSFER = 4;
+    private static final int CLOSE = 5;
+    private static final int TRANSFER_BATCH = 6;
+
+    private final AtomicInteger idCounter;
+    private final AccountStore accountStore;
+    private final UserAccountIndex userAccountIndex;
+    private final AccountLocks accountLocks;
+    private final AccountEngine accountEngine;
     private final AccountProperties accountProperties;
+    private final LedgerJournal ledgerJournal;
+    private final AccountHistory accountHistory;
+    private final AccountSnapshots accountSnapshots;
+    private final IdempotencyCache idempotencyCache;
+    private final BankTotals bankTotals;
+    private final OperationTimer createTimer;
+    private final OperationTimer depositTimer;
+    private final OperationTimer withdrawTimer;
+    private final OperationTimer transferTimer;
+    private final OperationTimer transferBatchTimer;
+    private final OperationTimer closeTimer;
+    private final OperationTimer bulkAdjustmentTimer;
+    private final OperationTimer importTimer;
 
-    public AccountService(AccountProperties accountProperties) {
-        this.idCounter = 0;
-        this.accountMap = new HashMap<>();
+    public AccountService(
+            AccountProperties accountProperties,
+            AccountStore accountStore,
+            AccountLocks accountLocks,
+            AccountEngine accountEngine,
+            LedgerJournal ledgerJournal,
+            AccountHistory accountHistory,
+            IdempotencyCache idempotencyCache,
+            BankTotals bankTotals,
+            BankMetrics bankMetrics
+    ) {
+        this.idCounter = new AtomicInteger();
+        this.accountStore = accountStore;
+        this.userAccountIndex = new UserAccountIndex();
+        this.accountLocks = accountLocks;
+        this.accountEngine = accountEngine;
         this.accountProperties = accountProperties;
+        this.ledgerJournal = ledgerJournal;
+        this.accountHistory = accountHistory;
+        this.accountSnapshots = new AccountSnapshots(accountStore, userAccountIndex, idCounter);
+        this.idempotencyCache = idempotencyCache;
+        this.bankTotals = bankTotals;
+        this.createTimer = bankMetrics.timer("account.create");
+        this.depositTimer = bankMetrics.timer("account.deposit");
+        this.withdrawTimer = bankMetrics.timer("account.withdraw");
+        this.transferTimer = bankMetrics.timer("account.transfer");
+        this.transferBatchTimer = bankMetrics.timer("account.transfer-batch");
+        this.closeTimer = bankMetrics.timer("account.close");
+        this.bulkAdjustmentTimer = bankMetrics.timer("account.bulk-adjustment");
+        this.importTimer = bankMetrics.timer("account.import");
     }
 
     public Account createAccount(User user) {
+        return createAccount(user, null);
+    }
+
+    // Every mutating method has a variant taking an idempotency key: a repeated call with the same
+    // key returns what the first one returned, or throws what it threw, without running again.
+    public Account createAccount(User user, String idempotencyKey) {
         if (user == null) {
             throw new IllegalArgumentException("user must not be null");
         }
-        idCounter++;
-        Account newAccount = new Account(idCounter, user.getId(), accountProperties.getDefaultAmount());
-        accountMap.put(idCounter, newAccount);
-        return newAccount;
+        if (idempotencyKey == null) {
+            return createAccountOnce(user);
+        }
+        return idempotencyCache.execute(idempotencyKey, IdempotencyCache.fingerprint(CREATE, user.getId()),
+                () -> createAccountOnce(user));
+    }
+
+    // Opens the first account of a user being created. The caller has put the user's record into
+    // userRecords; the account record follows it and the group is appended as one record, so replay
+    // has the user together with its account or neither of them.
+    public Account createFirstAccount(User user, LedgerGroup userRecords) {
+        if (user == null || userRecords == null) {
+            throw new IllegalArgumentException("user and its records must not be null");
+        }
+        return createAccountOnce(user, userRecords);
+    }
+
+    private Account createAccountOnce(User user) {
+        return createAccountOnce(user, null);
+    }
+
+    private Account createAccountOnce(User user, LedgerGroup userRecords) {
+        long startedAt = createTimer.start();
+        accountSnapshots.enter();
+        try {
+            int accountId = idCounter.incrementAndGet();
+            accountSnapshots.beforeWrite(accountId);
+            // Journaled before the account becomes visible, so no operation on it can precede its creation record.
+            if (userRecords == null) {
+                ledgerJournal.accountCreated(accountId, user.getId(), accountProperties.getDefaultAmount());
+            } else {
+                userRecords.accountCreated(accountId, user.getId(), accountProperties.getDefaultAmount());
+                ledgerJournal.append(userRecords);
+            }
+            Account newAccount = accountStore.add(accountId, user.getId(), accountProperties.getDefaultAmount());
+            userAccountIndex.add(user.getId(), accountId);
+            accountHistory.record(accountId, HistoryEntryType.ACCOUNT_OPENED, 0,
+                    accountProperties.getDefaultAmount(), accountProperties.getDefaultAmount());
+            bankTotals.accountOpened(user.getId(), accountProperties.getDefaultAmount());
+            createTimer.stop(startedAt);
+            return newAccount;
+        } catch (RuntimeException e) {
+            createTimer.fail(startedAt, e);
+            throw e;
+        } finally {
+            accountSnapshots.exit();
+        }
+    }
+
+    // Opens the accounts of imported users: user firstUserId + i gets accountCounts[i] accounts with the next
+    // balances in order, or one account with the default amount if the count is 0. The account ids are
+    // one block, handed out at once. The account records follow the caller's user records in userRecords
+    // and the group is appended as one record before any account is opened, so replay has the whole
+    // import or none of it, and a failed append leaves memory untouched. All accounts are then opened
+    // within one pass through the snapshot gate, so a snapshot has all of them or none. Returns the
+    // first account id.
+    public int importAccounts(int firstUserId, int[] accountCounts, long[] balances, LedgerGroup userRecords) {
+        if (firstUserId <= 0) {
+            throw new IllegalArgumentException("user id must be > 0");
+        }
+        if (userRecords == null) {
+            throw new IllegalArgumentException("user records must not be null");
+        }
+        int accountCount = checkImport(accountCounts, balances);
+        long startedAt = importTimer.start();
+        accountSnapshots.enter();
+        try {
+            int firstAccountId = idCounter.getAndAdd(accountCount) + 1;
+            long[] accountBalances = new long[accountCount];
+            int balanceIndex = 0;
+            for (int i = 0, account = 0; i < accountCounts.length; i++) {
+                if (accountCounts[i] == 0) {
+                    accountBalances[account++] = accountProperties.getDefaultAmount();
+                } else {
+                    for (int j = 0; j < accountCounts[i]; j++) {
+                        accountBalances[account++] = balances[balanceIndex++];
+                    }
+                }
+            }
+            for (int i = 0, account = 0; i < accountCounts.length; i++) {
+                for (int j = 0; j < Math.max(accountCounts[i], 1); j++, account++) {
+                    userRecords.accountCreated(firstAccountId + account, firstUserId + i, accountBalances[account]);
+                }
+            }
+            ledgerJournal.append(userRecords);
+
+            Map<Integer, int[]> accountIdsByUser = new HashMap<>(accountCounts.length * 4 / 3 + 1);
+            for (int i = 0, account = 0; i < accountCounts.length; i++) {
+                int userId = firstUserId + i;
+                int[] accountIds = new int[Math.max(accountCounts[i], 1)];
+                for (int j = 0; j < accountIds.length; j++, account++) {
+                    int accountId = firstAccountId + account;
+                    long balance = accountBalances[account];
+                    accountSnapshots.beforeWrite(accountId);
+                    accountStore.add(accountId, userId, balance);
+                    accountHistory.record(accountId, HistoryEntryType.ACCOUNT_OPENED, 0, balance, balance);
+                    bankTotals.accountOpened(userId, balance);
+                    accountIds[j] = accountId;
+                }
+                accountIdsByUser.put(userId, accountIds);
+            }
+            userAccountIndex.putAll(accountIdsByUser);
+            importTimer.stop(startedAt);
+            return firstAccountId;
+        } catch (RuntimeException e) {
+            importTimer.fail(startedAt, e);
+            throw e;
+        } finally {
+            accountSnapshots.exit();
+        }
+    }
+
+    // Everything importAccounts checks before it changes anything, for callers that write their own
+    // records first. Returns the number of accounts the import opens.
+    public int checkImport(int[] accountCounts, long[] balances) {
+        long accountCount = 0;
+        long balanceCount = 0;
+        for (int count : accountCounts) {
+            if (count < 0) {
+                throw new IllegalArgumentException("account count must be >= 0");
+            }
+            accountCount += Math.max(count, 1);
+            balanceCount += count;
+        }
+        // Users with no balances get one account with the default amount; every other account takes the next balance.
+        if (balanceCount != balances.length) {
+            throw new IllegalArgumentException("%d balances for %d accounts with a balance".formatted(balances.length, balanceCount));
+        }
+        for (long balance : balances) {
+            if (balance < 0) {
+                throw new IllegalArgumentException("balance must be >= 0");
+            }
+        }
+        if (accountCount > Integer.MAX_VALUE - idCounter.get()) {
+            throw new IllegalArgumentException("Too many accounts to import: %d".formatted(accountCount));
+        }
+        return (int) accountCount;
+    }
+
+    // A consistent picture of all accounts: every operation is either entirely in it or not at all.
+    public AccountSnapshot snapshot() {
+        return accountSnapshots.take();
+    }
+
+    // Bank-wide sums kept up to date by every operation: O(1) to read, no walk over the accounts.
+    public BankTotals getTotals() {
+        return bankTotals;
+    }
+
+    public int getIdempotencyKeyCount() {
+        return idempotencyCache.size();
     }
 
     public Optional<Account> findAccountById(Integer id) {
         validatePositiveId(id, "account id");
-        return Optional.ofNullable(accountMap.get(id));
+        return Optional.ofNullable(accountStore.get(id));
+    }
+
+    // Closed accounts keep their history, so only ids never handed out are rejected.
+    public List<HistoryEntry> getStatement(int accountId, long fromMillis, long toMillis) {
+        validatePositiveId(accountId, "account id");
+        if (accountId > idCounter.get()) {
+            throw new IllegalArgumentException("No such account: id=%s".formatted(accountId));
+        }
+        return accountHistory.statement(accountId, fromMillis, toMillis);
+    }
+
+    public long getHistoryIncompleteBeforeMillis() {
+        return accountHistory.getIncompleteBeforeMillis();
     }
 
     public List<Account> getUserAccounts(Integer userId) {
-        return accountMap.values().stream()
-                .filter(it -> userId.equals(it.getUserId()))
-                .toList();
+        int[] accountIds = userAccountIndex.get(userId);
+        List<Account> accounts = new ArrayList<>(accountIds.length);
+        for (int accountId : accountIds) {
+            Account account = accountStore.get(accountId);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return Collections.unmodifiableList(accounts);
+    }
+
+    public void withdraw(int fromAccountId, long amount) {
+        withdraw(fromAccountId, amount, null);
     }
 
-    public void withdraw(Integer fromAccountId, Integer amount) {
+    public void withdraw(int fromAccountId, long amount, String idempotencyKey) {
         validatePositiveId(fromAccountId, "account id");
         validatePositiveAmount(amount);
-        Account account = findAccountById(fromAccountId)
-                .orElseThrow(() -> new IllegalArgumentException("No such account: id=%s".formatted(fromAccountId)));
-
-        if (amount > account.getMoneyAmount()) {
-            throw new IllegalArgumentException(
+        TransferStatus status = idempotencyKey == null
+                ? withdrawOnce(fromAccountId, amount)
+                : idempotencyCache.execute(idempotencyKey, IdempotencyCache.fingerprint(WITHDRAW, fromAccountId, amount),
+                        () -> withdrawOnce(fromAccountId, amount));
+        switch (status) {
+            case COMPLETED -> {
+            }
+            case INSUFFICIENT_FUNDS -> throw new IllegalArgumentException(
                     "insufficient funds on account id=%s, moneyAmount=%s, attempted withdraw=%s"
-                            .formatted(account.getId(), account.getMoneyAmount(), amount)
+                            .formatted(fromAccountId, currentMoneyAmount(fromAccountId), amount)
             );
+            default -> throw new IllegalArgumentException("No such account: id=%s".formatted(fromAccountId));
+        }
+    }
+
+    private TransferStatus withdrawOnce(int fromAccountId, long amount) {
+        TransferStatus status;
+        long startedAt = withdrawTimer.start();
+        accountSnapshots.enter();
+        try {
+            status = applyWithdraw(fromAccountId, amount);
+        } finally {
+            accountSnapshots.exit();
         }
-        account.setMoneyAmount(account.getMoneyAmount() - amount);
+        record(withdrawTimer, startedAt, status);
+        return status;
     }
 
-    public void deposit(Integer toAccountId, Integer amount) {
+    public void deposit(int toAccountId, long amount) {
+        deposit(toAccountId, amount, null);
+    }
+
+    public void deposit(int toAccountId, long amount, String idempotencyKey) {
         validatePositiveId(toAccountId, "account id");
         validatePositiveAmount(amount);
-        Account account = findAccountById(toAccountId)
-                .orElseThrow(() -> new IllegalArgumentException("No such account: id=%s".formatted(toAccountId)));
+        TransferStatus status = idempotencyKey == null
+                ? depositOnce(toAccountId, amount)
+                : idempotencyCache.execute(idempotencyKey, IdempotencyCache.fingerprint(DEPOSIT, toAccountId, amount),
+                        () -> depositOnce(toAccountId, amount));
+        if (status != TransferStatus.COMPLETED) {
+            throw new IllegalArgumentException("No such account: id=%s".formatted(toAccountId));
+        }
+    }
 
-        account.setMoneyAmount(account.getMoneyAmount() + amount);
+    private TransferStatus depositOnce(int toAccountId, long amount) {
+        TransferStatus status;
+        long startedAt = depositTimer.start();
+        accountSnapshots.enter();
+        try {
+            status = applyDeposit(toAccountId, amount);
+        } finally {
+            accountSnapshots.exit();
+        }
+        record(depositTimer, startedAt, status);
+        return status;
     }
 
     public Account closeAccount(Integer accountId) {
+        return closeAccount(accountId, null);
+    }
+
+    public Account closeAccount(Integer accountId, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return closeAccountTimed(accountId);
+        }
         validatePositiveId(accountId, "account id");
-        Account accountToClose = findAccountById(accountId)
-                .orElseThrow(() -> new IllegalArgumentException("No such account: id=%s".formatted(accountId)));
-        var userId = accountToClose.getUserId();
-        var userAccounts = getUserAccounts(userId);
-        if (userAccounts.size() == 1) {
-            throw new IllegalStateException("Can't close the only one account");
+        return idempotencyCache.execute(idempotencyKey, IdempotencyCache.fingerprint(CLOSE, accountId),
+                () -> closeAccountTimed(accountId));
+    }
+
+    private Account closeAccountTimed(Integer accountId) {
+        long startedAt = closeTimer.start();
+        try {
+            Account closed = closeAccountOnce(accountId);
+            closeTimer.stop(startedAt);
+            return closed;
+        } catch (RuntimeException e) {
+            closeTimer.fail(startedAt, e);
+            throw e;
         }
-        accountMap.remove(accountId);
+    }
 
-        var accountToTransferMoney = userAccounts.stream()
-                .filter(it -> it.getId() != accountId)
-                .findFirst()
-                .orElseThrow();
+    private Account closeAccountOnce(Integer accountId) {
+        validatePositiveId(accountId, "account id");
+        while (true) {
+            Account accountToClose = findAccountById(accountId)
+                    .orElseThrow(() -> new IllegalArgumentException("No such account: id=%s".formatted(accountId)));
+            var userId = accountToClose.getUserId();
+            var userAccounts = getUserAccounts(userId);
+            if (userAccounts.size() == 1) {
+                throw new IllegalStateException("Can't close the only one account");
+            }
 
-        var newAmount = accountToTransferMoney.getMoneyAmount() + accountToClose.getMoneyAmount();
-        accountToTransferMoney.setMoneyAmount(newAmount);
-        return accountToClose;
-    }
+            var accountToTransferMoney = userAccounts.stream()
+                    .filter(it -> it.getId() != accountId)
+                    .findFirst()
+                    .orElseThrow();
 
-    public void transfer(int fromAccountId, int toAccountId, int amount) {
-        validatePositiveId(fromAccountId, "source account id");
-        validatePositiveId(toAccountId, "target account id");
-        validatePositiveAmount(amount);
-        if (fromAccountId == toAccountId) {
-            throw new IllegalArgumentException("source and target account id must be different");
+            accountSnapshots.enter();
+            accountLocks.lockBoth(accountId, accountToTransferMoney.getId());
+            try {
+                // Either account may have been closed while we were picking the target; start over if so.
+                if (!accountStore.contains(accountId) || !accountStore.contains(accountToTransferMoney.getId())) {
+                    continue;
+                }
+                accountSnapshots.beforeWrite(accountId);
+                accountSnapshots.beforeWrite(accountToTransferMoney.getId());
+                accountEngine.accountClosing(accountId, accountToTransferMoney.getId());
+                // Closing swaps the balance for a marker in one CAS, so lock-free deposits
+                // and withdrawals racing with us either land before the move or fail.
+                long remainingAmount = accountToClose.close();
+                accountEngine.accountClosed(accountId);
+                accountStore.remove(accountId);
+
+                long targetBalance = accountToTransferMoney.creditAndGet(remainingAmount);
+                ledgerJournal.accountClosed(accountId, accountToTransferMoney.getId(), remainingAmount);
+                accountHistory.record(accountId, HistoryEntryType.ACCOUNT_CLOSED, accountToTransferMoney.getId(),
+                        -remainingAmount, 0);
+                accountHistory.record(accountToTransferMoney.getId(), HistoryEntryType.CLOSED_ACCOUNT_MERGED, accountId,
+                        remainingAmount, targetBalance);
+                bankTotals.accountClosed();
+                return accountToClose;
+            } finally {
+                accountLocks.unlockBoth(accountId, accountToTransferMoney.getId());
+                accountSnapshots.exit();
+            }
         }
-        Account accountFrom = findAccountById(fromAccountId)
-                .orElseThrow(() -> new IllegalArgumentException("No such account: id=%s".formatted(fromAccountId)));
-        Account accountTo = findAccountById(toAccountId)
-                .orElseThrow(() -> new IllegalArgumentException("No such account: id=%s".formatted(toAccountId)));
+    }
 
-        if (amount > accountFrom.getMoneyAmount()) {
-            throw new IllegalArgumentException(
+    public void transfer(int fromAccountId, int toAccountId, long amount) {
+        transfer(fromAccountId, toAccountId, amount, null);
+    }
+
+    public void transfer(int fromAccountId, int toAccountId, long amount, String idempotencyKey) {
+        TransferStatus status = tryTransfer(fromAccountId, toAccountId, amount, idempotencyKey);
+        switch (status) {
+            case COMPLETED -> {
+            }
+            case INVALID_ACCOUNT_ID -> throw new IllegalArgumentException(
+                    (fromAccountId <= 0 ? "source" : "target") + " account id must be > 0");
+            case INVALID_AMOUNT -> throw new IllegalArgumentException("amount must be > 0");
+            case SAME_ACCOUNT -> throw new IllegalArgumentException("source and target account id must be different");
+            case NO_SUCH_ACCOUNT -> throw new IllegalArgumentException("No such account: id=%s"
+                    .formatted(accountStore.contains(fromAccountId) ? toAccountId : fromAccountId));
+            case INSUFFICIENT_FUNDS -> throw new IllegalArgumentException(
                     "insufficient funds on account id=%s, moneyAmount=%s, attempted transfer=%s"
-                            .formatted(accountFrom.getId(), accountFrom.getMoneyAmount(), amount)
+                            .formatted(fromAccountId, currentMoneyAmount(fromAccountId), amount)
             );
+            default -> throw new IllegalStateException("Unexpected transfer status: " + status);
+        }
+    }
+
+    // Same as transfer, but every outcome is a status constant: no Optional, no boxing and no
+    // exception on the rejection paths, so callers that expect many rejections create no garbage.
+    public TransferStatus tryTransfer(int fromAccountId, int toAccountId, long amount) {
+        long startedAt = transferTimer.start();
+        TransferStatus status = transferChecked(fromAccountId, toAccountId, amount);
+        record(transferTimer, startedAt, status);
+        return status;
+    }
+
+    public TransferStatus tryTransfer(int fromAccountId, int toAccountId, long amount, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return tryTransfer(fromAccountId, toAccountId, amount);
+        }
+        return idempotencyCache.execute(idempotencyKey,
+                IdempotencyCache.fingerprint(TRANSFER, fromAccountId, toAccountId, amount),
+                () -> tryTransfer(fromAccountId, toAccountId, amount));
+    }
+
+    private TransferStatus transferChecked(int fromAccountId, int toAccountId, long amount) {
+        TransferStatus rejected = checkTransfer(fromAccountId, toAccountId, amount);
+        if (rejected != null) {
+            return rejected;
+        }
+        accountSnapshots.enter();
+        try {
+            return applyTransfer(fromAccountId, toAccountId, amount);
+        } finally {
+            accountSnapshots.exit();
+        }
+    }
+
+    // Applies operations queued by AsyncAccountService within one pass through the snapshot gate and
+    // one journal batch. Rejected operations get their status here; the rest go to the engine
+    // together (see AccountEngine.applyQueued). Outcomes are left in the operations for the caller to
+    // complete once this returns, as only then are their journal records forced.
+    void applyQueued(List<AsyncAccountService.QueuedOperation> operations) {
+        long[] startedAt = new long[operations.size()];
+        List<AsyncAccountService.QueuedOperation> accepted = new ArrayList<>(operations.size());
+        accountSnapshots.enter();
+        try {
+            ledgerJournal.beginBatch();
+            try {
+                for (int i = 0; i < startedAt.length; i++) {
+                    AsyncAccountService.QueuedOperation operation = operations.get(i);
+                    startedAt[i] = timerOf(operation).start();
+                    TransferStatus rejected = operation.type == AsyncAccountService.OperationType.TRANSFER
+                            ? checkTransfer(operation.fromAccountId, operation.toAccountId, operation.amount)
+                            : checkArguments(operation.fromAccountId, operation.amount);
+                    if (rejected != null) {
+                        operation.status = rejected;
+                    } else {
+                        accountSnapshots.beforeWrite(operation.fromAccountId);
+                        accountSnapshots.beforeWrite(operation.toAccountId);
+                        accepted.add(operation);
+                    }
+                }
+                accountEngine.applyQueued(accepted);
+            } finally {
+                ledgerJournal.endBatch();
+            }
+        } finally {
+            accountSnapshots.exit();
+        }
+        for (int i = 0; i < startedAt.length; i++) {
+            AsyncAccountService.QueuedOperation operation = operations.get(i);
+            if (operation.failure != null) {
+                timerOf(operation).fail(startedAt[i], operation.failure);
+            } else {
+                record(timerOf(operation), startedAt[i], operation.status);
+            }
+        }
+    }
+
+    private OperationTimer timerOf(AsyncAccountService.QueuedOperation operation) {
+        return switch (operation.type) {
+            case DEPOSIT -> depositTimer;
+            case WITHDRAW -> withdrawTimer;
+            case TRANSFER -> transferTimer;
+        };
+    }
+
+    // The apply methods run between accountSnapshots.enter() and exit().
+    private TransferStatus applyDeposit(int toAccountId, long amount) {
+        accountSnapshots.beforeWrite(toAccountId);
+        return accountEngine.deposit(toAccountId, amount);
+    }
+
+    private TransferStatus applyWithdraw(int fromAccountId, long amount) {
+        accountSnapshots.beforeWrite(fromAccountId);
+        return accountEngine.withdraw(fromAccountId, amount);
+    }
+
+    private TransferStatus applyTransfer(int fromAccountId, int toAccountId, long amount) {
+        accountSnapshots.beforeWrite(fromAccountId);
+        accountSnapshots.beforeWrite(toAccountId);
+        return accountEngine.transfer(fromAccountId, toAccountId, amount);
+    }
+
+    // null when the arguments are fine.
+    private static TransferStatus checkArguments(int accountId, long amount) {
+        if (accountId <= 0) {
+            return TransferStatus.INVALID_ACCOUNT_ID;
+        }
+        if (amount <= 0) {
+            return TransferStatus.INVALID_AMOUNT;
+        }
+        return null;
+    }
+
+    private static TransferStatus checkTransfer(int fromAccountId, int toAccountId, long amount) {
+        if (fromAccountId <= 0 || toAccountId <= 0) {
+            return TransferStatus.INVALID_ACCOUNT_ID;
+        }
+        if (amount <= 0) {
+            return TransferStatus.INVALID_AMOUNT;
         }
-        accountFrom.setMoneyAmount(accountFrom.getMoneyAmount() - amount);
+        if (fromAccountId == toAccountId) {
+            return TransferStatus.SAME_ACCOUNT;
+        }
+        return null;
+    }
+
+    public TransferBatchResult transferBatch(List<TransferRequest> requests, TransferBatchMode mode) {
+        return transferBatch(requests, mode, null);
+    }
+
+    public TransferBatchResult transferBatch(List<TransferRequest> requests, TransferBatchMode mode, String idempotencyKey) {
+        if (requests == null || mode == null) {
+            throw new IllegalArgumentException("requests and mode must not be null");
+        }
+        if (idempotencyKey == null) {
+            return transferBatchOnce(requests, mode);
+        }
+        long fingerprint = IdempotencyCache.fingerprint(TRANSFER_BATCH, mode.ordinal(), requests.size());
+        for (TransferRequest request : requests) {
+            fingerprint = IdempotencyCache.mix(IdempotencyCache.mix(IdempotencyCache.mix(fingerprint,
+                    request.fromAccountId()), request.toAccountId()), request.amount());
+        }
+        return idempotencyCache.execute(idempotencyKey, fingerprint, () -> transferBatchOnce(requests, mode));
+    }
+
+    private TransferBatchResult transferBatchOnce(List<TransferRequest> requests, TransferBatchMode mode) {
+        long startedAt = transferBatchTimer.start();
+        accountSnapshots.enter();
+        try {
+            for (TransferRequest request : requests) {
+                accountSnapshots.beforeWrite(request.fromAccountId());
+                accountSnapshots.beforeWrite(request.toAccountId());
+            }
+            TransferBatchResult result = new TransferBatch(requests, this, accountStore, accountLocks, ledgerJournal, accountHistory, bankTotals).execute(mode);
+            transferBatchTimer.stop(startedAt);
+            return result;
+        } catch (RuntimeException e) {
+            transferBatchTimer.fail(startedAt, e);
+            throw e;
+        } finally {
+            accountSnapshots.exit();
+        }
+    }
+
+    // Applies the adjustment to every account open when the call starts, in parallel on the common
+    // fork-join pool. Other operations keep running meanwhile; no lock is held across the accounts.
+    public BulkAdjustmentResult adjustAll(BalanceAdjustment adjustment) {
+        if (adjustment == null) {
+            throw new IllegalArgumentException("adjustment must not be null");
+        }
+        long startedAt = bulkAdjustmentTimer.start();
+        try {
+            BulkAdjustmentResult result = new BulkAdjustment(adjustment, idCounter.get(), accountStore, accountSnapshots,
+                    ledgerJournal, accountHistory, bankTotals).execute(ForkJoinPool.commonPool());
+            bulkAdjustmentTimer.stop(startedAt);
+            return result;
+        } catch (RuntimeException e) {
+            bulkAdjustmentTimer.fail(startedAt, e);
+            throw e;
+        }
+    }
+
+    // Credits account.end-of-day-interest-bps of the balance and charges account.end-of-day-fee, as one
+    // net change per account. The fee is capped at what the account has once the interest is in.
+    public BulkAdjustmentResult endOfDay() {
+        int interestBasisPoints = accountProperties.getEndOfDayInterestBasisPoints();
+        long fee = accountProperties.getEndOfDayFee();
+        return adjustAll((accountId, userId, balance) -> {
+            long interest = TransferCommission.commission(balance, interestBasisPoints);
+            return interest - Math.min(fee, balance + interest);
+        });
+    }
+
+    public void restore(LedgerImage image) {
+        if (accountStore.size() != 0) {
+            throw new IllegalStateException("Can't restore accounts into a non-empty store");
+        }
+        Map<Integer, int[]> accountIdsByUser = new HashMap<>();
+        for (int accountId = 1; accountId <= image.getMaxAccountId(); accountId++) {
+            if (image.isOpen(accountId)) {
+                int userId = image.getAccountUserId(accountId);
+                accountStore.add(accountId, userId, image.getBalance(accountId));
+                bankTotals.accountRestored(userId, image.getBalance(accountId));
+                accountIdsByUser.merge(userId, new int[]{accountId}, AccountService::appendIds);
+            }
+        }
+        userAccountIndex.putAll(accountIdsByUser);
+        idCounter.set(image.getMaxAccountId());
+    }
+
+    long creditedAmount(Account accountFrom, Account accountTo, long amount) {
+        return TransferCommission.creditedAmount(accountFrom, accountTo, amount,
+                accountProperties.getTransferCommissionBasisPoints());
+    }
+
+    private static void record(OperationTimer timer, long startedAt, TransferStatus status) {
+        if (status == TransferStatus.COMPLETED) {
+            timer.stop(startedAt);
+        } else {
+            timer.fail(startedAt, status.name());
+        }
+    }
+
+    private long currentMoneyAmount(int accountId) {
+        Account account = accountStore.get(accountId);
+        return account == null ? 0 : account.getMoneyAmount();
+    }
 
-        int amountToTransfer = accountTo.getUserId() == accountFrom.getUserId()
-                ? amount
-                : (int) Math.round(amount * (1 - accountProperties.getTransferCommission()));
-        accountTo.setMoneyAmount(accountTo.getMoneyAmount() + amountToTransfer);
+    private static int[] appendIds(int[] current, int[] added) {
+        int[] merged = Arrays.copyOf(current, current.length + added.length);
+        System.arraycopy(added, 0, merged, current.length, added.length);
+        return merged;
     }
 
     private void validatePositiveId(Integer id, String fieldName) {
@@ -120,8 +672,8 @@ public class AccountService {
         }
     }
 
-    private void validatePositiveAmount(Integer amount) {
-        if (amount == null || amount <= 0) {
+    private void validatePositiveAmount(long amount) {
+        if (amount <= 0) {
             throw new IllegalArgumentException("amount must be > 0");
         }
     }
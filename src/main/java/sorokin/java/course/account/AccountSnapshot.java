@@ -0,0 +1,103 @@
+package sorokin.java.course.account;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Immutable picture of every account at one instant, taken by AccountService.snapshot().
+// Balances are copied in pages of PAGE_SIZE accounts; consecutive snapshots share the pages
+// nobody wrote to in between.
+public class AccountSnapshot {
+
+    static final int PAGE_SHIFT = 12;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int NO_USER = 0;
+
+    private final long version;
+    private final int maxAccountId;
+    private final Page[] pages;
+    private final UserAccountIndex userAccountIndex;
+
+    AccountSnapshot(long version, int maxAccountId, Page[] pages, UserAccountIndex userAccountIndex) {
+        this.version = version;
+        this.maxAccountId = maxAccountId;
+        this.pages = pages;
+        this.userAccountIndex = userAccountIndex;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getMaxAccountId() {
+        return maxAccountId;
+    }
+
+    public boolean isOpen(int accountId) {
+        return getUserId(accountId) != NO_USER;
+    }
+
+    // 0 when the account did not exist at the time of the snapshot.
+    public int getUserId(int accountId) {
+        if (accountId <= 0 || accountId > maxAccountId) {
+            return NO_USER;
+        }
+        return pages[accountId >>> PAGE_SHIFT].userIds[accountId & PAGE_MASK];
+    }
+
+    public long getBalance(int accountId) {
+        if (!isOpen(accountId)) {
+            throw new IllegalArgumentException("No such account in snapshot: id=%s".formatted(accountId));
+        }
+        return pages[accountId >>> PAGE_SHIFT].balances[accountId & PAGE_MASK];
+    }
+
+    public long getTotalBalance() {
+        long total = 0;
+        for (int accountId = 1; accountId <= maxAccountId; accountId++) {
+            if (isOpen(accountId)) {
+                total += getBalance(accountId);
+            }
+        }
+        return total;
+    }
+
+    // Accounts in ascending id order, as detached Account objects.
+    public void forEachAccount(Consumer<Account> action) {
+        for (int accountId = 1; accountId <= maxAccountId; accountId++) {
+            int userId = getUserId(accountId);
+            if (userId != NO_USER) {
+                action.accept(new Account(accountId, userId, getBalance(accountId)));
+            }
+        }
+    }
+
+    // The live index also lists accounts closed since and created after the snapshot; the snapshot filters them.
+    public List<Account> getUserAccounts(int userId) {
+        int[] accountIds = userAccountIndex.get(userId);
+        List<Account> accounts = new ArrayList<>(accountIds.length);
+        for (int accountId : accountIds) {
+            if (getUserId(accountId) == userId) {
+                accounts.add(new Account(accountId, userId, getBalance(accountId)));
+            }
+        }
+        return Collections.unmodifiableList(accounts);
+    }
+
+    Page[] getPages() {
+        return pages;
+    }
+
+    static final class Page {
+
+        final int[] userIds;
+        final long[] balances;
+
+        Page(int[] userIds, long[] balances) {
+            this.userIds = userIds;
+            this.balances = balances;
+        }
+    }
+}
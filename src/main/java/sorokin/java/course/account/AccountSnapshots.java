@@ -0,0 +1,176 @@
+package sorokin.java.course.account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static sorokin.java.course.account.AccountSnapshot.PAGE_SHIFT;
+import static sorokin.java.course.account.AccountSnapshot.PAGE_SIZE;
+
+// Takes consistent snapshots of the account store without stopping writers for the copy.
+//
+// Every mutating AccountService call runs between enter() and exit() and names the accounts it
+// is about to write with beforeWrite(). A snapshot holds back new calls only until the ones in
+// flight have finished - that instant is what the snapshot shows, so no transfer is ever half
+// in it - and lets them go again right away. The balances are copied afterwards, page by page,
+// by the snapshot thread or by the first writer that is about to change a page not copied yet.
+// A writer therefore waits for at most one page copy, and pages nobody wrote to since the
+// previous snapshot are shared with it instead of copied. The previous snapshot is only weakly
+// reachable from here: once its last user drops it, the next snapshot copies every page.
+final class AccountSnapshots {
+
+    private static final int STRIPES = 64;
+    // One stripe per 64-byte cache line.
+    private static final int STRIPE_PADDING = 8;
+    private static final int MAX_PAGES = 1 << (Integer.SIZE - 1 - PAGE_SHIFT);
+    private static final VarHandle DIRTY = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final AccountSnapshot.Page COPYING = new AccountSnapshot.Page(new int[0], new long[0]);
+
+    private final AccountStore accountStore;
+    private final UserAccountIndex userAccountIndex;
+    private final AtomicInteger idCounter;
+    private final AtomicLongArray inFlight;
+    // Pages written since they were last copied into a snapshot.
+    private final byte[] dirtyPages;
+    private volatile boolean pausing;
+    private volatile Capture capture;
+    private long version;
+    private WeakReference<AccountSnapshot> latest;
+
+    AccountSnapshots(AccountStore accountStore, UserAccountIndex userAccountIndex, AtomicInteger idCounter) {
+        this.accountStore = accountStore;
+        this.userAccountIndex = userAccountIndex;
+        this.idCounter = idCounter;
+        this.inFlight = new AtomicLongArray(STRIPES * STRIPE_PADDING);
+        this.dirtyPages = new byte[MAX_PAGES];
+    }
+
+    void enter() {
+        int stripe = stripe();
+        while (true) {
+            for (int spins = 0; pausing; spins++) {
+                if (spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            inFlight.getAndIncrement(stripe);
+            if (!pausing) {
+                return;
+            }
+            inFlight.getAndDecrement(stripe);
+        }
+    }
+
+    void exit() {
+        inFlight.getAndDecrement(stripe());
+    }
+
+    void beforeWrite(int accountId) {
+        if (accountId <= 0) {
+            return;
+        }
+        int pageIndex = accountId >>> PAGE_SHIFT;
+        Capture current = capture;
+        if (current != null) {
+            current.copy(pageIndex);
+        }
+        if ((byte) DIRTY.getVolatile(dirtyPages, pageIndex) == 0) {
+            DIRTY.setVolatile(dirtyPages, pageIndex, (byte) 1);
+        }
+    }
+
+    synchronized AccountSnapshot take() {
+        Capture started;
+        pausing = true;
+        try {
+            awaitQuiescence();
+            started = new Capture(++version, idCounter.get(), latest == null ? null : latest.get());
+            capture = started;
+        } finally {
+            pausing = false;
+        }
+        try {
+            for (int pageIndex = 0; pageIndex < started.pages.length(); pageIndex++) {
+                started.copy(pageIndex);
+            }
+        } finally {
+            capture = null;
+        }
+        AccountSnapshot snapshot = started.toSnapshot();
+        latest = new WeakReference<>(snapshot);
+        return snapshot;
+    }
+
+    private void awaitQuiescence() {
+        for (int stripe = 0; stripe < STRIPES * STRIPE_PADDING; stripe += STRIPE_PADDING) {
+            while (inFlight.get(stripe) != 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static int stripe() {
+        return (int) (Thread.currentThread().threadId() & (STRIPES - 1)) * STRIPE_PADDING;
+    }
+
+    private final class Capture {
+
+        private final long version;
+        private final int maxAccountId;
+        private final AccountSnapshot previous;
+        private final AtomicReferenceArray<AccountSnapshot.Page> pages;
+
+        private Capture(long version, int maxAccountId, AccountSnapshot previous) {
+            this.version = version;
+            this.maxAccountId = maxAccountId;
+            this.previous = previous;
+            this.pages = new AtomicReferenceArray<>(maxAccountId == 0 ? 0 : (maxAccountId >>> PAGE_SHIFT) + 1);
+        }
+
+        // Returns once the page is in the snapshot; a writer calls it before its first change to the page.
+        private void copy(int pageIndex) {
+            if (pageIndex >= pages.length()) {
+                return;
+            }
+            AccountSnapshot.Page page = pages.get(pageIndex);
+            if (page == null && pages.compareAndSet(pageIndex, null, COPYING)) {
+                try {
+                    pages.set(pageIndex, copyOrShare(pageIndex));
+                } catch (RuntimeException e) {
+                    pages.set(pageIndex, null);
+                    throw e;
+                }
+                return;
+            }
+            while (pages.get(pageIndex) == COPYING) {
+                Thread.onSpinWait();
+            }
+        }
+
+        // The dirty flag is cleared before reading, so a write after the copy marks the page for the next snapshot.
+        private AccountSnapshot.Page copyOrShare(int pageIndex) {
+            boolean dirty = (byte) DIRTY.getVolatile(dirtyPages, pageIndex) != 0;
+            // Creating an account marks its page as well, so a clean page has no accounts the previous copy lacks.
+            if (!dirty && previous != null && pageIndex < previous.getPages().length) {
+                return previous.getPages()[pageIndex];
+            }
+            DIRTY.setVolatile(dirtyPages, pageIndex, (byte) 0);
+            var page = new AccountSnapshot.Page(new int[PAGE_SIZE], new long[PAGE_SIZE]);
+            accountStore.readRange(pageIndex << PAGE_SHIFT, page.userIds, page.balances);
+            return page;
+        }
+
+        private AccountSnapshot toSnapshot() {
+            var copied = new AccountSnapshot.Page[pages.length()];
+            for (int i = 0; i < copied.length; i++) {
+                copied[i] = pages.get(i);
+            }
+            return new AccountSnapshot(version, maxAccountId, copied, userAccountIndex);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package sorokin.java.course.account;
+
+import java.util.function.Consumer;
+
+public interface AccountStore {
+
+    Account add(int accountId, int userId, long moneyAmount);
+
+    Account get(int accountId);
+
+    boolean contains(int accountId);
+
+    boolean remove(int accountId);
+
+    // Whether the account's balance is split into slots (HotAccount); only ObjectAccountStore has hot accounts.
+    default boolean isHot(int accountId) {
+        return false;
+    }
+
+    int size();
+
+    void forEach(Consumer<Account> action);
+
+    // Copies accounts firstAccountId .. firstAccountId + userIds.length - 1; a missing account gets userId 0.
+    void readRange(int firstAccountId, int[] userIds, long[] balances);
+}
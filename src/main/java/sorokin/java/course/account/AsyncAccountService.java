@@ -0,0 +1,183 @@
+package sorokin.java.course.account;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.metrics.OperationTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Non-blocking front of AccountService. depositAsync, withdrawAsync and transferAsync queue the
+// operation and return a future right away, so one caller can keep thousands of operations in
+// flight without a thread for each. A single applier thread drains the queue in micro-batches of
+// up to async.max-batch operations and applies each batch with one pass through the snapshot gate
+// and one journal batch: with journal.fsync=PER_OP that is one fsync per batch instead of one per
+// operation. The locking engine applies a batch in order; the sharded one has all of it in flight
+// at once (see AccountEngine.applyQueued).
+//
+// Outcomes are statuses, as with tryTransfer; a future completes exceptionally only on unexpected
+// failures such as the journal failing to write. Futures complete on the applier thread once the
+// batch is in the journal, so actions chained with the non-async CompletableFuture methods run
+// there and hold up the next batch. When async.queue-capacity operations are waiting, submitting
+// blocks until the applier catches up.
+@Component
+public class AsyncAccountService implements AutoCloseable {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final AccountService accountService;
+    private final BlockingQueue<QueuedOperation> queue;
+    private final int maxBatch;
+    private final OperationTimer batchTimer;
+    private final Thread applier;
+    private volatile boolean running;
+
+    public AsyncAccountService(
+            AccountService accountService,
+            BankMetrics bankMetrics,
+            @Value("${async.queue-capacity:65536}") int queueCapacity,
+            @Value("${async.max-batch:256}") int maxBatch
+    ) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("async.queue-capacity must be > 0");
+        }
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("async.max-batch must be > 0");
+        }
+        this.accountService = accountService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.batchTimer = bankMetrics.timer("account.async-batch");
+        this.running = true;
+        this.applier = Thread.ofPlatform()
+                .name("account-async-applier")
+                .daemon(true)
+                .start(this::applyQueued);
+    }
+
+    public CompletableFuture<TransferStatus> depositAsync(int accountId, long amount) {
+        return submit(new QueuedOperation(OperationType.DEPOSIT, accountId, accountId, amount));
+    }
+
+    public CompletableFuture<TransferStatus> withdrawAsync(int accountId, long amount) {
+        return submit(new QueuedOperation(OperationType.WITHDRAW, accountId, accountId, amount));
+    }
+
+    public CompletableFuture<TransferStatus> transferAsync(int fromAccountId, int toAccountId, long amount) {
+        return submit(new QueuedOperation(OperationType.TRANSFER, fromAccountId, toAccountId, amount));
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    // Applies everything queued so far before returning; later submissions fail.
+    @Override
+    public void close() {
+        running = false;
+        try {
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        QueuedOperation operation;
+        while ((operation = queue.poll()) != null) {
+            operation.completeExceptionally(closed());
+        }
+    }
+
+    private CompletableFuture<TransferStatus> submit(QueuedOperation operation) {
+        if (!running) {
+            operation.completeExceptionally(closed());
+            return operation;
+        }
+        try {
+            queue.put(operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            operation.completeExceptionally(new IllegalStateException("Interrupted while queueing the operation", e));
+            return operation;
+        }
+        // Queued after close() emptied the queue: nobody else will complete it.
+        if (!running && queue.remove(operation)) {
+            operation.completeExceptionally(closed());
+        }
+        return operation;
+    }
+
+    private void applyQueued() {
+        List<QueuedOperation> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            QueuedOperation first;
+            try {
+                // Polled rather than taken, so close() needs no interrupt: an interrupt would
+                // close the FileChannels the journal and the history are writing through.
+                first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatch - 1);
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    private void apply(List<QueuedOperation> batch) {
+        long startedAt = batchTimer.start();
+        try {
+            accountService.applyQueued(batch);
+            batchTimer.stop(startedAt);
+        } catch (RuntimeException e) {
+            // Most likely the journal could not force the batch: none of it is known to be durable.
+            batchTimer.fail(startedAt, e);
+            for (QueuedOperation operation : batch) {
+                operation.failure = e;
+            }
+        }
+        for (QueuedOperation operation : batch) {
+            if (operation.failure != null) {
+                operation.completeExceptionally(operation.failure);
+            } else {
+                operation.complete(operation.status);
+            }
+        }
+    }
+
+    private static IllegalStateException closed() {
+        return new IllegalStateException("Async account service is closed");
+    }
+
+    enum OperationType {
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER
+    }
+
+    // The future handed to the caller is the queued operation itself: one allocation per call.
+    static final class QueuedOperation extends CompletableFuture<TransferStatus> {
+
+        final OperationType type;
+        final int fromAccountId;
+        final int toAccountId;
+        final long amount;
+        // Written by AccountService.applyQueued on the applier thread.
+        TransferStatus status;
+        RuntimeException failure;
+
+        private QueuedOperation(OperationType type, int fromAccountId, int toAccountId, long amount) {
+            this.type = type;
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package sorokin.java.course.account;
+
+// A change applied to every open account by AccountService.adjustAll: the amount to credit (> 0) or to
+// charge (< 0) given the current balance, or 0 to leave the account as it is. A charge is capped at
+// the balance. Called from several threads at once, and again for an account whose balance changed
+// under a charge, so it must be side-effect free.
+@FunctionalInterface
+public interface BalanceAdjustment {
+
+    long delta(int accountId, int userId, long balance);
+}
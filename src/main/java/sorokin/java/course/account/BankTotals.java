@@ -0,0 +1,168 @@
+package sorokin.java.course.account;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bank-wide figures kept up to date by every balance change, so reading them is O(1) instead of a
+// walk over all accounts. Bank-wide sums are LongAdders: concurrent writers add to different cells
+// and don't contend. Per-user balances sit in a paged array indexed by user id; two operations
+// only meet on a slot when they move money of the same user. The total balance is derived from the
+// other sums rather than kept on its own: one atomic add less on every balance change.
+//
+// Figures are updated after the balances, so while operations are in flight they can be ahead of
+// or behind the accounts by those operations; AccountService.snapshot() is the consistent view.
+// Transfers between accounts of one user leave every balance figure as it is.
+@Component
+public class BankTotals {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Initial balances of opened and restored accounts.
+    private final LongAdder openingBalances = new LongAdder();
+    private final LongAdder feesCollected = new LongAdder();
+    private final LongAdder depositedAmount = new LongAdder();
+    private final LongAdder withdrawnAmount = new LongAdder();
+    // Moved by bulk adjustments such as end-of-day interest and maintenance fees.
+    private final LongAdder adjustmentsCredited = new LongAdder();
+    private final LongAdder adjustmentsCharged = new LongAdder();
+    private final LongAdder deposits = new LongAdder();
+    private final LongAdder withdrawals = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder accountsOpened = new LongAdder();
+    private final LongAdder accountsClosed = new LongAdder();
+    private volatile AtomicLongArray[] userBalancePages = new AtomicLongArray[0];
+
+    void accountOpened(int userId, long amount) {
+        accountsOpened.increment();
+        accountRestored(userId, amount);
+    }
+
+    // An account brought back from the journal on start: counted as open, but not as opened by this run.
+    void accountRestored(int userId, long amount) {
+        openingBalances.add(amount);
+        addToUser(userId, amount);
+    }
+
+    // The money of a closed account goes to another account of the same user.
+    void accountClosed() {
+        accountsClosed.increment();
+    }
+
+    void deposited(int userId, long amount) {
+        deposits.increment();
+        depositedAmount.add(amount);
+        addToUser(userId, amount);
+    }
+
+    void withdrawn(int userId, long amount) {
+        withdrawals.increment();
+        withdrawnAmount.add(amount);
+        addToUser(userId, -amount);
+    }
+
+    // A bulk adjustment updates the user per account and the bank-wide sums once per page of accounts.
+    void accountAdjusted(int userId, long delta) {
+        addToUser(userId, delta);
+    }
+
+    void adjustmentsApplied(long credited, long charged) {
+        adjustmentsCredited.add(credited);
+        adjustmentsCharged.add(charged);
+    }
+
+    // The difference between the debited and the credited amount is the commission the bank keeps.
+    void transferred(int fromUserId, int toUserId, long debitedAmount, long creditedAmount) {
+        transfers.increment();
+        if (fromUserId == toUserId && debitedAmount == creditedAmount) {
+            return;
+        }
+        if (debitedAmount != creditedAmount) {
+            feesCollected.add(debitedAmount - creditedAmount);
+        }
+        addToUser(fromUserId, -debitedAmount);
+        addToUser(toUserId, creditedAmount);
+    }
+
+    public long getTotalBalance() {
+        return openingBalances.sum() + depositedAmount.sum() - withdrawnAmount.sum() - feesCollected.sum()
+                + adjustmentsCredited.sum() - adjustmentsCharged.sum();
+    }
+
+    // 0 for a user without accounts.
+    public long getUserBalance(int userId) {
+        AtomicLongArray[] pages = userBalancePages;
+        int pageIndex = userId >>> PAGE_SHIFT;
+        if (userId <= 0 || pageIndex >= pages.length || pages[pageIndex] == null) {
+            return 0;
+        }
+        return pages[pageIndex].get(userId & PAGE_MASK);
+    }
+
+    public long getFeesCollected() {
+        return feesCollected.sum();
+    }
+
+    public long getDepositedAmount() {
+        return depositedAmount.sum();
+    }
+
+    public long getWithdrawnAmount() {
+        return withdrawnAmount.sum();
+    }
+
+    public long getAdjustmentsCredited() {
+        return adjustmentsCredited.sum();
+    }
+
+    public long getAdjustmentsCharged() {
+        return adjustmentsCharged.sum();
+    }
+
+    public long getDeposits() {
+        return deposits.sum();
+    }
+
+    public long getWithdrawals() {
+        return withdrawals.sum();
+    }
+
+    public long getTransfers() {
+        return transfers.sum();
+    }
+
+    public long getAccountsOpened() {
+        return accountsOpened.sum();
+    }
+
+    public long getAccountsClosed() {
+        return accountsClosed.sum();
+    }
+
+    private void addToUser(int userId, long amount) {
+        AtomicLongArray[] pages = userBalancePages;
+        int pageIndex = userId >>> PAGE_SHIFT;
+        AtomicLongArray page = pageIndex < pages.length ? pages[pageIndex] : null;
+        if (page == null) {
+            page = pageForWrite(pageIndex);
+        }
+        page.getAndAdd(userId & PAGE_MASK, amount);
+    }
+
+    // Copy-on-write page directory, as in ObjectAccountStore.
+    private synchronized AtomicLongArray pageForWrite(int pageIndex) {
+        AtomicLongArray[] current = userBalancePages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        AtomicLongArray[] next = Arrays.copyOf(current, Math.max(current.length, pageIndex + 1));
+        AtomicLongArray page = new AtomicLongArray(PAGE_SIZE);
+        next[pageIndex] = page;
+        userBalancePages = next;
+        return page;
+    }
+}
@@ -0,0 +1,169 @@
+package sorokin.java.course.account;
+
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.history.HistoryEntryType;
+import sorokin.java.course.journal.LedgerJournal;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import static sorokin.java.course.account.AccountSnapshot.PAGE_SHIFT;
+import static sorokin.java.course.account.AccountSnapshot.PAGE_SIZE;
+
+// Applies a BalanceAdjustment to all accounts. The id range is split in halves on the fork-join pool
+// down to single snapshot pages; a page is one task, passes the snapshot gate once and is one journal
+// batch. Nothing is locked: each account takes one CAS credit or debit, like a deposit or a
+// withdrawal, so transfers keep running and at worst retry a CAS.
+//
+// The delta is computed from the balance read just before it is applied. A transfer landing in between
+// leaves the account as if the adjustment had run right before it. Accounts opened after the run
+// started aren't adjusted; accounts closed meanwhile are skipped.
+final class BulkAdjustment {
+
+    private final BalanceAdjustment adjustment;
+    private final int maxAccountId;
+    private final AccountStore accountStore;
+    private final AccountSnapshots accountSnapshots;
+    private final LedgerJournal ledgerJournal;
+    private final AccountHistory accountHistory;
+    private final BankTotals bankTotals;
+    private final LongAdder accounts = new LongAdder();
+    private final LongAdder changed = new LongAdder();
+    private final LongAdder credited = new LongAdder();
+    private final LongAdder charged = new LongAdder();
+
+    BulkAdjustment(
+            BalanceAdjustment adjustment,
+            int maxAccountId,
+            AccountStore accountStore,
+            AccountSnapshots accountSnapshots,
+            LedgerJournal ledgerJournal,
+            AccountHistory accountHistory,
+            BankTotals bankTotals
+    ) {
+        this.adjustment = adjustment;
+        this.maxAccountId = maxAccountId;
+        this.accountStore = accountStore;
+        this.accountSnapshots = accountSnapshots;
+        this.ledgerJournal = ledgerJournal;
+        this.accountHistory = accountHistory;
+        this.bankTotals = bankTotals;
+    }
+
+    BulkAdjustmentResult execute(ForkJoinPool pool) {
+        long startedAt = System.nanoTime();
+        pool.invoke(new Pages(0, (maxAccountId >>> PAGE_SHIFT) + 1));
+        return new BulkAdjustmentResult(accounts.sum(), changed.sum(), credited.sum(), charged.sum(),
+                System.nanoTime() - startedAt);
+    }
+
+    private void adjustPage(int pageIndex) {
+        int firstAccountId = Math.max(1, pageIndex << PAGE_SHIFT);
+        int lastAccountId = Math.min(maxAccountId, (pageIndex << PAGE_SHIFT) + PAGE_SIZE - 1);
+        if (firstAccountId > lastAccountId) {
+            return;
+        }
+        long pageAccounts = 0;
+        long pageChanged = 0;
+        long pageCredited = 0;
+        long pageCharged = 0;
+        accountSnapshots.enter();
+        try {
+            // The page is written only within this pass through the gate, so one call covers all its accounts.
+            accountSnapshots.beforeWrite(firstAccountId);
+            ledgerJournal.beginBatch();
+            try {
+                for (int accountId = firstAccountId; accountId <= lastAccountId; accountId++) {
+                    Account account = accountStore.get(accountId);
+                    if (account == null) {
+                        continue;
+                    }
+                    long delta = adjust(account);
+                    if (delta == Account.CLOSED) {
+                        continue;
+                    }
+                    pageAccounts++;
+                    if (delta > 0) {
+                        pageChanged++;
+                        pageCredited += delta;
+                    } else if (delta < 0) {
+                        pageChanged++;
+                        pageCharged -= delta;
+                    }
+                }
+            } finally {
+                ledgerJournal.endBatch();
+            }
+        } finally {
+            accountSnapshots.exit();
+        }
+        accounts.add(pageAccounts);
+        changed.add(pageChanged);
+        credited.add(pageCredited);
+        charged.add(pageCharged);
+        bankTotals.adjustmentsApplied(pageCredited, pageCharged);
+    }
+
+    // The delta applied, or CLOSED if the account was closed before it could be.
+    private long adjust(Account account) {
+        int accountId = account.getId();
+        while (true) {
+            long balance = account.getRawMoneyAmount();
+            if (balance == Account.CLOSED) {
+                return Account.CLOSED;
+            }
+            long delta = adjustment.delta(accountId, account.getUserId(), balance);
+            if (delta == 0) {
+                return 0;
+            }
+            if (delta > 0) {
+                long balanceAfter = account.creditAndGet(delta);
+                if (balanceAfter == Account.CLOSED) {
+                    return Account.CLOSED;
+                }
+                ledgerJournal.deposited(accountId, delta);
+                accountHistory.record(accountId, HistoryEntryType.BALANCE_ADJUSTMENT, 0, delta, balanceAfter);
+                bankTotals.accountAdjusted(account.getUserId(), delta);
+                return delta;
+            }
+            long amount = Math.min(-delta, balance);
+            if (amount == 0) {
+                return 0;
+            }
+            long balanceAfter = account.debitAndGet(amount);
+            if (balanceAfter == Account.CLOSED) {
+                return Account.CLOSED;
+            }
+            if (balanceAfter == Account.INSUFFICIENT_FUNDS) {
+                // A withdrawal took the money after the read; charge what the new balance allows.
+                continue;
+            }
+            ledgerJournal.withdrawn(accountId, amount);
+            accountHistory.record(accountId, HistoryEntryType.BALANCE_ADJUSTMENT, 0, -amount, balanceAfter);
+            bankTotals.accountAdjusted(account.getUserId(), -amount);
+            return -amount;
+        }
+    }
+
+    private class Pages extends RecursiveAction {
+
+        private final int fromPage;
+        private final int toPage;
+
+        Pages(int fromPage, int toPage) {
+            this.fromPage = fromPage;
+            this.toPage = toPage;
+        }
+
+        @Override
+        protected void compute() {
+            if (toPage - fromPage == 1) {
+                adjustPage(fromPage);
+                return;
+            }
+            int middle = (fromPage + toPage) >>> 1;
+            invokeAll(new Pages(fromPage, middle), new Pages(middle, toPage));
+        }
+    }
+}
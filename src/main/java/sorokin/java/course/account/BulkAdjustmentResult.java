@@ -0,0 +1,4 @@
+package sorokin.java.course.account;
+
+public record BulkAdjustmentResult(long accounts, long changed, long credited, long charged, long elapsedNanos) {
+}
@@ -0,0 +1,176 @@
+package sorokin.java.course.account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// An account whose balance is split into slots on separate cache lines, like a LongAdder that can't go
+// below zero. A thread credits its own slot, so concurrent deposits and incoming transfers no longer
+// retry one CAS. A debit takes from the caller's slot if that slot covers it; otherwise it takes the
+// slots one by one under the account's monitor. No slot ever goes negative, so neither does the sum.
+//
+// Closing puts the CLOSED marker into every slot, slot 0 first, and keeps what it swept: an operation
+// on a slot either lands before the sweep reaches it, and is part of the moved amount, or fails.
+//
+// The balance is the sum of the slots. While a debit is being gathered from several slots, a reader
+// outside a snapshot may see it partly applied; snapshots wait for operations in flight and are exact.
+// The balance returned after a credit or debit, which goes into the history, is read right after the
+// change and may include operations of other threads.
+final class HotAccount extends Account {
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    // One slot per 64-byte cache line, with a free line in front of the first one.
+    private static final int SLOT_PADDING = 8;
+
+    private final long[] slots;
+    private final int mask;
+
+    HotAccount(int id, int userId, long moneyAmount, int slotCount) {
+        super(id, userId, 0);
+        if (slotCount <= 0 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("slot count must be a positive power of two");
+        }
+        this.slots = new long[(slotCount + 2) * SLOT_PADDING];
+        this.mask = slotCount - 1;
+        slots[index(0)] = moneyAmount;
+    }
+
+    @Override
+    public void setMoneyAmount(long moneyAmount) {
+        if (moneyAmount < 0) {
+            throw new IllegalArgumentException("Attempted to set moneyAmount less than 0");
+        }
+        synchronized (this) {
+            if (slot(0) == CLOSED) {
+                throw new IllegalStateException("Account is closed: id=%s".formatted(getId()));
+            }
+            for (int slot = 1; slot <= mask; slot++) {
+                SLOTS.setVolatile(slots, index(slot), 0L);
+            }
+            SLOTS.setVolatile(slots, index(0), moneyAmount);
+        }
+    }
+
+    @Override
+    public long creditAndGet(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Attempted to credit negative amount");
+        }
+        int home = homeSlot();
+        for (int i = 0; ; i++) {
+            // A lost CAS means another thread shares the slot right now; the next slot is likely free.
+            int index = index((home + i) & mask);
+            long current = (long) SLOTS.getVolatile(slots, index);
+            if (current == CLOSED) {
+                return CLOSED;
+            }
+            if (SLOTS.compareAndSet(slots, index, current, Math.addExact(current, amount))) {
+                return sumOpenSlots();
+            }
+        }
+    }
+
+    @Override
+    public long debitAndGet(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Attempted to debit negative amount");
+        }
+        int index = index(homeSlot());
+        while (true) {
+            long current = (long) SLOTS.getVolatile(slots, index);
+            if (current == CLOSED) {
+                return CLOSED;
+            }
+            if (current < amount) {
+                return gatherAndDebit(amount);
+            }
+            if (SLOTS.compareAndSet(slots, index, current, current - amount)) {
+                return sumOpenSlots();
+            }
+        }
+    }
+
+    // Holding the monitor keeps close() from sweeping money this method has taken but not yet kept or returned.
+    private synchronized long gatherAndDebit(long amount) {
+        long balance = getRawMoneyAmount();
+        if (balance == CLOSED) {
+            return CLOSED;
+        }
+        if (balance < amount) {
+            return INSUFFICIENT_FUNDS;
+        }
+        long missing = amount;
+        for (int slot = 0; slot <= mask && missing > 0; slot++) {
+            int index = index(slot);
+            while (true) {
+                long current = (long) SLOTS.getVolatile(slots, index);
+                long taken = Math.min(current, missing);
+                if (taken == 0 || SLOTS.compareAndSet(slots, index, current, current - taken)) {
+                    missing -= taken;
+                    break;
+                }
+            }
+        }
+        if (missing > 0) {
+            // Debits on single slots got there first; what was taken goes back.
+            addToSlot(index(0), amount - missing);
+            return INSUFFICIENT_FUNDS;
+        }
+        return sumOpenSlots();
+    }
+
+    @Override
+    synchronized long close() {
+        long remaining = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            long swept = (long) SLOTS.getAndSet(slots, index(slot), CLOSED);
+            if (swept == CLOSED) {
+                throw new IllegalStateException("Account is already closed: id=%s".formatted(getId()));
+            }
+            remaining += swept;
+        }
+        return remaining;
+    }
+
+    @Override
+    protected long getRawMoneyAmount() {
+        return slot(0) == CLOSED ? CLOSED : sumOpenSlots();
+    }
+
+    @Override
+    protected boolean compareAndSetRawMoneyAmount(long expected, long newValue) {
+        throw new UnsupportedOperationException("The balance of a hot account is split into slots");
+    }
+
+    // A slot closed meanwhile counts as empty: the caller's own change has already landed.
+    private long sumOpenSlots() {
+        long sum = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            long current = slot(slot);
+            if (current != CLOSED) {
+                sum += current;
+            }
+        }
+        return sum;
+    }
+
+    private void addToSlot(int index, long amount) {
+        while (true) {
+            long current = (long) SLOTS.getVolatile(slots, index);
+            if (SLOTS.compareAndSet(slots, index, current, current + amount)) {
+                return;
+            }
+        }
+    }
+
+    private long slot(int slot) {
+        return (long) SLOTS.getVolatile(slots, index(slot));
+    }
+
+    private int homeSlot() {
+        return (int) Thread.currentThread().threadId() & mask;
+    }
+
+    private static int index(int slot) {
+        return (slot + 1) * SLOT_PADDING;
+    }
+}
@@ -0,0 +1,56 @@
+package sorokin.java.course.account;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+// The accounts configured as hot (account.hot-accounts): a few accounts, such as merchants, that take most
+// of the deposits and incoming transfers. Their balance is a HotAccount split into slots, so concurrent
+// credits don't queue up on one CAS, and the locking engine leaves them out of the transfer locks.
+@Component
+public class HotAccounts {
+
+    private static final HotAccounts NONE = new HotAccounts(new int[0], 1);
+
+    // Bit N is set for hot account N.
+    private final long[] accountBits;
+    private final int slots;
+
+    public HotAccounts(
+            @Value("${account.hot-accounts:}") int[] accountIds,
+            @Value("${account.hot-account-slots:0}") int slots
+    ) {
+        if (slots < 0 || Integer.bitCount(slots) > 1) {
+            throw new IllegalArgumentException("account.hot-account-slots must be 0 or a power of two");
+        }
+        // Checked before the bitset is sized from the largest id: a negative id would size it as a huge one.
+        if (Arrays.stream(accountIds).anyMatch(accountId -> accountId <= 0)) {
+            throw new IllegalArgumentException("account.hot-accounts must list account ids > 0");
+        }
+        int maxAccountId = Arrays.stream(accountIds).max().orElse(0);
+        this.accountBits = new long[maxAccountId == 0 ? 0 : (maxAccountId >>> 6) + 1];
+        for (int accountId : accountIds) {
+            accountBits[accountId >>> 6] |= 1L << accountId;
+        }
+        // 0 = one slot per CPU, rounded up to a power of two.
+        this.slots = slots > 0 ? slots : Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+    }
+
+    public static HotAccounts none() {
+        return NONE;
+    }
+
+    public boolean isEmpty() {
+        return accountBits.length == 0;
+    }
+
+    public boolean contains(int accountId) {
+        int word = accountId >>> 6;
+        return word < accountBits.length && (accountBits[word] & 1L << accountId) != 0;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+}
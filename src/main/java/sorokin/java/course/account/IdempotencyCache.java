@@ -0,0 +1,283 @@
+package sorokin.java.course.account;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Remembers the outcome of operations by idempotency key, so a client retrying after a timeout
+// gets the first outcome back instead of applying the operation twice. A retry that arrives while
+// the first attempt still runs waits for it.
+//
+// Keys are spread over stripes, each under its own lock. A stripe keeps its keys in preallocated
+// arrays: a ring in insertion order and an open-addressing index over it. Once the ring is full,
+// or its oldest key is past the TTL, the oldest key is dropped. So memory is fixed up front, and a
+// steady stream of keys leaves no entry objects for the collector to promote and then throw away.
+// A retry after its key was dropped runs the operation again, so the TTL has to cover the retry
+// window of the clients.
+//
+// A key is kept as a 64-bit hash: two keys would only be confused if both their hashes and the
+// fingerprints of their operations were equal.
+@Component
+public class IdempotencyCache {
+
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final Object IN_FLIGHT = new Object();
+    // The attempt failed without an outcome worth keeping, or its entry was dropped: run it again.
+    private static final Object RETRY = new Object();
+    private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Stripe[] stripes;
+    private final long ttlMillis;
+
+    public IdempotencyCache(
+            @Value("${idempotency.max-entries:100000}") int maxEntries,
+            @Value("${idempotency.ttl-seconds:600}") long ttlSeconds
+    ) {
+        if (maxEntries < STRIPES) {
+            throw new IllegalArgumentException("idempotency.max-entries must be >= " + STRIPES);
+        }
+        if (ttlSeconds <= 0) {
+            throw new IllegalArgumentException("idempotency.ttl-seconds must be > 0");
+        }
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxEntries / STRIPES);
+        }
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    // Without a key the operation just runs. The fingerprint identifies the operation and its
+    // arguments: a key reused for a different request is rejected rather than answered wrongly.
+    // Rejections such as insufficient funds are outcomes and are remembered; other failures are
+    // not, so a retry runs the operation again.
+    @SuppressWarnings("unchecked")
+    <T> T execute(String key, long fingerprint, Supplier<T> operation) {
+        if (key == null) {
+            return operation.get();
+        }
+        long keyHash = hash(key);
+        Stripe stripe = stripes[(int) (keyHash >>> (Long.SIZE - STRIPE_BITS))];
+        while (true) {
+            long claim = stripe.claim(keyHash, fingerprint, System.currentTimeMillis(), ttlMillis);
+            if (claim == Stripe.MISMATCH) {
+                throw new IllegalArgumentException("Idempotency key %s was already used for a different operation".formatted(key));
+            }
+            if (claim < 0) {
+                Object outcome = stripe.awaitOutcome((int) (-claim - 1), keyHash, fingerprint);
+                if (outcome == RETRY) {
+                    continue;
+                }
+                if (outcome instanceof RuntimeException failure) {
+                    throw failure;
+                }
+                return (T) outcome;
+            }
+            try {
+                T result = operation.get();
+                stripe.complete(claim, result);
+                return result;
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                stripe.complete(claim, e);
+                throw e;
+            } catch (RuntimeException | Error e) {
+                stripe.complete(claim, RETRY);
+                throw e;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    static long fingerprint(int operation, long... values) {
+        long hash = operation;
+        for (long value : values) {
+            hash = mix(hash, value);
+        }
+        return hash;
+    }
+
+    static long mix(long hash, long value) {
+        return hash * 0x9E3779B97F4A7C15L + value;
+    }
+
+    // FNV-1a over the chars and a final mix, so that the high bits picking the stripe and the low
+    // bits picking the index slot both depend on every char.
+    private static long hash(String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static final class Stripe {
+
+        // claim() result for a key taken by a different operation.
+        private static final long MISMATCH = Long.MIN_VALUE;
+        private static final int EMPTY = 0;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        // The ring: oldest is the next position to drop, the newest is oldest + size - 1.
+        private final long[] keyHashes;
+        private final long[] fingerprints;
+        private final long[] createdAtMillis;
+        // Numbers every claim, so that a finishing attempt can tell its position was dropped and reused.
+        private final int[] claims;
+        private final Object[] outcomes;
+        // Linear probing over ring position + 1.
+        private final int[] index;
+        private final int indexMask;
+        private int oldest;
+        private int size;
+        private int nextClaim;
+
+        private Stripe(int capacity) {
+            this.keyHashes = new long[capacity];
+            this.fingerprints = new long[capacity];
+            this.createdAtMillis = new long[capacity];
+            this.claims = new int[capacity];
+            this.outcomes = new Object[capacity];
+            // At most a quarter full, so probe runs stay short.
+            this.index = new int[Integer.highestOneBit(capacity) << 2];
+            this.indexMask = index.length - 1;
+        }
+
+        // Returns claim number << 32 | position when the caller is to run the operation,
+        // -(position + 1) when the key already has an entry, or MISMATCH.
+        private long claim(long keyHash, long fingerprint, long nowMillis, long ttlMillis) {
+            lock.lock();
+            try {
+                while (size > 0 && nowMillis - createdAtMillis[oldest] >= ttlMillis) {
+                    dropOldest();
+                }
+                int position = find(keyHash);
+                if (position >= 0) {
+                    if (fingerprints[position] != fingerprint) {
+                        return MISMATCH;
+                    }
+                    if (outcomes[position] != RETRY) {
+                        return -position - 1;
+                    }
+                } else {
+                    if (size == keyHashes.length) {
+                        dropOldest();
+                    }
+                    position = (oldest + size) % keyHashes.length;
+                    size++;
+                    keyHashes[position] = keyHash;
+                    fingerprints[position] = fingerprint;
+                    createdAtMillis[position] = nowMillis;
+                    insertIntoIndex(keyHash, position);
+                }
+                outcomes[position] = IN_FLIGHT;
+                int claim = nextClaim;
+                nextClaim = (nextClaim + 1) & Integer.MAX_VALUE;
+                claims[position] = claim;
+                return (long) claim << Integer.SIZE | position;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void complete(long claim, Object outcome) {
+            int position = (int) claim;
+            lock.lock();
+            try {
+                if (claims[position] == (int) (claim >>> Integer.SIZE) && outcomes[position] == IN_FLIGHT) {
+                    outcomes[position] = outcome;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Duplicates in flight at the same time are rare, so waiting is a plain poll.
+        private Object awaitOutcome(int position, long keyHash, long fingerprint) {
+            while (true) {
+                lock.lock();
+                try {
+                    if (outcomes[position] == null || keyHashes[position] != keyHash || fingerprints[position] != fingerprint) {
+                        return RETRY;
+                    }
+                    if (outcomes[position] != IN_FLIGHT) {
+                        return outcomes[position];
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                LockSupport.parkNanos(WAIT_NANOS);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IllegalStateException("Interrupted while waiting for the first attempt of the operation");
+                }
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int find(long keyHash) {
+            for (int slot = slotOf(keyHash); index[slot] != EMPTY; slot = (slot + 1) & indexMask) {
+                int position = index[slot] - 1;
+                if (keyHashes[position] == keyHash) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        private void insertIntoIndex(long keyHash, int position) {
+            int slot = slotOf(keyHash);
+            while (index[slot] != EMPTY) {
+                slot = (slot + 1) & indexMask;
+            }
+            index[slot] = position + 1;
+        }
+
+        private void dropOldest() {
+            int slot = slotOf(keyHashes[oldest]);
+            while (index[slot] != oldest + 1) {
+                slot = (slot + 1) & indexMask;
+            }
+            removeFromIndex(slot);
+            // Lets a waiter on the dropped entry see that it is gone.
+            outcomes[oldest] = null;
+            oldest = (oldest + 1) % keyHashes.length;
+            size--;
+        }
+
+        // Backward-shift deletion: later entries of the probe run move into the hole when their
+        // home slot allows it, so lookups need no tombstones.
+        private void removeFromIndex(int hole) {
+            for (int slot = (hole + 1) & indexMask; index[slot] != EMPTY; slot = (slot + 1) & indexMask) {
+                int home = slotOf(keyHashes[index[slot] - 1]);
+                if (((slot - home) & indexMask) >= ((slot - hole) & indexMask)) {
+                    index[hole] = index[slot];
+                    hole = slot;
+                }
+            }
+            index[hole] = EMPTY;
+        }
+
+        private int slotOf(long keyHash) {
+            return (int) keyHash & indexMask;
+        }
+    }
+}
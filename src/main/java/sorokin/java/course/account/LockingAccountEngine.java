@@ -0,0 +1,111 @@
+package sorokin.java.course.account;
+
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.history.HistoryEntryType;
+import sorokin.java.course.journal.LedgerJournal;
+
+// Deposits and withdrawals are single CAS updates on the balance; a transfer holds the stripe
+// locks of both accounts, which keeps closeAccount out while money is between them. A hot account
+// is not locked: a transfer from it may find it closed before the debit, one into it after the debit.
+public class LockingAccountEngine implements AccountEngine {
+
+    private final AccountStore accountStore;
+    private final AccountLocks accountLocks;
+    private final LedgerJournal ledgerJournal;
+    private final AccountHistory accountHistory;
+    private final BankTotals bankTotals;
+    private final int commissionBasisPoints;
+
+    public LockingAccountEngine(
+            AccountStore accountStore,
+            AccountLocks accountLocks,
+            LedgerJournal ledgerJournal,
+            AccountHistory accountHistory,
+            BankTotals bankTotals,
+            AccountProperties accountProperties
+    ) {
+        this.accountStore = accountStore;
+        this.accountLocks = accountLocks;
+        this.ledgerJournal = ledgerJournal;
+        this.accountHistory = accountHistory;
+        this.bankTotals = bankTotals;
+        this.commissionBasisPoints = accountProperties.getTransferCommissionBasisPoints();
+    }
+
+    @Override
+    public TransferStatus deposit(int accountId, long amount) {
+        Account account = accountStore.get(accountId);
+        long balance = account == null ? Account.CLOSED : account.creditAndGet(amount);
+        if (balance == Account.CLOSED) {
+            return TransferStatus.NO_SUCH_ACCOUNT;
+        }
+        ledgerJournal.deposited(accountId, amount);
+        accountHistory.record(accountId, HistoryEntryType.DEPOSIT, 0, amount, balance);
+        bankTotals.deposited(account.getUserId(), amount);
+        return TransferStatus.COMPLETED;
+    }
+
+    @Override
+    public TransferStatus withdraw(int accountId, long amount) {
+        Account account = accountStore.get(accountId);
+        if (account == null) {
+            return TransferStatus.NO_SUCH_ACCOUNT;
+        }
+        long balance = account.debitAndGet(amount);
+        if (balance < 0) {
+            return balance == Account.CLOSED ? TransferStatus.NO_SUCH_ACCOUNT : TransferStatus.INSUFFICIENT_FUNDS;
+        }
+        ledgerJournal.withdrawn(accountId, amount);
+        accountHistory.record(accountId, HistoryEntryType.WITHDRAWAL, 0, -amount, balance);
+        bankTotals.withdrawn(account.getUserId(), amount);
+        return TransferStatus.COMPLETED;
+    }
+
+    @Override
+    public TransferStatus transfer(int fromAccountId, int toAccountId, long amount) {
+        long fromBalance;
+        long toBalance;
+        long amountToTransfer;
+        int fromUserId;
+        int toUserId;
+        // A hot account stays out of the locks, or its stripe would queue up every transfer into it again.
+        // The other account is still locked, so a transfer into a hot account closed meanwhile can refund.
+        boolean hotTarget = accountStore.isHot(toAccountId);
+        int firstLocked = !hotTarget && accountStore.isHot(fromAccountId) ? toAccountId : fromAccountId;
+        int secondLocked = hotTarget ? fromAccountId : toAccountId;
+        accountLocks.lockBoth(firstLocked, secondLocked);
+        try {
+            // Existence is checked before any Account is fetched: the primitive store hands out a
+            // fresh view per get, and a view abandoned on this early return was not scalar-replaced.
+            if (!accountStore.contains(fromAccountId) || !accountStore.contains(toAccountId)) {
+                return TransferStatus.NO_SUCH_ACCOUNT;
+            }
+            Account accountFrom = accountStore.get(fromAccountId);
+            Account accountTo = accountStore.get(toAccountId);
+
+            // Both accounts are locked against closeAccount, but deposits and withdrawals
+            // are lock-free, so the balance check has to happen inside the debit CAS.
+            fromBalance = accountFrom.debitAndGet(amount);
+            if (fromBalance < 0) {
+                return fromBalance == Account.CLOSED ? TransferStatus.NO_SUCH_ACCOUNT : TransferStatus.INSUFFICIENT_FUNDS;
+            }
+
+            amountToTransfer = TransferCommission.creditedAmount(accountFrom, accountTo, amount, commissionBasisPoints);
+            toBalance = accountTo.creditAndGet(amountToTransfer);
+            if (toBalance == Account.CLOSED) {
+                accountFrom.credit(amount);
+                return TransferStatus.NO_SUCH_ACCOUNT;
+            }
+            ledgerJournal.transferred(fromAccountId, toAccountId, amount, amountToTransfer);
+            fromUserId = accountFrom.getUserId();
+            toUserId = accountTo.getUserId();
+        } finally {
+            accountLocks.unlockBoth(firstLocked, secondLocked);
+        }
+        // Outside the locks: a full ring may write to the spill file.
+        accountHistory.record(fromAccountId, HistoryEntryType.TRANSFER_OUT, toAccountId, -amount, fromBalance);
+        accountHistory.record(toAccountId, HistoryEntryType.TRANSFER_IN, fromAccountId, amountToTransfer, toBalance);
+        bankTotals.transferred(fromUserId, toUserId, amount, amountToTransfer);
+        return TransferStatus.COMPLETED;
+    }
+}
@@ -0,0 +1,136 @@
+package sorokin.java.course.account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// One Account object per account, found by id in paged reference arrays. Ids come from a counter,
+// so the pages are dense, and unlike a ConcurrentHashMap<Integer, Account> a lookup needs no boxing.
+// Hot accounts are HotAccount objects with a split balance.
+public class ObjectAccountStore implements AccountStore {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final VarHandle ACCOUNT_ARRAY = MethodHandles.arrayElementVarHandle(Account[].class);
+
+    private volatile Account[][] pages;
+    private final AtomicInteger size;
+    private final HotAccounts hotAccounts;
+
+    public ObjectAccountStore() {
+        this(HotAccounts.none());
+    }
+
+    public ObjectAccountStore(HotAccounts hotAccounts) {
+        this.pages = new Account[0][];
+        this.size = new AtomicInteger();
+        this.hotAccounts = hotAccounts;
+    }
+
+    @Override
+    public Account add(int accountId, int userId, long moneyAmount) {
+        if (accountId <= 0) {
+            throw new IllegalArgumentException("account id must be > 0");
+        }
+        Account account = hotAccounts.contains(accountId)
+                ? new HotAccount(accountId, userId, moneyAmount, hotAccounts.getSlots())
+                : new Account(accountId, userId, moneyAmount);
+        Account[] page = pageForWrite(accountId);
+        if (!ACCOUNT_ARRAY.compareAndSet(page, accountId & PAGE_MASK, null, account)) {
+            throw new IllegalStateException("Account already exists: id=%s".formatted(accountId));
+        }
+        size.incrementAndGet();
+        return account;
+    }
+
+    @Override
+    public Account get(int accountId) {
+        Account[] page = pageForRead(accountId);
+        return page == null ? null : (Account) ACCOUNT_ARRAY.getVolatile(page, accountId & PAGE_MASK);
+    }
+
+    @Override
+    public boolean contains(int accountId) {
+        return get(accountId) != null;
+    }
+
+    @Override
+    public boolean remove(int accountId) {
+        Account[] page = pageForRead(accountId);
+        if (page == null) {
+            return false;
+        }
+        int slot = accountId & PAGE_MASK;
+        Account account = (Account) ACCOUNT_ARRAY.getVolatile(page, slot);
+        if (account == null || !ACCOUNT_ARRAY.compareAndSet(page, slot, account, null)) {
+            return false;
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean isHot(int accountId) {
+        return hotAccounts.contains(accountId);
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void forEach(Consumer<Account> action) {
+        for (Account[] page : pages) {
+            if (page == null) {
+                continue;
+            }
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                Account account = (Account) ACCOUNT_ARRAY.getVolatile(page, slot);
+                if (account != null) {
+                    action.accept(account);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readRange(int firstAccountId, int[] userIds, long[] balances) {
+        for (int i = 0; i < userIds.length; i++) {
+            Account account = get(firstAccountId + i);
+            long balance = account == null ? Account.CLOSED : account.getRawMoneyAmount();
+            userIds[i] = balance == Account.CLOSED ? 0 : account.getUserId();
+            balances[i] = balance == Account.CLOSED ? 0 : balance;
+        }
+    }
+
+    private Account[] pageForRead(int accountId) {
+        if (accountId <= 0) {
+            return null;
+        }
+        Account[][] snapshot = pages;
+        int pageIndex = accountId >>> PAGE_SHIFT;
+        return pageIndex < snapshot.length ? snapshot[pageIndex] : null;
+    }
+
+    private Account[] pageForWrite(int accountId) {
+        Account[] page = pageForRead(accountId);
+        return page != null ? page : allocatePage(accountId >>> PAGE_SHIFT);
+    }
+
+    // Copy-on-write page directory, as in PrimitiveAccountStore.
+    private synchronized Account[] allocatePage(int pageIndex) {
+        Account[][] current = pages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        Account[][] next = Arrays.copyOf(current, Math.max(current.length, pageIndex + 1));
+        Account[] page = new Account[PAGE_SIZE];
+        next[pageIndex] = page;
+        pages = next;
+        return page;
+    }
+}
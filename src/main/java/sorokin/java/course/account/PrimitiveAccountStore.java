@@ -0,0 +1,165 @@
+package sorokin.java.course.account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Keeps userId and balance of account N in slot N of paged primitive arrays instead of one object per account.
+// Account instances handed out by this store are short-lived views that read and write the arrays.
+public class PrimitiveAccountStore implements AccountStore {
+
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int NO_USER = 0;
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONG_ARRAY = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private volatile Page[] pages;
+    private final AtomicInteger size;
+
+    public PrimitiveAccountStore() {
+        this.pages = new Page[0];
+        this.size = new AtomicInteger();
+    }
+
+    @Override
+    public Account add(int accountId, int userId, long moneyAmount) {
+        if (accountId <= 0 || userId <= 0) {
+            throw new IllegalArgumentException("account id and user id must be > 0");
+        }
+        Page page = pageForWrite(accountId);
+        int slot = accountId & PAGE_MASK;
+        if ((int) INT_ARRAY.getVolatile(page.userIds, slot) != NO_USER) {
+            throw new IllegalStateException("Account already exists: id=%s".formatted(accountId));
+        }
+        LONG_ARRAY.setVolatile(page.balances, slot, moneyAmount);
+        INT_ARRAY.setVolatile(page.userIds, slot, userId);
+        size.incrementAndGet();
+        return new AccountView(accountId, userId, page.balances, slot);
+    }
+
+    @Override
+    public Account get(int accountId) {
+        Page page = pageForRead(accountId);
+        if (page == null) {
+            return null;
+        }
+        int slot = accountId & PAGE_MASK;
+        int userId = (int) INT_ARRAY.getVolatile(page.userIds, slot);
+        return userId == NO_USER ? null : new AccountView(accountId, userId, page.balances, slot);
+    }
+
+    @Override
+    public boolean contains(int accountId) {
+        Page page = pageForRead(accountId);
+        return page != null && (int) INT_ARRAY.getVolatile(page.userIds, accountId & PAGE_MASK) != NO_USER;
+    }
+
+    @Override
+    public boolean remove(int accountId) {
+        Page page = pageForRead(accountId);
+        if (page == null) {
+            return false;
+        }
+        int slot = accountId & PAGE_MASK;
+        int userId = (int) INT_ARRAY.getVolatile(page.userIds, slot);
+        if (userId == NO_USER || !INT_ARRAY.compareAndSet(page.userIds, slot, userId, NO_USER)) {
+            return false;
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void forEach(Consumer<Account> action) {
+        Page[] snapshot = pages;
+        for (int pageIndex = 0; pageIndex < snapshot.length; pageIndex++) {
+            Page page = snapshot[pageIndex];
+            if (page == null) {
+                continue;
+            }
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                int userId = (int) INT_ARRAY.getVolatile(page.userIds, slot);
+                if (userId != NO_USER) {
+                    action.accept(new AccountView((pageIndex << PAGE_SHIFT) | slot, userId, page.balances, slot));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readRange(int firstAccountId, int[] userIds, long[] balances) {
+        for (int i = 0; i < userIds.length; i++) {
+            int accountId = firstAccountId + i;
+            Page page = pageForRead(accountId);
+            int slot = accountId & PAGE_MASK;
+            int userId = page == null ? NO_USER : (int) INT_ARRAY.getVolatile(page.userIds, slot);
+            long balance = userId == NO_USER ? Account.CLOSED : (long) LONG_ARRAY.getVolatile(page.balances, slot);
+            userIds[i] = balance == Account.CLOSED ? NO_USER : userId;
+            balances[i] = balance == Account.CLOSED ? 0 : balance;
+        }
+    }
+
+    private Page pageForRead(int accountId) {
+        if (accountId <= 0) {
+            return null;
+        }
+        Page[] snapshot = pages;
+        int pageIndex = accountId >>> PAGE_SHIFT;
+        return pageIndex < snapshot.length ? snapshot[pageIndex] : null;
+    }
+
+    private Page pageForWrite(int accountId) {
+        Page page = pageForRead(accountId);
+        return page != null ? page : allocatePage(accountId >>> PAGE_SHIFT);
+    }
+
+    // The page directory is copy-on-write: readers never lock, and it is only
+    // replaced once per PAGE_SIZE accounts.
+    private synchronized Page allocatePage(int pageIndex) {
+        Page[] current = pages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        Page[] next = Arrays.copyOf(current, Math.max(current.length, pageIndex + 1));
+        Page page = new Page();
+        next[pageIndex] = page;
+        pages = next;
+        return page;
+    }
+
+    private static final class Page {
+        private final int[] userIds = new int[PAGE_SIZE];
+        private final long[] balances = new long[PAGE_SIZE];
+    }
+
+    private static final class AccountView extends Account {
+
+        private final long[] balances;
+        private final int slot;
+
+        private AccountView(int id, int userId, long[] balances, int slot) {
+            super(id, userId, 0);
+            this.balances = balances;
+            this.slot = slot;
+        }
+
+        @Override
+        protected long getRawMoneyAmount() {
+            return (long) LONG_ARRAY.getVolatile(balances, slot);
+        }
+
+        @Override
+        protected boolean compareAndSetRawMoneyAmount(long expected, long newValue) {
+            return LONG_ARRAY.compareAndSet(balances, slot, expected, newValue);
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package sorokin.java.course.account;
+
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.history.HistoryEntryType;
+import sorokin.java.course.journal.LedgerJournal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Partitions accounts by id across single-threaded shards. Deposits, withdrawals and transfers are
+// applied by the thread of the account's shard, so a hot balance stays in one core's cache instead of
+// moving between the cores of all callers, and no stripe lock is taken. Callers publish operations into
+// the shard's ring buffer and wait for the outcome.
+//
+// Not every balance change goes through the shards: batch transfers, closing an account and end-of-day
+// adjustments still change balances on the calling thread under the stripe locks. Shards change them
+// with the same compare-and-set on the account, so neither side loses an update, but those operations
+// pull the balance away from its shard's core.
+//
+// A transfer is debited on the source shard and handed to the target shard to be credited. If the
+// target was closed in the meantime the debit is handed back; if the source was closed as well, the
+// refund follows the money of the closed account into the account it was closed into.
+//
+// A shard applies whatever it drains at once as one journal batch and completes those operations
+// only after endBatch has forced their records, so journal.fsync=PER_OP costs one fsync per drain.
+// applyQueued starts every operation of an async batch before waiting for the first, so they reach
+// the shards together; only operations with the same source account keep their order then.
+//
+// Every submitted operation is counted in flight until it completes, by stripe of the submitting
+// thread and by the parity of the epoch it started in. close() refuses new operations and keeps the
+// shards running until nothing is in flight, so a credit or refund handed to a shard that has nothing
+// else to do is still applied. The epochs bound closedInto: once every operation of the epoch an
+// account was closed in has finished, no refund can be headed to it any more and its entry goes.
+public class ShardedAccountEngine implements AccountEngine, AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 1 << 14;
+    private static final int QUEUE_MASK = QUEUE_CAPACITY - 1;
+    private static final int SPINS_BEFORE_PARK = 200;
+    private static final int MAX_DRAIN_BATCH = 256;
+    private static final int STRIPES = 64;
+    // One counter per 64-byte cache line.
+    private static final int COUNTER_PADDING = 8;
+    // Epoch of an account whose close marker is not set yet: debits of it may still be submitted.
+    private static final long CLOSING = Long.MAX_VALUE;
+
+    private final AccountStore accountStore;
+    private final LedgerJournal ledgerJournal;
+    private final AccountHistory accountHistory;
+    private final BankTotals bankTotals;
+    private final int commissionBasisPoints;
+    private final Map<Integer, ClosedAccount> closedInto;
+    private final Shard[] shards;
+    private final AtomicLongArray inFlight;
+    private final AtomicLong epoch;
+    private volatile boolean closed;
+
+    public ShardedAccountEngine(
+            AccountStore accountStore,
+            LedgerJournal ledgerJournal,
+            AccountHistory accountHistory,
+            BankTotals bankTotals,
+            AccountProperties accountProperties,
+            int shardCount
+    ) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shard count must be > 0");
+        }
+        this.accountStore = accountStore;
+        this.ledgerJournal = ledgerJournal;
+        this.accountHistory = accountHistory;
+        this.bankTotals = bankTotals;
+        this.commissionBasisPoints = accountProperties.getTransferCommissionBasisPoints();
+        this.closedInto = new ConcurrentHashMap<>();
+        this.inFlight = new AtomicLongArray(STRIPES * 2 * COUNTER_PADDING);
+        this.epoch = new AtomicLong();
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public TransferStatus deposit(int accountId, long amount) {
+        if (!accountStore.contains(accountId)) {
+            return TransferStatus.NO_SUCH_ACCOUNT;
+        }
+        return submit(new Operation(Stage.DEPOSIT, accountId, accountId, amount));
+    }
+
+    @Override
+    public TransferStatus withdraw(int accountId, long amount) {
+        if (!accountStore.contains(accountId)) {
+            return TransferStatus.NO_SUCH_ACCOUNT;
+        }
+        return submit(new Operation(Stage.WITHDRAW, accountId, accountId, amount));
+    }
+
+    @Override
+    public TransferStatus transfer(int fromAccountId, int toAccountId, long amount) {
+        if (!accountStore.contains(fromAccountId) || !accountStore.contains(toAccountId)) {
+            return TransferStatus.NO_SUCH_ACCOUNT;
+        }
+        return submit(new Operation(Stage.DEBIT, fromAccountId, toAccountId, amount));
+    }
+
+    @Override
+    public void applyQueued(List<AsyncAccountService.QueuedOperation> operations) {
+        Operation[] started = new Operation[operations.size()];
+        for (int i = 0; i < started.length; i++) {
+            AsyncAccountService.QueuedOperation queued = operations.get(i);
+            try {
+                Stage stage = switch (queued.type) {
+                    case DEPOSIT -> Stage.DEPOSIT;
+                    case WITHDRAW -> Stage.WITHDRAW;
+                    case TRANSFER -> Stage.DEBIT;
+                };
+                // Deposits and withdrawals are queued with the account as both ends.
+                Operation operation = new Operation(stage, queued.fromAccountId, queued.toAccountId, queued.amount);
+                if (!accountStore.contains(operation.fromAccountId) || !accountStore.contains(operation.toAccountId)) {
+                    queued.status = TransferStatus.NO_SUCH_ACCOUNT;
+                } else {
+                    start(operation);
+                    started[i] = operation;
+                }
+            } catch (RuntimeException e) {
+                queued.failure = e;
+            }
+        }
+        for (int i = 0; i < started.length; i++) {
+            if (started[i] != null) {
+                try {
+                    operations.get(i).status = started[i].await();
+                } catch (RuntimeException e) {
+                    operations.get(i).failure = e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void accountClosing(int accountId, int targetAccountId) {
+        closedInto.put(accountId, new ClosedAccount(targetAccountId, CLOSING));
+    }
+
+    // Operations that may still debit the account, and so refund into it, started in this epoch or before.
+    @Override
+    public void accountClosed(int accountId) {
+        closedInto.computeIfPresent(accountId, (key, closedAccount) ->
+                new ClosedAccount(closedAccount.targetAccountId(), epoch.get()));
+        forgetSettledCloses();
+    }
+
+    int getClosedAccountsTracked() {
+        return closedInto.size();
+    }
+
+    // Moves to the next epoch once the previous one has no operation in flight. An entry closed in
+    // epoch E is dropped at E + 2: every operation of E has finished by the time E + 1 could end.
+    private void forgetSettledCloses() {
+        long current = epoch.get();
+        if (inFlight(current - 1) == 0 && epoch.compareAndSet(current, current + 1)) {
+            current++;
+        }
+        long settled = current - 2;
+        closedInto.values().removeIf(closedAccount -> closedAccount.epoch() <= settled);
+    }
+
+    private long inFlight(long inEpoch) {
+        long count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            count += inFlight.get(counterIndex(stripe, inEpoch));
+        }
+        return count;
+    }
+
+    private long inFlight() {
+        return inFlight(0) + inFlight(1);
+    }
+
+    // Refuses new operations, waits for the accepted ones, including their hand-offs between shards,
+    // and only then stops the shard threads.
+    @Override
+    public void close() {
+        closed = true;
+        while (inFlight() != 0) {
+            LockSupport.parkNanos(100_000);
+        }
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private TransferStatus submit(Operation operation) {
+        start(operation);
+        return operation.await();
+    }
+
+    private void start(Operation operation) {
+        int stripe = (int) (Thread.currentThread().threadId() & (STRIPES - 1));
+        while (true) {
+            long startedIn = epoch.get();
+            int counter = counterIndex(stripe, startedIn);
+            inFlight.getAndIncrement(counter);
+            // Counted under the epoch it started in, or an epoch end could miss it.
+            if (epoch.get() == startedIn) {
+                operation.counter = counter;
+                break;
+            }
+            inFlight.getAndDecrement(counter);
+        }
+        // Checked after counting, so close() either sees the operation in flight or it sees closed here.
+        if (closed) {
+            inFlight.getAndDecrement(operation.counter);
+            throw new IllegalStateException("Sharded account engine is closed");
+        }
+        shardOf(operation.fromAccountId).publish(operation);
+    }
+
+    private static int counterIndex(int stripe, long inEpoch) {
+        return (stripe * 2 + (int) (inEpoch & 1)) * COUNTER_PADDING;
+    }
+
+    private Shard shardOf(int accountId) {
+        return shards[accountId % shards.length];
+    }
+
+    // Continues an operation on the shard owning accountId: in place when that is the current shard.
+    private void route(Operation operation, int accountId, Shard current) {
+        Shard owner = shardOf(accountId);
+        if (owner == current) {
+            process(operation, current);
+        } else {
+            owner.handOff(operation);
+        }
+    }
+
+    private void process(Operation operation, Shard current) {
+        try {
+            switch (operation.stage) {
+                case DEPOSIT -> deposit(operation, current);
+                case WITHDRAW -> withdraw(operation, current);
+                case DEBIT -> debit(operation, current);
+                case CREDIT -> credit(operation, current);
+                case REFUND -> refund(operation, current);
+            }
+        } catch (RuntimeException e) {
+            operation.fail(e, current);
+        }
+    }
+
+    private void deposit(Operation operation, Shard current) {
+        Account account = accountStore.get(operation.fromAccountId);
+        long balance = account == null ? Account.CLOSED : account.creditAndGet(operation.amount);
+        if (balance == Account.CLOSED) {
+            operation.complete(TransferStatus.NO_SUCH_ACCOUNT, current);
+            return;
+        }
+        ledgerJournal.deposited(operation.fromAccountId, operation.amount);
+        accountHistory.record(operation.fromAccountId, HistoryEntryType.DEPOSIT, 0, operation.amount, balance);
+        bankTotals.deposited(account.getUserId(), operation.amount);
+        operation.complete(TransferStatus.COMPLETED, current);
+    }
+
+    private void withdraw(Operation operation, Shard current) {
+        Account account = accountStore.get(operation.fromAccountId);
+        if (account == null) {
+            operation.complete(TransferStatus.NO_SUCH_ACCOUNT, current);
+            return;
+        }
+        long balance = account.debitAndGet(operation.amount);
+        if (balance < 0) {
+            operation.complete(debitFailure(balance), current);
+            return;
+        }
+        ledgerJournal.withdrawn(operation.fromAccountId, operation.amount);
+        accountHistory.record(operation.fromAccountId, HistoryEntryType.WITHDRAWAL, 0, -operation.amount, balance);
+        bankTotals.withdrawn(account.getUserId(), operation.amount);
+        operation.complete(TransferStatus.COMPLETED, current);
+    }
+
+    private void debit(Operation operation, Shard current) {
+        Account accountFrom = accountStore.get(operation.fromAccountId);
+        Account accountTo = accountStore.get(operation.toAccountId);
+        if (accountFrom == null || accountTo == null) {
+            operation.complete(TransferStatus.NO_SUCH_ACCOUNT, current);
+            return;
+        }
+        long balance = accountFrom.debitAndGet(operation.amount);
+        if (balance < 0) {
+            operation.complete(debitFailure(balance), current);
+            return;
+        }
+        // Recorded right away, as only this shard writes the source; a failed credit adds a refund entry.
+        accountHistory.record(operation.fromAccountId, HistoryEntryType.TRANSFER_OUT, operation.toAccountId,
+                -operation.amount, balance);
+        operation.debitedAccount = accountFrom;
+        operation.creditedAmount = TransferCommission.creditedAmount(accountFrom, accountTo, operation.amount, commissionBasisPoints);
+        operation.stage = Stage.CREDIT;
+        route(operation, operation.toAccountId, current);
+    }
+
+    private void credit(Operation operation, Shard current) {
+        Account accountTo = accountStore.get(operation.toAccountId);
+        long balance = accountTo == null ? Account.CLOSED : accountTo.creditAndGet(operation.creditedAmount);
+        if (balance != Account.CLOSED) {
+            ledgerJournal.transferred(operation.fromAccountId, operation.toAccountId, operation.amount, operation.creditedAmount);
+            accountHistory.record(operation.toAccountId, HistoryEntryType.TRANSFER_IN, operation.fromAccountId,
+                    operation.creditedAmount, balance);
+            // Only completed transfers count: a refunded one moved money between accounts of one user at most.
+            bankTotals.transferred(operation.debitedAccount.getUserId(), accountTo.getUserId(),
+                    operation.amount, operation.creditedAmount);
+            operation.complete(TransferStatus.COMPLETED, current);
+            return;
+        }
+        operation.stage = Stage.REFUND;
+        operation.refundAccountId = operation.fromAccountId;
+        route(operation, operation.fromAccountId, current);
+    }
+
+    // The debit was never journaled, so a refund to the source needs no record. A refund that
+    // lands elsewhere because the source was closed is journaled as a deposit: replay keeps the
+    // unjournaled debit in the source, whose close moved only what was really left in it.
+    private void refund(Operation operation, Shard current) {
+        boolean toSource = operation.refundAccountId == operation.fromAccountId;
+        Account account = toSource ? operation.debitedAccount : accountStore.get(operation.refundAccountId);
+        long balance = account == null ? Account.CLOSED : account.creditAndGet(operation.amount);
+        if (balance != Account.CLOSED) {
+            if (!toSource) {
+                ledgerJournal.deposited(operation.refundAccountId, operation.amount);
+            }
+            accountHistory.record(operation.refundAccountId, HistoryEntryType.TRANSFER_REFUND, operation.toAccountId,
+                    operation.amount, balance);
+            operation.complete(TransferStatus.NO_SUCH_ACCOUNT, current);
+            return;
+        }
+        // accountClosing ran before the account was marked closed, so the target is known here. The
+        // close announced its write to the target to AccountSnapshots before that, so the refund
+        // needs no announcement of its own.
+        ClosedAccount closedAccount = closedInto.get(operation.refundAccountId);
+        if (closedAccount == null) {
+            throw new IllegalStateException("Can't refund transfer from account id=%s: account %s is gone"
+                    .formatted(operation.fromAccountId, operation.refundAccountId));
+        }
+        operation.refundAccountId = closedAccount.targetAccountId();
+        route(operation, closedAccount.targetAccountId(), current);
+    }
+
+    private static TransferStatus debitFailure(long balance) {
+        return balance == Account.CLOSED ? TransferStatus.NO_SUCH_ACCOUNT : TransferStatus.INSUFFICIENT_FUNDS;
+    }
+
+    private enum Stage {
+        DEPOSIT,
+        WITHDRAW,
+        DEBIT,
+        CREDIT,
+        REFUND
+    }
+
+    private record ClosedAccount(int targetAccountId, long epoch) {
+    }
+
+    private final class Operation {
+
+        private final int fromAccountId;
+        private final int toAccountId;
+        private final long amount;
+        private final Thread waiter;
+        private Stage stage;
+        private Account debitedAccount;
+        private long creditedAmount;
+        private int refundAccountId;
+        private TransferStatus status;
+        private RuntimeException failure;
+        private int counter;
+        private volatile boolean done;
+
+        private Operation(Stage stage, int fromAccountId, int toAccountId, long amount) {
+            this.stage = stage;
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
+            this.amount = amount;
+            this.waiter = Thread.currentThread();
+        }
+
+        // The waiter is released by the shard once its journal batch is forced.
+        private void complete(TransferStatus status, Shard current) {
+            this.status = status;
+            current.settled.add(this);
+        }
+
+        private void fail(RuntimeException failure, Shard current) {
+            this.failure = failure;
+            current.settled.add(this);
+        }
+
+        // journalFailure: the journal could not force the batch, so the outcome is not known to be durable.
+        private void release(RuntimeException journalFailure) {
+            if (failure == null) {
+                failure = journalFailure;
+            }
+            inFlight.getAndDecrement(counter);
+            done = true;
+            LockSupport.unpark(waiter);
+        }
+
+        private TransferStatus await() {
+            for (int spins = 0; !done; spins++) {
+                if (spins < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return status;
+        }
+    }
+
+    private final class Shard implements Runnable {
+
+        // Multi-producer ring buffer: callers claim a sequence with a CAS on tail and publish the
+        // operation into its slot; the shard thread is the only consumer and frees slots behind it.
+        private final AtomicReferenceArray<Operation> slots;
+        private final AtomicLong tail;
+        private volatile long head;
+        // Operations handed over by other shards. Unbounded, so two shards forwarding to each other
+        // can never block on each other's full ring.
+        private final Queue<Operation> handOffs;
+        // Operations finished in the current drain, released after its journal batch.
+        private final List<Operation> settled;
+        private final Thread thread;
+        private volatile boolean parked;
+        private volatile boolean running;
+
+        private Shard(int index) {
+            this.slots = new AtomicReferenceArray<>(QUEUE_CAPACITY);
+            this.tail = new AtomicLong();
+            this.handOffs = new ConcurrentLinkedQueue<>();
+            this.settled = new ArrayList<>();
+            this.running = true;
+            this.thread = Thread.ofPlatform()
+                    .name("ledger-shard-" + index)
+                    .daemon(true)
+                    .unstarted(this);
+        }
+
+        private void publish(Operation operation) {
+            long sequence;
+            while (true) {
+                sequence = tail.get();
+                if (sequence - head >= QUEUE_CAPACITY) {
+                    wakeUp();
+                    Thread.onSpinWait();
+                } else if (tail.compareAndSet(sequence, sequence + 1)) {
+                    break;
+                }
+            }
+            slots.set((int) (sequence & QUEUE_MASK), operation);
+            wakeUp();
+        }
+
+        private void handOff(Operation operation) {
+            handOffs.add(operation);
+            wakeUp();
+        }
+
+        private void wakeUp() {
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            int idleSpins = 0;
+            while (running) {
+                if (drain()) {
+                    idleSpins = 0;
+                } else if (++idleSpins < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    parked = true;
+                    if (!hasWork() && running) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                    idleSpins = 0;
+                }
+            }
+            while (drain()) {
+                // finish what was accepted before close
+            }
+        }
+
+        private boolean drain() {
+            if (!hasWork()) {
+                return false;
+            }
+            ledgerJournal.beginBatch();
+            Operation operation;
+            while ((operation = handOffs.poll()) != null) {
+                process(operation, this);
+            }
+            long sequence = head;
+            for (int drained = 0; drained < MAX_DRAIN_BATCH
+                    && (operation = slots.get((int) (sequence & QUEUE_MASK))) != null; drained++) {
+                slots.lazySet((int) (sequence & QUEUE_MASK), null);
+                sequence++;
+                head = sequence;
+                process(operation, this);
+            }
+            RuntimeException journalFailure = null;
+            try {
+                ledgerJournal.endBatch();
+            } catch (RuntimeException e) {
+                journalFailure = e;
+            }
+            for (Operation settledOperation : settled) {
+                settledOperation.release(journalFailure);
+            }
+            settled.clear();
+            return true;
+        }
+
+        private boolean hasWork() {
+            return !handOffs.isEmpty() || slots.get((int) (head & QUEUE_MASK)) != null;
+        }
+    }
+}
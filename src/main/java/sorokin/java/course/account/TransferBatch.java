@@ -0,0 +1,352 @@
+package sorokin.java.course.account;
+
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.history.HistoryEntryType;
+import sorokin.java.course.journal.LedgerGroup;
+import sorokin.java.course.journal.LedgerJournal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Transfers are grouped into connected components of the accounts they touch. The stripes of all
+// groups are locked once by the calling thread; each group is simulated on balances read once, and
+// then every account gets a single net debit or credit. Groups share no accounts, so they run in
+// parallel.
+//
+// The completed transfers are journaled by the calling thread as one group record once every debit
+// is applied and before any credit is: replay has the whole batch or none of it, and the batch is
+// forced to disk once. If the journal fails, the debits are undone.
+class TransferBatch {
+
+    private final List<TransferRequest> requests;
+    private final TransferStatus[] statuses;
+    private final long[] creditedAmounts;
+    private final AccountService accountService;
+    private final AccountStore accountStore;
+    private final AccountLocks accountLocks;
+    private final LedgerJournal ledgerJournal;
+    private final AccountHistory accountHistory;
+    private final BankTotals bankTotals;
+
+    TransferBatch(
+            List<TransferRequest> requests,
+            AccountService accountService,
+            AccountStore accountStore,
+            AccountLocks accountLocks,
+            LedgerJournal ledgerJournal,
+            AccountHistory accountHistory,
+            BankTotals bankTotals
+    ) {
+        this.requests = requests;
+        this.statuses = new TransferStatus[requests.size()];
+        this.creditedAmounts = new long[requests.size()];
+        this.accountService = accountService;
+        this.accountStore = accountStore;
+        this.accountLocks = accountLocks;
+        this.ledgerJournal = ledgerJournal;
+        this.accountHistory = accountHistory;
+        this.bankTotals = bankTotals;
+    }
+
+    TransferBatchResult execute(TransferBatchMode mode) {
+        boolean allValid = validate();
+        if (mode == TransferBatchMode.ATOMIC && !allValid) {
+            rollBackCompleted();
+            return new TransferBatchResult(statuses);
+        }
+        int[] accountIds = accountIds();
+        List<Group> groups = group(accountIds);
+        int[] stripes = accountLocks.stripesOf(accountIds);
+        accountLocks.lockStripes(stripes);
+        try {
+            groups.parallelStream().forEach(it -> it.resolveAccounts(accountStore));
+            if (mode == TransferBatchMode.ATOMIC) {
+                if (!debitAtomically(groups)) {
+                    rollBackCompleted();
+                    return new TransferBatchResult(statuses);
+                }
+            } else {
+                groups.parallelStream().forEach(this::debitBestEffort);
+            }
+            try {
+                journal();
+            } catch (RuntimeException | Error e) {
+                groups.parallelStream().forEach(this::rollBackDebits);
+                throw e;
+            }
+            groups.parallelStream().forEach(this::applyCredits);
+        } finally {
+            accountLocks.unlockStripes(stripes);
+        }
+        return new TransferBatchResult(statuses);
+    }
+
+    private void debitBestEffort(Group group) {
+        do {
+            simulate(group);
+        } while (!applyDebits(group));
+    }
+
+    // false, with nothing debited, if a transfer can't complete.
+    private boolean debitAtomically(List<Group> groups) {
+        while (true) {
+            boolean allCompleted = groups.parallelStream()
+                    .map(this::simulate)
+                    .reduce(true, Boolean::logicalAnd);
+            if (!allCompleted) {
+                return false;
+            }
+            // Lock-free withdrawals may have drained an account since the simulation read it;
+            // undo every debit and simulate again on fresh balances.
+            List<Group> debited = groups.parallelStream().filter(this::applyDebits).toList();
+            if (debited.size() == groups.size()) {
+                return true;
+            }
+            debited.forEach(this::rollBackDebits);
+        }
+    }
+
+    // Completed transfers in request order, with the credited amounts the simulation used.
+    private void journal() {
+        LedgerGroup records = ledgerJournal.newGroup();
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == TransferStatus.COMPLETED) {
+                TransferRequest request = requests.get(i);
+                records.transferred(request.fromAccountId(), request.toAccountId(), request.amount(), creditedAmounts[i]);
+            }
+        }
+        ledgerJournal.append(records);
+    }
+
+    private boolean validate() {
+        boolean allValid = true;
+        for (int i = 0; i < statuses.length; i++) {
+            TransferRequest request = requests.get(i);
+            if (request.fromAccountId() <= 0 || request.toAccountId() <= 0) {
+                statuses[i] = TransferStatus.INVALID_ACCOUNT_ID;
+            } else if (request.amount() <= 0) {
+                statuses[i] = TransferStatus.INVALID_AMOUNT;
+            } else if (request.fromAccountId() == request.toAccountId()) {
+                statuses[i] = TransferStatus.SAME_ACCOUNT;
+            } else {
+                continue;
+            }
+            allValid = false;
+        }
+        return allValid;
+    }
+
+    // Sorted, distinct ids of the accounts the valid transfers touch.
+    private int[] accountIds() {
+        int[] accountIds = new int[2 * statuses.length];
+        int count = 0;
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == null) {
+                TransferRequest request = requests.get(i);
+                accountIds[count++] = request.fromAccountId();
+                accountIds[count++] = request.toAccountId();
+            }
+        }
+        Arrays.sort(accountIds, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || accountIds[i] != accountIds[distinct - 1]) {
+                accountIds[distinct++] = accountIds[i];
+            }
+        }
+        return Arrays.copyOf(accountIds, distinct);
+    }
+
+    // Union-find over positions in accountIds; each group keeps its accounts sorted.
+    private List<Group> group(int[] accountIds) {
+        int[] parents = new int[accountIds.length];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == null) {
+                TransferRequest request = requests.get(i);
+                union(parents, Arrays.binarySearch(accountIds, request.fromAccountId()),
+                        Arrays.binarySearch(accountIds, request.toAccountId()));
+            }
+        }
+        int[] groupOfRoot = new int[accountIds.length];
+        Arrays.fill(groupOfRoot, -1);
+        int[] groupOfAccount = new int[accountIds.length];
+        int[] accountCounts = new int[accountIds.length];
+        int groupCount = 0;
+        for (int i = 0; i < accountIds.length; i++) {
+            int root = find(parents, i);
+            if (groupOfRoot[root] < 0) {
+                groupOfRoot[root] = groupCount++;
+            }
+            groupOfAccount[i] = groupOfRoot[root];
+            accountCounts[groupOfAccount[i]]++;
+        }
+        int[] requestGroups = new int[statuses.length];
+        int[] requestCounts = new int[groupCount];
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == null) {
+                requestGroups[i] = groupOfAccount[Arrays.binarySearch(accountIds, requests.get(i).fromAccountId())];
+                requestCounts[requestGroups[i]]++;
+            }
+        }
+        int[][] groupAccountIds = new int[groupCount][];
+        int[][] groupRequestIndexes = new int[groupCount][];
+        for (int g = 0; g < groupCount; g++) {
+            groupAccountIds[g] = new int[accountCounts[g]];
+            groupRequestIndexes[g] = new int[requestCounts[g]];
+        }
+        // The counts are reused as fill positions, counting down.
+        for (int i = accountIds.length - 1; i >= 0; i--) {
+            int g = groupOfAccount[i];
+            groupAccountIds[g][--accountCounts[g]] = accountIds[i];
+        }
+        for (int i = statuses.length - 1; i >= 0; i--) {
+            if (statuses[i] == null) {
+                int g = requestGroups[i];
+                groupRequestIndexes[g][--requestCounts[g]] = i;
+            }
+        }
+        List<Group> groups = new ArrayList<>(groupCount);
+        for (int g = 0; g < groupCount; g++) {
+            groups.add(new Group(groupRequestIndexes[g], groupAccountIds[g]));
+        }
+        return groups;
+    }
+
+    private boolean simulate(Group group) {
+        long[] balances = new long[group.accounts.length];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = group.accounts[i] == null ? 0 : group.accounts[i].getMoneyAmount();
+        }
+        Arrays.fill(group.deltas, 0);
+        boolean allCompleted = true;
+        for (int requestIndex : group.requestIndexes) {
+            TransferRequest request = requests.get(requestIndex);
+            int from = group.indexOf(request.fromAccountId());
+            int to = group.indexOf(request.toAccountId());
+            Account accountFrom = group.accounts[from];
+            Account accountTo = group.accounts[to];
+            if (accountFrom == null || accountTo == null) {
+                statuses[requestIndex] = TransferStatus.NO_SUCH_ACCOUNT;
+                allCompleted = false;
+            } else if (balances[from] < request.amount()) {
+                statuses[requestIndex] = TransferStatus.INSUFFICIENT_FUNDS;
+                allCompleted = false;
+            } else {
+                long creditedAmount = accountService.creditedAmount(accountFrom, accountTo, request.amount());
+                balances[from] -= request.amount();
+                balances[to] += creditedAmount;
+                group.deltas[from] -= request.amount();
+                group.deltas[to] += creditedAmount;
+                creditedAmounts[requestIndex] = creditedAmount;
+                statuses[requestIndex] = TransferStatus.COMPLETED;
+            }
+        }
+        return allCompleted;
+    }
+
+    private boolean applyDebits(Group group) {
+        for (int i = 0; i < group.deltas.length; i++) {
+            if (group.deltas[i] < 0 && (group.balancesAfter[i] = group.accounts[i].debitAndGet(-group.deltas[i])) < 0) {
+                for (int j = 0; j < i; j++) {
+                    if (group.deltas[j] < 0) {
+                        group.accounts[j].credit(-group.deltas[j]);
+                    }
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rollBackDebits(Group group) {
+        for (int i = 0; i < group.deltas.length; i++) {
+            if (group.deltas[i] < 0) {
+                group.accounts[i].credit(-group.deltas[i]);
+            }
+        }
+    }
+
+    private void applyCredits(Group group) {
+        for (int i = 0; i < group.deltas.length; i++) {
+            if (group.deltas[i] > 0) {
+                group.balancesAfter[i] = group.accounts[i].creditAndGet(group.deltas[i]);
+            }
+        }
+        for (int requestIndex : group.requestIndexes) {
+            if (statuses[requestIndex] == TransferStatus.COMPLETED) {
+                TransferRequest request = requests.get(requestIndex);
+                Account accountFrom = group.accounts[group.indexOf(request.fromAccountId())];
+                Account accountTo = group.accounts[group.indexOf(request.toAccountId())];
+                bankTotals.transferred(accountFrom.getUserId(), accountTo.getUserId(), request.amount(), creditedAmounts[requestIndex]);
+            }
+        }
+        // Each account gets one entry for its net change, as its balance only ever had the netted value.
+        for (int i = 0; i < group.deltas.length; i++) {
+            if (group.deltas[i] != 0) {
+                accountHistory.record(group.accountIds[i], HistoryEntryType.BATCH_TRANSFER, 0,
+                        group.deltas[i], group.balancesAfter[i]);
+            }
+        }
+    }
+
+    private void rollBackCompleted() {
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == null || statuses[i] == TransferStatus.COMPLETED) {
+                statuses[i] = TransferStatus.ROLLED_BACK;
+            }
+        }
+    }
+
+    private static int find(int[] parents, int index) {
+        int root = index;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[index] != root) {
+            int next = parents[index];
+            parents[index] = root;
+            index = next;
+        }
+        return root;
+    }
+
+    private static void union(int[] parents, int first, int second) {
+        int firstRoot = find(parents, first);
+        int secondRoot = find(parents, second);
+        if (firstRoot != secondRoot) {
+            parents[firstRoot] = secondRoot;
+        }
+    }
+
+    private static final class Group {
+
+        private final int[] requestIndexes;
+        private final int[] accountIds;
+        private final Account[] accounts;
+        private final long[] deltas;
+        private final long[] balancesAfter;
+
+        private Group(int[] requestIndexes, int[] accountIds) {
+            this.requestIndexes = requestIndexes;
+            this.accountIds = accountIds;
+            this.accounts = new Account[accountIds.length];
+            this.deltas = new long[accountIds.length];
+            this.balancesAfter = new long[accountIds.length];
+        }
+
+        // Called with the group's stripes held, so none of these accounts can be closed afterwards.
+        private void resolveAccounts(AccountStore accountStore) {
+            for (int i = 0; i < accountIds.length; i++) {
+                accounts[i] = accountStore.get(accountIds[i]);
+            }
+        }
+
+        private int indexOf(int accountId) {
+            return Arrays.binarySearch(accountIds, accountId);
+        }
+    }
+}
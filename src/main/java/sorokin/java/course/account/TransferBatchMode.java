@@ -0,0 +1,6 @@
+package sorokin.java.course.account;
+
+public enum TransferBatchMode {
+    ATOMIC,
+    BEST_EFFORT
+}
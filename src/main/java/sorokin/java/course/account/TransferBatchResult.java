@@ -0,0 +1,58 @@
+package sorokin.java.course.account;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class TransferBatchResult {
+
+    private final TransferStatus[] statuses;
+
+    TransferBatchResult(TransferStatus[] statuses) {
+        this.statuses = statuses;
+    }
+
+    public int size() {
+        return statuses.length;
+    }
+
+    public TransferStatus getStatus(int index) {
+        return statuses[index];
+    }
+
+    public List<TransferStatus> getStatuses() {
+        return Collections.unmodifiableList(Arrays.asList(statuses));
+    }
+
+    public int getCompletedCount() {
+        int completed = 0;
+        for (TransferStatus status : statuses) {
+            if (status == TransferStatus.COMPLETED) {
+                completed++;
+            }
+        }
+        return completed;
+    }
+
+    public boolean isFullyApplied() {
+        return getCompletedCount() == statuses.length;
+    }
+
+    public Map<TransferStatus, Integer> countByStatus() {
+        Map<TransferStatus, Integer> counts = new EnumMap<>(TransferStatus.class);
+        for (TransferStatus status : statuses) {
+            counts.merge(status, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferBatchResult{" +
+                "size=" + statuses.length +
+                ", byStatus=" + countByStatus() +
+                '}';
+    }
+}
@@ -0,0 +1,28 @@
+package sorokin.java.course.account;
+
+final class TransferCommission {
+
+    private static final long MAX_DIRECT_AMOUNT =
+            (Long.MAX_VALUE - AccountProperties.BASIS_POINTS) / AccountProperties.BASIS_POINTS;
+
+    private TransferCommission() {
+    }
+
+    static long creditedAmount(Account accountFrom, Account accountTo, long amount, int basisPoints) {
+        return accountTo.getUserId() == accountFrom.getUserId()
+                ? amount
+                : amount - commission(amount, basisPoints);
+    }
+
+    // amount * bps / 10 000 rounded half up. Amounts below ~9.2e14 can't overflow the product and take
+    // one multiplication and one division by a constant; larger ones are split into whole and rest.
+    static long commission(long amount, int basisPoints) {
+        if (amount <= MAX_DIRECT_AMOUNT) {
+            return (amount * basisPoints + AccountProperties.BASIS_POINTS / 2) / AccountProperties.BASIS_POINTS;
+        }
+        long whole = amount / AccountProperties.BASIS_POINTS * basisPoints;
+        long rest = (amount % AccountProperties.BASIS_POINTS * basisPoints + AccountProperties.BASIS_POINTS / 2)
+                / AccountProperties.BASIS_POINTS;
+        return whole + rest;
+    }
+}
@@ -0,0 +1,4 @@
+package sorokin.java.course.account;
+
+public record TransferRequest(int fromAccountId, int toAccountId, long amount) {
+}
@@ -0,0 +1,11 @@
+package sorokin.java.course.account;
+
+public enum TransferStatus {
+    COMPLETED,
+    INVALID_ACCOUNT_ID,
+    INVALID_AMOUNT,
+    SAME_ACCOUNT,
+    NO_SUCH_ACCOUNT,
+    INSUFFICIENT_FUNDS,
+    ROLLED_BACK
+}
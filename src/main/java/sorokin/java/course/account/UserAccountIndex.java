@@ -0,0 +1,47 @@
+package sorokin.java.course.account;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// userId -> ascending account ids. The arrays are never modified after publication; updates
+// replace them inside ConcurrentHashMap.compute, which is cheap because users have few accounts.
+// Closed accounts stay listed: readers filter them out against the store, and a snapshot can
+// still find the accounts a user had at its time. That costs 4 bytes per closed account.
+class UserAccountIndex {
+
+    private static final int[] NO_ACCOUNTS = new int[0];
+
+    private final Map<Integer, int[]> accountIdsByUser;
+
+    UserAccountIndex() {
+        this.accountIdsByUser = new ConcurrentHashMap<>();
+    }
+
+    int[] get(int userId) {
+        return accountIdsByUser.getOrDefault(userId, NO_ACCOUNTS);
+    }
+
+    void add(int userId, int accountId) {
+        accountIdsByUser.compute(userId, (key, current) -> {
+            if (current == null) {
+                return new int[]{accountId};
+            }
+            int position = Arrays.binarySearch(current, accountId);
+            if (position >= 0) {
+                return current;
+            }
+            int insertAt = -position - 1;
+            int[] updated = new int[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = accountId;
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+            return updated;
+        });
+    }
+
+    // Bulk load for recovery: the map is sized once instead of growing entry by entry.
+    void putAll(Map<Integer, int[]> accountIds) {
+        accountIdsByUser.putAll(accountIds);
+    }
+}
@@ -1,8 +1,25 @@
 package sorokin.java.course.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
+import sorokin.java.course.account.AccountEngine;
+import sorokin.java.course.account.AccountLocks;
+import sorokin.java.course.account.AccountProperties;
+import sorokin.java.course.account.AccountStore;
+import sorokin.java.course.account.BankTotals;
+import sorokin.java.course.account.HotAccounts;
+import sorokin.java.course.account.LockingAccountEngine;
+import sorokin.java.course.account.ObjectAccountStore;
+import sorokin.java.course.account.PrimitiveAccountStore;
+import sorokin.java.course.account.ShardedAccountEngine;
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.history.HistoryProperties;
+import sorokin.java.course.history.SpillingAccountHistory;
+import sorokin.java.course.journal.JournalProperties;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.journal.MappedLedgerJournal;
 
 import java.util.Scanner;
 
@@ -15,4 +32,68 @@ public class ApplicationConfiguration {
         return new Scanner(System.in);
     }
 
+    @Bean
+    public AccountStore accountStore(@Value("${account.store:object}") String storeType, HotAccounts hotAccounts) {
+        // "map" is the name the object store had while it was backed by a hash map; it is still accepted.
+        boolean objectStore = storeType.equals("object") || storeType.equals("map");
+        if (!hotAccounts.isEmpty() && !objectStore) {
+            throw new IllegalArgumentException("account.hot-accounts needs account.store=object");
+        }
+        return switch (storeType) {
+            case "object", "map" -> new ObjectAccountStore(hotAccounts);
+            case "primitive" -> new PrimitiveAccountStore();
+            default -> throw new IllegalArgumentException("Unknown account.store: " + storeType);
+        };
+    }
+
+    @Bean
+    public AccountLocks accountLocks() {
+        return new AccountLocks(1024);
+    }
+
+    // Closed through AutoCloseable inference: the sharded engine stops its shard threads.
+    @Bean
+    public AccountEngine accountEngine(
+            @Value("${account.engine:locking}") String engineType,
+            @Value("${account.engine-shards:0}") int shards,
+            AccountStore accountStore,
+            AccountLocks accountLocks,
+            LedgerJournal ledgerJournal,
+            AccountHistory accountHistory,
+            BankTotals bankTotals,
+            AccountProperties accountProperties
+    ) {
+        return switch (engineType) {
+            case "locking" -> new LockingAccountEngine(accountStore, accountLocks, ledgerJournal, accountHistory,
+                    bankTotals, accountProperties);
+            case "sharded" -> new ShardedAccountEngine(accountStore, ledgerJournal, accountHistory, bankTotals, accountProperties,
+                    shards > 0 ? shards : Runtime.getRuntime().availableProcessors());
+            default -> throw new IllegalArgumentException("Unknown account.engine: " + engineType);
+        };
+    }
+
+    @Bean(destroyMethod = "close")
+    public LedgerJournal ledgerJournal(JournalProperties journalProperties) {
+        if (!journalProperties.isEnabled()) {
+            return LedgerJournal.disabled();
+        }
+        return new MappedLedgerJournal(
+                journalProperties.getDirectory(),
+                journalProperties.getSegmentSizeMb() << 20,
+                journalProperties.getFsyncPolicy(),
+                journalProperties.getFsyncEveryOps(),
+                journalProperties.getFsyncIntervalMillis()
+        );
+    }
+
+    @Bean(destroyMethod = "close")
+    public AccountHistory accountHistory(HistoryProperties historyProperties, JournalProperties journalProperties) {
+        if (!historyProperties.isEnabled()) {
+            return AccountHistory.disabled();
+        }
+        // Without the journal the accounts start over on every run, and so does their history.
+        return new SpillingAccountHistory(historyProperties.getDirectory(), historyProperties.getEntriesInMemory(),
+                journalProperties.isEnabled());
+    }
+
 }
@@ -0,0 +1,45 @@
+package sorokin.java.course.config;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.aot.ContextAotProcessor;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.javapoet.ClassName;
+import sorokin.java.course.Main;
+
+import java.nio.file.Path;
+
+// Build step of the aot profile. Runs the context up to the point where all bean definitions are known
+// (classpath scan, @Configuration parsing, @Value and constructor resolution) and writes the result out
+// as code: Main__ApplicationContextInitializer registers the same beans directly, and the CGLIB subclass
+// of ApplicationConfiguration is generated here instead of on every start. Main uses it when started
+// with -Dspring.aot.enabled=true.
+// java -cp ... sorokin.java.course.config.BankAotProcessor <sources> <resources> <classes> <groupId> <artifactId>
+public class BankAotProcessor extends ContextAotProcessor {
+
+    public BankAotProcessor(Settings settings) {
+        super(Main.class, settings);
+    }
+
+    @Override
+    protected GenericApplicationContext prepareApplicationContext(Class<?> applicationClass) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.scan(Main.BASE_PACKAGE);
+        return context;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 5) {
+            throw new IllegalArgumentException(
+                    "Usage: BankAotProcessor <sourceOutput> <resourceOutput> <classOutput> <groupId> <artifactId>");
+        }
+        Settings settings = Settings.builder()
+                .sourceOutput(Path.of(args[0]))
+                .resourceOutput(Path.of(args[1]))
+                .classOutput(Path.of(args[2]))
+                .groupId(args[3])
+                .artifactId(args[4])
+                .build();
+        ClassName initializer = new BankAotProcessor(settings).process();
+        System.out.println("Generated " + initializer.canonicalName());
+    }
+}
@@ -0,0 +1,154 @@
+package sorokin.java.course.console;
+
+import org.springframework.stereotype.Component;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.metrics.CommandCounter;
+import sorokin.java.course.operations.CommandArguments;
+import sorokin.java.course.operations.ConsoleOperationType;
+import sorokin.java.course.operations.OperationCommand;
+import sorokin.java.course.operations.OperationLineParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Non-interactive mode: executes one operation per line from a file or stdin without prompts
+// and prints aggregate throughput and error counts at the end.
+@Component
+public class BatchOperationsRunner {
+
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+    private static final int MAX_REPORTED_ERRORS = 10;
+    private static final ConsoleOperationType[] TYPES = ConsoleOperationType.values();
+
+    private final Map<ConsoleOperationType, OperationCommand> commandMap;
+    private final OperationLineParser lineParser;
+    private final CommandCounter[] counters;
+
+    public BatchOperationsRunner(List<OperationCommand> operationCommandList, BankMetrics bankMetrics) {
+        this.commandMap = new EnumMap<>(ConsoleOperationType.class);
+        operationCommandList.forEach(it -> commandMap.put(it.getOperationType(), it));
+        this.lineParser = new OperationLineParser();
+        this.counters = new CommandCounter[TYPES.length];
+        for (ConsoleOperationType type : TYPES) {
+            counters[type.ordinal()] = bankMetrics.command(type);
+        }
+    }
+
+    public void run(String source) {
+        try (ReadableByteChannel channel = "-".equals(source)
+                ? Channels.newChannel(System.in)
+                : FileChannel.open(Path.of(source))) {
+            run(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read operations from " + source, e);
+        }
+    }
+
+    public void run(ReadableByteChannel channel) throws IOException {
+        var stats = new Stats();
+        var arguments = new CommandArguments();
+        byte[] bytes = new byte[READ_BUFFER_BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long startedAt = System.nanoTime();
+
+        boolean exit = false;
+        boolean endOfInput = false;
+        while (!exit && !endOfInput) {
+            endOfInput = channel.read(buffer) < 0;
+            int filled = buffer.position();
+            int lineStart = 0;
+            for (int i = 0; i < filled && !exit; i++) {
+                if (bytes[i] == '\n') {
+                    exit = processLine(bytes, lineStart, i, arguments, stats);
+                    lineStart = i + 1;
+                }
+            }
+            if (endOfInput && lineStart < filled && !exit) {
+                exit = processLine(bytes, lineStart, filled, arguments, stats);
+                lineStart = filled;
+            }
+            if (lineStart == 0 && filled == bytes.length) {
+                throw new IllegalArgumentException("line " + (stats.lines + 1) + " is longer than " + bytes.length + " bytes");
+            }
+            System.arraycopy(bytes, lineStart, bytes, 0, filled - lineStart);
+            buffer.position(filled - lineStart);
+        }
+        stats.print(System.nanoTime() - startedAt);
+    }
+
+    private boolean processLine(byte[] bytes, int from, int to, CommandArguments arguments, Stats stats) {
+        stats.lines++;
+        ConsoleOperationType type = null;
+        try {
+            type = lineParser.parse(bytes, from, to, arguments);
+            if (type == null) {
+                return false;
+            }
+            OperationCommand command = commandMap.get(type);
+            if (command == null) {
+                throw new IllegalStateException("No command handler for " + type);
+            }
+            command.execute(arguments);
+            stats.operations[type.ordinal()]++;
+            counters[type.ordinal()].completed();
+        } catch (RuntimeException e) {
+            stats.recordError(type, e);
+            if (type != null) {
+                counters[type.ordinal()].failed(e);
+            }
+        }
+        return type == ConsoleOperationType.EXIT;
+    }
+
+    private static final class Stats {
+
+        private final long[] operations = new long[TYPES.length];
+        private final long[] errors = new long[TYPES.length];
+        private final List<String> firstErrors = new ArrayList<>();
+        private long lines;
+        private long unparsedLines;
+
+        private void recordError(ConsoleOperationType type, RuntimeException e) {
+            if (type == null) {
+                unparsedLines++;
+            } else {
+                errors[type.ordinal()]++;
+            }
+            if (firstErrors.size() < MAX_REPORTED_ERRORS) {
+                String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                firstErrors.add("line " + lines + ": " + message);
+            }
+        }
+
+        private void print(long elapsedNanos) {
+            long totalOperations = 0;
+            long totalErrors = unparsedLines;
+            for (int i = 0; i < TYPES.length; i++) {
+                totalOperations += operations[i];
+                totalErrors += errors[i];
+            }
+            long attempted = totalOperations + totalErrors;
+            double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            System.out.printf("Batch finished: lines=%d, operations=%d, errors=%d, time=%.3f s, throughput=%.0f ops/s%n",
+                    lines, totalOperations, totalErrors, seconds, attempted / seconds);
+            for (int i = 0; i < TYPES.length; i++) {
+                if (operations[i] > 0 || errors[i] > 0) {
+                    System.out.printf("  %s: ok=%d, errors=%d%n", TYPES[i], operations[i], errors[i]);
+                }
+            }
+            if (unparsedLines > 0) {
+                System.out.printf("  unparsed lines: %d%n", unparsedLines);
+            }
+            firstErrors.forEach(it -> System.out.println("  Error: " + it));
+        }
+    }
+}
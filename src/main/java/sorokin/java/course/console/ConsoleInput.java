@@ -67,6 +67,46 @@ public class ConsoleInput {
         }
     }
 
+    public long readPositiveLong(String prompt, String fieldName) {
+        while (true) {
+            System.out.println(prompt);
+            String value = scanner.nextLine().trim();
+            if (value.isBlank()) {
+                System.out.println("Error: " + fieldName + " must not be blank");
+                continue;
+            }
+            try {
+                long parsed = Long.parseLong(value);
+                if (parsed <= 0) {
+                    System.out.println("Error: " + fieldName + " must be > 0");
+                    continue;
+                }
+                return parsed;
+            } catch (NumberFormatException e) {
+                System.out.println("Error: " + fieldName + " must be a number");
+            }
+        }
+    }
+
+    public <E extends Enum<E>> E readEnum(String prompt, String fieldName, Class<E> enumType) {
+        String allowedValues = Arrays.stream(enumType.getEnumConstants())
+                .map(Enum::name)
+                .collect(Collectors.joining(", "));
+        while (true) {
+            System.out.println(prompt);
+            String value = scanner.nextLine().trim();
+            if (value.isBlank()) {
+                System.out.println("Error: " + fieldName + " must not be blank");
+                continue;
+            }
+            try {
+                return Enum.valueOf(enumType, value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error: " + fieldName + " must be one of " + allowedValues);
+            }
+        }
+    }
+
     public void printAvailableCommands() {
         String availableCommands = Arrays.stream(ConsoleOperationType.values())
                 .map(Enum::name)
@@ -1,6 +1,8 @@
 package sorokin.java.course.console;
 
 import org.springframework.stereotype.Component;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.metrics.CommandCounter;
 import sorokin.java.course.operations.ConsoleOperationType;
 import sorokin.java.course.operations.OperationCommand;
 
@@ -13,15 +15,18 @@ public class OperationsConsoleListener {
 
     private final Map<ConsoleOperationType, OperationCommand> commandMap;
     private final ConsoleInput consoleInput;
+    private final BankMetrics bankMetrics;
     private boolean running;
 
     public OperationsConsoleListener(
             List<OperationCommand> operationCommandList,
-            ConsoleInput consoleInput
+            ConsoleInput consoleInput,
+            BankMetrics bankMetrics
     ) {
         this.commandMap = operationCommandList.stream()
                 .collect(Collectors.toMap(OperationCommand::getOperationType, it -> it));
         this.consoleInput = consoleInput;
+        this.bankMetrics = bankMetrics;
         this.running = true;
     }
 
@@ -41,15 +46,19 @@ public class OperationsConsoleListener {
     }
 
     private void processNextCommand(ConsoleOperationType operationType) {
+        CommandCounter counter = bankMetrics.command(operationType);
         try {
             OperationCommand command = commandMap.get(operationType);
             if (command == null) {
                 throw new IllegalStateException("No command handler for " + operationType);
             }
             command.execute();
+            counter.completed();
         } catch (IllegalArgumentException | IllegalStateException e) {
+            counter.failed(e);
             System.out.println("Error: " + e.getMessage());
         } catch (Exception e) {
+            counter.failed(e);
             String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
             System.out.println("Error: " + message);
         }
@@ -0,0 +1,28 @@
+package sorokin.java.course.history;
+
+import java.util.List;
+
+public interface AccountHistory extends AutoCloseable {
+
+    void record(int accountId, HistoryEntryType type, int counterpartyAccountId, long amount, long balanceAfter);
+
+    // Entries with fromMillis <= timestamp <= toMillis, oldest first.
+    List<HistoryEntry> statement(int accountId, long fromMillis, long toMillis);
+
+    // Entries before this time may be missing, because a previous run didn't shut down cleanly; 0 if none are.
+    default long getIncompleteBeforeMillis() {
+        return 0;
+    }
+
+    // What was found on start, for Main to report; null if there is nothing to say.
+    default String getRestoreNote() {
+        return null;
+    }
+
+    @Override
+    void close();
+
+    static AccountHistory disabled() {
+        return DisabledAccountHistory.INSTANCE;
+    }
+}
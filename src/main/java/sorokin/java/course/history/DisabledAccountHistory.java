@@ -0,0 +1,24 @@
+package sorokin.java.course.history;
+
+import java.util.List;
+
+final class DisabledAccountHistory implements AccountHistory {
+
+    static final DisabledAccountHistory INSTANCE = new DisabledAccountHistory();
+
+    private DisabledAccountHistory() {
+    }
+
+    @Override
+    public void record(int accountId, HistoryEntryType type, int counterpartyAccountId, long amount, long balanceAfter) {
+    }
+
+    @Override
+    public List<HistoryEntry> statement(int accountId, long fromMillis, long toMillis) {
+        return List.of();
+    }
+
+    @Override
+    public void close() {
+    }
+}
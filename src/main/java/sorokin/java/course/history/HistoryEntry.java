@@ -0,0 +1,11 @@
+package sorokin.java.course.history;
+
+// amount is the signed change of the balance; counterpartyAccountId is 0 when there is none.
+public record HistoryEntry(
+        long timestampMillis,
+        HistoryEntryType type,
+        int counterpartyAccountId,
+        long amount,
+        long balanceAfter
+) {
+}
@@ -0,0 +1,24 @@
+package sorokin.java.course.history;
+
+public enum HistoryEntryType {
+    ACCOUNT_OPENED,
+    DEPOSIT,
+    WITHDRAWAL,
+    TRANSFER_OUT,
+    TRANSFER_IN,
+    // A transfer debited here whose target was closed before the credit; the money came back.
+    TRANSFER_REFUND,
+    // The net change of one account in a transfer batch.
+    BATCH_TRANSFER,
+    ACCOUNT_CLOSED,
+    // The remaining money of a closed account, moved into this one.
+    CLOSED_ACCOUNT_MERGED,
+    // Credited or charged by a bulk adjustment of all accounts, such as end-of-day interest minus the maintenance fee.
+    BALANCE_ADJUSTMENT;
+
+    private static final HistoryEntryType[] VALUES = values();
+
+    static HistoryEntryType of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
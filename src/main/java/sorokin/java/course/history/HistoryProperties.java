@@ -0,0 +1,36 @@
+package sorokin.java.course.history;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+@Component
+public class HistoryProperties {
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int entriesInMemory;
+
+    public HistoryProperties(
+            @Value("${history.enabled:true}") boolean enabled,
+            @Value("${history.directory:data/history}") Path directory,
+            @Value("${history.entries-in-memory:64}") int entriesInMemory
+    ) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.entriesInMemory = entriesInMemory;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getEntriesInMemory() {
+        return entriesInMemory;
+    }
+}
@@ -0,0 +1,392 @@
+package sorokin.java.course.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+// Keeps the latest entries of every account in memory and the older ones in a spill file.
+//
+// An entry is four longs: timestamp << 8 | type, counterparty, amount and balance after. Each account
+// has a ring of entries that starts at two and doubles up to entriesInMemory, so the many accounts
+// with a short history stay small. When a full ring takes one more entry, its older half is appended
+// to the spill file as a block pointing to the account's previous block. A statement reads the ring
+// and then walks the blocks back only until it is past the start of the requested period.
+//
+// File layout (little-endian): a header [int magic][int entries per block][int 1 if closed cleanly]
+// [int 0][long incompleteBeforeMillis], then blocks of one fixed size: [int accountId][int entry count]
+// [long offset of the previous block or -1][int CRC32C of the block with this field 0][int 0][entries].
+// close() spills what the rings still hold, so the history outlives a restart: on start the file is
+// scanned and every account continues from its last block. A run that stopped without close() loses
+// what its rings held; the start of the next run is kept in the header as getIncompleteBeforeMillis.
+// Without keepExisting (the journal is off, so the accounts start over too), or if the file was written
+// with another entries-in-memory, it is emptied on start.
+public class SpillingAccountHistory implements AccountHistory {
+
+    static final String SPILL_FILE = "history.spill";
+
+    private static final int MAGIC = 0x48495354;
+    private static final int FILE_HEADER_BYTES = 24;
+    private static final int CLEAN_OFFSET = 8;
+    private static final int INCOMPLETE_BEFORE_OFFSET = 16;
+    private static final int ENTRY_LONGS = 4;
+    private static final int ENTRY_BYTES = ENTRY_LONGS * Long.BYTES;
+    private static final int BLOCK_HEADER_BYTES = 24;
+    private static final int CRC_OFFSET = 16;
+    private static final int SCAN_BUFFER_BYTES = 1 << 20;
+    private static final int INITIAL_ENTRIES = 2;
+    private static final long NO_BLOCK = -1;
+    private static final int TYPE_BITS = 8;
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final VarHandle RING_ARRAY = MethodHandles.arrayElementVarHandle(Ring[].class);
+
+    private final Path spillPath;
+    private final int entriesInMemory;
+    private final int blockEntries;
+    private final FileChannel spill;
+    private final AtomicLong spillEnd;
+    private final long incompleteBeforeMillis;
+    private volatile Ring[][] pages;
+    private String restoreNote;
+
+    public SpillingAccountHistory(Path directory, int entriesInMemory, boolean keepExisting) {
+        if (entriesInMemory < INITIAL_ENTRIES || Integer.bitCount(entriesInMemory) != 1) {
+            throw new IllegalArgumentException("history.entries-in-memory must be a power of two >= " + INITIAL_ENTRIES);
+        }
+        this.spillPath = directory.resolve(SPILL_FILE);
+        this.entriesInMemory = entriesInMemory;
+        this.blockEntries = entriesInMemory / 2;
+        this.spillEnd = new AtomicLong(FILE_HEADER_BYTES);
+        this.pages = new Ring[0][];
+        try {
+            Files.createDirectories(directory);
+            this.spill = FileChannel.open(spillPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.incompleteBeforeMillis = keepExisting ? restore() : 0;
+            if (spillEnd.get() == FILE_HEADER_BYTES) {
+                spill.truncate(0);
+            }
+            writeHeader(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open account history in " + directory, e);
+        }
+    }
+
+    @Override
+    public void record(int accountId, HistoryEntryType type, int counterpartyAccountId, long amount, long balanceAfter) {
+        Ring ring = ringForWrite(accountId);
+        synchronized (ring) {
+            if (ring.size == entriesInMemory) {
+                spillOldest(accountId, ring, blockEntries);
+            } else if (ring.size == ring.capacity()) {
+                ring.grow();
+            }
+            // Clamped, so that the entries of an account stay in time order even if the clock steps back.
+            long timestamp = Math.max(System.currentTimeMillis(), ring.lastTimestamp);
+            ring.lastTimestamp = timestamp;
+            int offset = ring.offsetOf(ring.size);
+            ring.entries[offset] = timestamp << TYPE_BITS | type.ordinal();
+            ring.entries[offset + 1] = counterpartyAccountId;
+            ring.entries[offset + 2] = amount;
+            ring.entries[offset + 3] = balanceAfter;
+            ring.size++;
+        }
+    }
+
+    @Override
+    public String getRestoreNote() {
+        return restoreNote;
+    }
+
+    @Override
+    public List<HistoryEntry> statement(int accountId, long fromMillis, long toMillis) {
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("period start must not be after its end");
+        }
+        Ring ring = ringForRead(accountId);
+        if (ring == null) {
+            return List.of();
+        }
+        long[] recent;
+        long block;
+        synchronized (ring) {
+            recent = ring.copyInOrder();
+            block = ring.lastBlock;
+        }
+        List<HistoryEntry> newestFirst = new ArrayList<>();
+        boolean reachedStart = collect(recent, recent.length / ENTRY_LONGS, fromMillis, toMillis, newestFirst);
+        ByteBuffer buffer = ByteBuffer.allocate(blockBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        while (!reachedStart && block != NO_BLOCK) {
+            readBlock(block, buffer);
+            if (buffer.getInt(0) != accountId || !crcMatches(buffer)) {
+                throw new IllegalStateException("Corrupted account history block at %s: expected account id=%s, found %s"
+                        .formatted(block, accountId, buffer.getInt(0)));
+            }
+            long[] entries = new long[buffer.getInt(4) * ENTRY_LONGS];
+            buffer.position(BLOCK_HEADER_BYTES).asLongBuffer().get(entries);
+            reachedStart = collect(entries, entries.length / ENTRY_LONGS, fromMillis, toMillis, newestFirst);
+            block = buffer.getLong(8);
+        }
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    @Override
+    public long getIncompleteBeforeMillis() {
+        return incompleteBeforeMillis;
+    }
+
+    @Override
+    public void close() {
+        try {
+            for (Ring[] page : pages) {
+                if (page == null) {
+                    continue;
+                }
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    Ring ring = (Ring) RING_ARRAY.getVolatile(page, i);
+                    if (ring != null) {
+                        synchronized (ring) {
+                            while (ring.size > 0) {
+                                spillOldest(ring.accountId, ring, Math.min(ring.size, blockEntries));
+                            }
+                        }
+                    }
+                }
+            }
+            spill.force(false);
+            writeHeader(true);
+            spill.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't close " + spillPath, e);
+        }
+    }
+
+    // Picks up the blocks of the previous runs. Returns the start of this run if the previous one didn't
+    // close the history, and so may have lost entries, or if its file had to be dropped; otherwise what
+    // an earlier run recorded, 0 if none did.
+    private long restore() throws IOException {
+        long size = spill.size();
+        if (size == 0) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (size < FILE_HEADER_BYTES || spill.read(header, 0) < FILE_HEADER_BYTES
+                || header.getInt(0) != MAGIC || header.getInt(4) != blockEntries) {
+            restoreNote = "Account history in %s was written in another format or with another entries-in-memory; starting it over."
+                    .formatted(spillPath);
+            return System.currentTimeMillis();
+        }
+        boolean clean = header.getInt(CLEAN_OFFSET) == 1;
+        long incompleteBefore = header.getLong(INCOMPLETE_BEFORE_OFFSET);
+        long startedAt = System.nanoTime();
+        int blockBytes = blockBytes();
+        long blocks = (size - FILE_HEADER_BYTES) / blockBytes;
+        long skipped = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(blockBytes, SCAN_BUFFER_BYTES / blockBytes * blockBytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer block = ByteBuffer.allocate(blockBytes).order(ByteOrder.LITTLE_ENDIAN);
+        long position = FILE_HEADER_BYTES;
+        long end = FILE_HEADER_BYTES + blocks * blockBytes;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            while (buffer.hasRemaining()) {
+                spill.read(buffer, position + buffer.position());
+            }
+            for (int offset = 0; offset < buffer.limit(); offset += blockBytes, position += blockBytes) {
+                block.clear().put(buffer.array(), offset, blockBytes).flip();
+                int accountId = block.getInt(0);
+                int count = block.getInt(4);
+                // A slot a crashed run reserved but never filled, or filled only in part.
+                if (accountId <= 0 || count <= 0 || count > blockEntries || !crcMatches(block)) {
+                    skipped++;
+                    continue;
+                }
+                // Blocks of one account are appended in order, so the last one read is its newest.
+                Ring ring = ringForWrite(accountId);
+                ring.lastBlock = position;
+                ring.lastTimestamp = block.getLong(BLOCK_HEADER_BYTES + (count - 1) * ENTRY_BYTES) >>> TYPE_BITS;
+            }
+        }
+        spill.truncate(end);
+        spillEnd.set(end);
+        restoreNote = "Restored account history from %s: %d blocks%s (%d ms)."
+                .formatted(spillPath, blocks - skipped, skipped == 0 ? "" : ", %d damaged skipped".formatted(skipped),
+                        (System.nanoTime() - startedAt) / 1_000_000);
+        return clean && skipped == 0 ? incompleteBefore : System.currentTimeMillis();
+    }
+
+    private void writeHeader(boolean clean) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(blockEntries).putInt(clean ? 1 : 0).putInt(0).putLong(incompleteBeforeMillis).flip();
+        while (header.hasRemaining()) {
+            spill.write(header, header.position());
+        }
+        spill.force(false);
+    }
+
+    private static int blockCrc(ByteBuffer block) {
+        var crc = new CRC32C();
+        crc.update(block.duplicate().limit(CRC_OFFSET).position(0));
+        crc.update(block.duplicate().limit(block.limit()).position(CRC_OFFSET + Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static boolean crcMatches(ByteBuffer block) {
+        return block.getInt(CRC_OFFSET) == blockCrc(block);
+    }
+
+    // Walks entries from the newest; returns true once it meets one older than the period.
+    private static boolean collect(long[] entries, int count, long fromMillis, long toMillis, List<HistoryEntry> newestFirst) {
+        for (int i = count - 1; i >= 0; i--) {
+            int offset = i * ENTRY_LONGS;
+            long timestamp = entries[offset] >>> TYPE_BITS;
+            if (timestamp < fromMillis) {
+                return true;
+            }
+            if (timestamp <= toMillis) {
+                newestFirst.add(new HistoryEntry(
+                        timestamp,
+                        HistoryEntryType.of((int) (entries[offset] & ((1 << TYPE_BITS) - 1))),
+                        (int) entries[offset + 1],
+                        entries[offset + 2],
+                        entries[offset + 3]
+                ));
+            }
+        }
+        return false;
+    }
+
+    // Called with the ring's monitor held, so blocks of one account are appended one at a time. Every block
+    // takes a full slot, so the file can be scanned in steps of one block; a spill on close fills it in part.
+    private void spillOldest(int accountId, Ring ring, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(blockBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(accountId).putInt(count).putLong(ring.lastBlock).putInt(0).putInt(0);
+        for (int i = 0; i < count; i++) {
+            int offset = ring.offsetOf(i);
+            for (int j = 0; j < ENTRY_LONGS; j++) {
+                buffer.putLong(ring.entries[offset + j]);
+            }
+        }
+        buffer.clear();
+        buffer.putInt(CRC_OFFSET, blockCrc(buffer));
+        long position = spillEnd.getAndAdd(buffer.remaining());
+        try {
+            while (buffer.hasRemaining()) {
+                spill.write(buffer, position + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write account history to " + spillPath, e);
+        }
+        ring.lastBlock = position;
+        ring.first = (ring.first + count) & (ring.capacity() - 1);
+        ring.size -= count;
+    }
+
+    private void readBlock(long position, ByteBuffer buffer) {
+        buffer.clear();
+        try {
+            while (buffer.hasRemaining()) {
+                if (spill.read(buffer, position + buffer.position()) < 0) {
+                    throw new IllegalStateException("Account history block at %s is cut short in %s".formatted(position, spillPath));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read account history from " + spillPath, e);
+        }
+        buffer.flip();
+    }
+
+    private int blockBytes() {
+        return BLOCK_HEADER_BYTES + blockEntries * ENTRY_BYTES;
+    }
+
+    private Ring ringForRead(int accountId) {
+        if (accountId <= 0) {
+            return null;
+        }
+        Ring[][] snapshot = pages;
+        int pageIndex = accountId >>> PAGE_SHIFT;
+        if (pageIndex >= snapshot.length || snapshot[pageIndex] == null) {
+            return null;
+        }
+        return (Ring) RING_ARRAY.getVolatile(snapshot[pageIndex], accountId & PAGE_MASK);
+    }
+
+    private Ring ringForWrite(int accountId) {
+        Ring ring = ringForRead(accountId);
+        if (ring != null) {
+            return ring;
+        }
+        if (accountId <= 0) {
+            throw new IllegalArgumentException("account id must be > 0");
+        }
+        Ring[] page = pageForWrite(accountId >>> PAGE_SHIFT);
+        Ring created = new Ring(accountId);
+        Ring existing = (Ring) RING_ARRAY.compareAndExchange(page, accountId & PAGE_MASK, null, created);
+        return existing == null ? created : existing;
+    }
+
+    // Copy-on-write page directory, as in ObjectAccountStore.
+    private synchronized Ring[] pageForWrite(int pageIndex) {
+        Ring[][] current = pages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        Ring[][] next = Arrays.copyOf(current, Math.max(current.length, pageIndex + 1));
+        Ring[] page = new Ring[PAGE_SIZE];
+        next[pageIndex] = page;
+        pages = next;
+        return page;
+    }
+
+    private static final class Ring {
+
+        private final int accountId;
+        private long[] entries = new long[INITIAL_ENTRIES * ENTRY_LONGS];
+        // Index of the oldest entry; the capacity is a power of two.
+        private int first;
+        private int size;
+        private long lastTimestamp;
+        private long lastBlock = NO_BLOCK;
+
+        private Ring(int accountId) {
+            this.accountId = accountId;
+        }
+
+        private int capacity() {
+            return entries.length / ENTRY_LONGS;
+        }
+
+        private int offsetOf(int index) {
+            return ((first + index) & (capacity() - 1)) * ENTRY_LONGS;
+        }
+
+        private void grow() {
+            entries = Arrays.copyOf(copyInOrder(), entries.length * 2);
+            first = 0;
+        }
+
+        private long[] copyInOrder() {
+            long[] copy = new long[size * ENTRY_LONGS];
+            int head = Math.min(size, capacity() - first);
+            System.arraycopy(entries, first * ENTRY_LONGS, copy, 0, head * ENTRY_LONGS);
+            System.arraycopy(entries, 0, copy, head * ENTRY_LONGS, (size - head) * ENTRY_LONGS);
+            return copy;
+        }
+    }
+}
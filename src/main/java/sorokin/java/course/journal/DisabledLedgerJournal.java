@@ -0,0 +1,65 @@
+package sorokin.java.course.journal;
+
+// Doubles as its own group, which drops records just the same.
+final class DisabledLedgerJournal implements LedgerJournal, LedgerGroup {
+
+    static final DisabledLedgerJournal INSTANCE = new DisabledLedgerJournal();
+
+    private DisabledLedgerJournal() {
+    }
+
+    @Override
+    public void userCreated(int userId, String login) {
+    }
+
+    @Override
+    public void accountCreated(int accountId, int userId, long moneyAmount) {
+    }
+
+    @Override
+    public void deposited(int accountId, long amount) {
+    }
+
+    @Override
+    public void withdrawn(int accountId, long amount) {
+    }
+
+    @Override
+    public void transferred(int fromAccountId, int toAccountId, long debitedAmount, long creditedAmount) {
+    }
+
+    @Override
+    public void accountClosed(int accountId, int targetAccountId, long movedAmount) {
+    }
+
+    @Override
+    public void replay(LedgerEvents target, int fromSegment, int toSegment) {
+    }
+
+    @Override
+    public int sealSegment() {
+        return 0;
+    }
+
+    @Override
+    public void deleteSegmentsBefore(int segment) {
+    }
+
+    @Override
+    public LedgerGroup newGroup() {
+        return this;
+    }
+
+    @Override
+    public void append(LedgerGroup group) {
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,7 @@
+package sorokin.java.course.journal;
+
+public enum FsyncPolicy {
+    PER_OP,
+    EVERY_N_OPS,
+    INTERVAL
+}
@@ -0,0 +1,70 @@
+package sorokin.java.course.journal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+@Component
+public class JournalProperties {
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSizeMb;
+    private final FsyncPolicy fsyncPolicy;
+    private final int fsyncEveryOps;
+    private final long fsyncIntervalMillis;
+    private final long snapshotIntervalSeconds;
+    private final boolean deleteSnapshottedSegments;
+
+    public JournalProperties(
+            @Value("${journal.enabled}") boolean enabled,
+            @Value("${journal.directory}") Path directory,
+            @Value("${journal.segment-size-mb}") int segmentSizeMb,
+            @Value("${journal.fsync}") FsyncPolicy fsyncPolicy,
+            @Value("${journal.fsync-every-ops}") int fsyncEveryOps,
+            @Value("${journal.fsync-interval-ms}") long fsyncIntervalMillis,
+            @Value("${journal.snapshot-interval-seconds}") long snapshotIntervalSeconds,
+            @Value("${journal.delete-snapshotted-segments}") boolean deleteSnapshottedSegments
+    ) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSizeMb = segmentSizeMb;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncEveryOps = fsyncEveryOps;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        this.deleteSnapshottedSegments = deleteSnapshottedSegments;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getSegmentSizeMb() {
+        return segmentSizeMb;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public int getFsyncEveryOps() {
+        return fsyncEveryOps;
+    }
+
+    public long getFsyncIntervalMillis() {
+        return fsyncIntervalMillis;
+    }
+
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public boolean isDeleteSnapshottedSegments() {
+        return deleteSnapshottedSegments;
+    }
+}
@@ -0,0 +1,53 @@
+package sorokin.java.course.journal;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+import sorokin.java.course.account.AccountService;
+import sorokin.java.course.user.UserService;
+
+@Component
+public class JournalRecovery {
+
+    private final LedgerJournal ledgerJournal;
+    private final JournalProperties journalProperties;
+    private final UserService userService;
+    private final AccountService accountService;
+    private String restoreNote;
+
+    public JournalRecovery(
+            LedgerJournal ledgerJournal,
+            JournalProperties journalProperties,
+            UserService userService,
+            AccountService accountService
+    ) {
+        this.ledgerJournal = ledgerJournal;
+        this.journalProperties = journalProperties;
+        this.userService = userService;
+        this.accountService = accountService;
+    }
+
+    @PostConstruct
+    public void recover() {
+        if (!journalProperties.isEnabled()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        var snapshot = new LedgerSnapshots(journalProperties.getDirectory()).loadLatest();
+        var image = snapshot.map(LedgerSnapshots.Snapshot::image).orElseGet(LedgerImage::new);
+        int fromSegment = snapshot.map(LedgerSnapshots.Snapshot::coveredSegments).orElse(0);
+        ledgerJournal.replay(image, fromSegment, Integer.MAX_VALUE);
+        if (image.getMaxUserId() == 0 && image.getMaxAccountId() == 0) {
+            return;
+        }
+        accountService.restore(image);
+        userService.restore(image);
+        restoreNote = "Restored state from %s: last user id=%s, last account id=%s (%s ms)."
+                .formatted(snapshot.isPresent() ? "snapshot and journal" : "journal",
+                        image.getMaxUserId(), image.getMaxAccountId(), (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    // What recover() restored, for Main to report; null if it restored nothing.
+    public String getRestoreNote() {
+        return restoreNote;
+    }
+}
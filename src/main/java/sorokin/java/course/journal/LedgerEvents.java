@@ -0,0 +1,16 @@
+package sorokin.java.course.journal;
+
+public interface LedgerEvents {
+
+    void userCreated(int userId, String login);
+
+    void accountCreated(int accountId, int userId, long moneyAmount);
+
+    void deposited(int accountId, long amount);
+
+    void withdrawn(int accountId, long amount);
+
+    void transferred(int fromAccountId, int toAccountId, long debitedAmount, long creditedAmount);
+
+    void accountClosed(int accountId, int targetAccountId, long movedAmount);
+}
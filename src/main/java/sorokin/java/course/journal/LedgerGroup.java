@@ -0,0 +1,9 @@
+package sorokin.java.course.journal;
+
+// Records collected on the calling thread and appended by LedgerJournal.append as one journal record:
+// replay applies all of them or, if a crash tore the record, none. Nothing a group describes may become
+// visible to other operations before the group is appended, or their records could precede it.
+public interface LedgerGroup extends LedgerEvents {
+
+    boolean isEmpty();
+}
@@ -0,0 +1,111 @@
+package sorokin.java.course.journal;
+
+import java.util.Arrays;
+
+// Plain, single-threaded picture of the ledger rebuilt from journal records.
+// Records carry effects rather than commands, so they are applied without
+// re-validation; deposits and withdrawals that were journaled after the close of
+// their account are already part of the moved amount and are skipped.
+public class LedgerImage implements LedgerEvents {
+
+    private static final int NO_USER = 0;
+
+    private String[] logins;
+    private int[] accountUserIds;
+    private long[] balances;
+    private int maxUserId;
+    private int maxAccountId;
+
+    public LedgerImage() {
+        this.logins = new String[16];
+        this.accountUserIds = new int[16];
+        this.balances = new long[16];
+    }
+
+    @Override
+    public void userCreated(int userId, String login) {
+        if (userId >= logins.length) {
+            logins = Arrays.copyOf(logins, grow(logins.length, userId));
+        }
+        logins[userId] = login;
+        maxUserId = Math.max(maxUserId, userId);
+    }
+
+    @Override
+    public void accountCreated(int accountId, int userId, long moneyAmount) {
+        restoreAccount(accountId, userId, moneyAmount);
+    }
+
+    void restoreAccount(int accountId, int userId, long balance) {
+        if (accountId >= accountUserIds.length) {
+            int newLength = grow(accountUserIds.length, accountId);
+            accountUserIds = Arrays.copyOf(accountUserIds, newLength);
+            balances = Arrays.copyOf(balances, newLength);
+        }
+        accountUserIds[accountId] = userId;
+        balances[accountId] = balance;
+        maxAccountId = Math.max(maxAccountId, accountId);
+    }
+
+    void restoreMaxIds(int maxUserId, int maxAccountId) {
+        this.maxUserId = Math.max(this.maxUserId, maxUserId);
+        this.maxAccountId = Math.max(this.maxAccountId, maxAccountId);
+    }
+
+    @Override
+    public void deposited(int accountId, long amount) {
+        if (isOpen(accountId)) {
+            balances[accountId] += amount;
+        }
+    }
+
+    @Override
+    public void withdrawn(int accountId, long amount) {
+        if (isOpen(accountId)) {
+            balances[accountId] -= amount;
+        }
+    }
+
+    @Override
+    public void transferred(int fromAccountId, int toAccountId, long debitedAmount, long creditedAmount) {
+        withdrawn(fromAccountId, debitedAmount);
+        deposited(toAccountId, creditedAmount);
+    }
+
+    @Override
+    public void accountClosed(int accountId, int targetAccountId, long movedAmount) {
+        if (isOpen(accountId)) {
+            accountUserIds[accountId] = NO_USER;
+            balances[accountId] = 0;
+        }
+        deposited(targetAccountId, movedAmount);
+    }
+
+    public int getMaxUserId() {
+        return maxUserId;
+    }
+
+    public int getMaxAccountId() {
+        return maxAccountId;
+    }
+
+    public String getLogin(int userId) {
+        return userId < logins.length ? logins[userId] : null;
+    }
+
+    public boolean isOpen(int accountId) {
+        return accountId > 0 && accountId < accountUserIds.length && accountUserIds[accountId] != NO_USER;
+    }
+
+    public int getAccountUserId(int accountId) {
+        return accountUserIds[accountId];
+    }
+
+    public long getBalance(int accountId) {
+        return balances[accountId];
+    }
+
+    private static int grow(int length, int index) {
+        return Math.max(length * 2, index + 1);
+    }
+}
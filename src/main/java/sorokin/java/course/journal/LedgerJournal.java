@@ -0,0 +1,38 @@
+package sorokin.java.course.journal;
+
+public interface LedgerJournal extends LedgerEvents, AutoCloseable {
+
+    // The longest login a user record can hold, in UTF-8 bytes.
+    int MAX_LOGIN_BYTES = Short.MAX_VALUE;
+
+    // Replays segments in [fromSegment, toSegment). Segments below the active one are immutable
+    // and can be replayed while records are appended; the active one only during recovery.
+    void replay(LedgerEvents target, int fromSegment, int toSegment);
+
+    // Starts a new segment unless the active one is empty and returns the index of the active segment,
+    // so every segment below the returned index is sealed.
+    int sealSegment();
+
+    void deleteSegmentsBefore(int segment);
+
+    LedgerGroup newGroup();
+
+    // Writes the records of the group as one record, forced like a single one; an empty group writes nothing.
+    void append(LedgerGroup group);
+
+    // Records the calling thread appends until endBatch are forced to disk once, at endBatch,
+    // instead of one by one as journal.fsync=PER_OP would. Their operations must not be reported
+    // as done before endBatch returns.
+    default void beginBatch() {
+    }
+
+    default void endBatch() {
+    }
+
+    @Override
+    void close();
+
+    static LedgerJournal disabled() {
+        return DisabledLedgerJournal.INSTANCE;
+    }
+}
@@ -0,0 +1,242 @@
+package sorokin.java.course.journal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// A snapshot named snapshot-N.snap holds the ledger state after every journal segment below N.
+// Layout (little-endian): magic, version, N, max ids, user count, (id, login) pairs, account count,
+// (id, userId, balance) triples, magic. Logins are length-prefixed UTF-8.
+// Files are written to a temp name and moved into place.
+public class LedgerSnapshots {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int MAGIC = 0x4D42534E;
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final Path directory;
+
+    public LedgerSnapshots(Path directory) {
+        this.directory = directory;
+    }
+
+    public record Snapshot(LedgerImage image, int coveredSegments) {
+    }
+
+    public Optional<Snapshot> loadLatest() {
+        return latestPath().map(this::load);
+    }
+
+    public void write(LedgerImage image, int coveredSegments) {
+        Path target = directory.resolve(SNAPSHOT_PREFIX + "%08d".formatted(coveredSegments) + SNAPSHOT_SUFFIX);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeImage(new SnapshotWriter(channel), image, coveredSegments);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write snapshot " + target, e);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Path old : listSnapshots()) {
+                if (coveredSegmentsOf(old) < coveredSegments) {
+                    Files.deleteIfExists(old);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't publish snapshot " + target, e);
+        }
+    }
+
+    private Snapshot load(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var in = new SnapshotReader(channel);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalStateException("Not a ledger snapshot: " + path);
+            }
+            int coveredSegments = in.readInt();
+            var image = new LedgerImage();
+            image.restoreMaxIds(in.readInt(), in.readInt());
+            int users = in.readInt();
+            for (int i = 0; i < users; i++) {
+                image.userCreated(in.readInt(), in.readString());
+            }
+            int accounts = in.readInt();
+            for (int i = 0; i < accounts; i++) {
+                image.restoreAccount(in.readInt(), in.readInt(), in.readLong());
+            }
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException("Truncated ledger snapshot: " + path);
+            }
+            return new Snapshot(image, coveredSegments);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read snapshot " + path, e);
+        }
+    }
+
+    private static void writeImage(SnapshotWriter out, LedgerImage image, int coveredSegments) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(coveredSegments);
+        out.writeInt(image.getMaxUserId());
+        out.writeInt(image.getMaxAccountId());
+
+        int users = 0;
+        for (int userId = 1; userId <= image.getMaxUserId(); userId++) {
+            if (image.getLogin(userId) != null) {
+                users++;
+            }
+        }
+        out.writeInt(users);
+        for (int userId = 1; userId <= image.getMaxUserId(); userId++) {
+            String login = image.getLogin(userId);
+            if (login != null) {
+                out.writeInt(userId);
+                out.writeString(login);
+            }
+        }
+
+        int accounts = 0;
+        for (int accountId = 1; accountId <= image.getMaxAccountId(); accountId++) {
+            if (image.isOpen(accountId)) {
+                accounts++;
+            }
+        }
+        out.writeInt(accounts);
+        for (int accountId = 1; accountId <= image.getMaxAccountId(); accountId++) {
+            if (image.isOpen(accountId)) {
+                out.writeInt(accountId);
+                out.writeInt(image.getAccountUserId(accountId));
+                out.writeLong(image.getBalance(accountId));
+            }
+        }
+        out.writeInt(MAGIC);
+        out.flush();
+    }
+
+    private Optional<Path> latestPath() {
+        List<Path> snapshots = listSnapshots();
+        return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1));
+    }
+
+    private List<Path> listSnapshots() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(it -> {
+                        String name = it.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't list snapshots in " + directory, e);
+        }
+    }
+
+    private static int coveredSegmentsOf(Path snapshotPath) {
+        String name = snapshotPath.getFileName().toString();
+        return Integer.parseInt(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    private static final class SnapshotWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        private SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void writeInt(int value) throws IOException {
+            ensureRoom(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            ensureRoom(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureRoom(Short.BYTES + bytes.length);
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensureRoom(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    private static final class SnapshotReader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] stringBytes;
+
+        private SnapshotReader(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN).limit(0);
+            this.stringBytes = new byte[Short.MAX_VALUE];
+        }
+
+        int readInt() throws IOException {
+            ensureAvailable(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long readLong() throws IOException {
+            ensureAvailable(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        String readString() throws IOException {
+            ensureAvailable(Short.BYTES);
+            int length = buffer.getShort();
+            ensureAvailable(length);
+            buffer.get(stringBytes, 0, length);
+            return new String(stringBytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void ensureAvailable(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of snapshot");
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
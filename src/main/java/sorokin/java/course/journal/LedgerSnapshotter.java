@@ -0,0 +1,86 @@
+package sorokin.java.course.journal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.metrics.OperationTimer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Compacts the journal in the background: the previous snapshot plus every sealed segment
+// is folded into a new snapshot. Only files are read, so writers are never paused. Failures of
+// the scheduled runs show up in the errors of the journal.snapshot metric.
+@Component
+public class LedgerSnapshotter {
+
+    private final LedgerJournal ledgerJournal;
+    private final JournalProperties journalProperties;
+    private final LedgerSnapshots ledgerSnapshots;
+    private final OperationTimer snapshotTimer;
+    private ScheduledExecutorService scheduler;
+
+    public LedgerSnapshotter(LedgerJournal ledgerJournal, JournalProperties journalProperties, BankMetrics bankMetrics) {
+        this.ledgerJournal = ledgerJournal;
+        this.journalProperties = journalProperties;
+        this.ledgerSnapshots = new LedgerSnapshots(journalProperties.getDirectory());
+        this.snapshotTimer = bankMetrics.timer("journal.snapshot");
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = journalProperties.getSnapshotIntervalSeconds();
+        if (!journalProperties.isEnabled() || interval <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("ledger-snapshotter")
+                .daemon(true)
+                .factory());
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public synchronized void snapshot() {
+        long startedAt = snapshotTimer.start();
+        try {
+            snapshotSealedSegments();
+            snapshotTimer.stop(startedAt);
+        } catch (RuntimeException e) {
+            snapshotTimer.fail(startedAt, e);
+            throw e;
+        }
+    }
+
+    private void snapshotSealedSegments() {
+        var previous = ledgerSnapshots.loadLatest();
+        int fromSegment = previous.map(LedgerSnapshots.Snapshot::coveredSegments).orElse(0);
+        int sealedSegments = ledgerJournal.sealSegment();
+        if (sealedSegments <= fromSegment) {
+            return;
+        }
+        var image = previous.map(LedgerSnapshots.Snapshot::image).orElseGet(LedgerImage::new);
+        ledgerJournal.replay(image, fromSegment, sealedSegments);
+        ledgerSnapshots.write(image, sealedSegments);
+        if (journalProperties.isDeleteSnapshottedSegments()) {
+            ledgerJournal.deleteSegmentsBefore(sealedSegments);
+        }
+    }
+
+    // A scheduled run that throws would cancel the schedule; the failure is already counted by snapshot().
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            // the next run tries again
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package sorokin.java.course.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Record layout: [int length][int crc32c][byte type][payload]. The length is written last,
+// so a reader that sees a non-zero length and a matching checksum sees the whole record.
+// Segments are pre-sized files mapped into memory; zero length marks the end of a segment.
+// A group record holds other records as [int length][byte type][payload] and is one record
+// like any other, so it is torn or whole; a segment is made larger to take a group that
+// doesn't fit into journal.segment-size-mb.
+public class MappedLedgerJournal implements LedgerJournal {
+
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final byte USER_CREATED = 1;
+    private static final byte ACCOUNT_CREATED = 2;
+    private static final byte DEPOSITED = 3;
+    private static final byte WITHDRAWN = 4;
+    private static final byte TRANSFERRED = 5;
+    private static final byte ACCOUNT_CLOSED = 6;
+    // Amounts became longs; the int-amount types above are still read from older segments.
+    private static final byte ACCOUNT_CREATED_LONG = 7;
+    private static final byte DEPOSITED_LONG = 8;
+    private static final byte WITHDRAWN_LONG = 9;
+    private static final byte TRANSFERRED_LONG = 10;
+    private static final byte ACCOUNT_CLOSED_LONG = 11;
+    private static final byte GROUP = 12;
+    private static final int MAX_GROUP_BYTES = Integer.MAX_VALUE - 2 * HEADER_BYTES - 1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final int fsyncEveryOps;
+    private final ReentrantLock appendLock;
+    private final CRC32C crc;
+    private final ScheduledExecutorService flusher;
+
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int recordStart;
+    private int forcedPosition;
+    private int unforcedOps;
+    // Threads in a batch: only their own records wait for their endBatch to be forced.
+    private final Set<Thread> batchThreads;
+
+    public MappedLedgerJournal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy,
+                               int fsyncEveryOps, long fsyncIntervalMillis) {
+        if (segmentSize < 1 << 20) {
+            throw new IllegalArgumentException("journal segment size must be at least 1 MB");
+        }
+        if (fsyncPolicy == FsyncPolicy.EVERY_N_OPS && fsyncEveryOps <= 0) {
+            throw new IllegalArgumentException("journal.fsync-every-ops must be > 0");
+        }
+        if (fsyncPolicy == FsyncPolicy.INTERVAL && fsyncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("journal.fsync-interval-ms must be > 0");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncEveryOps = fsyncEveryOps;
+        this.appendLock = new ReentrantLock();
+        this.batchThreads = new HashSet<>();
+        this.crc = new CRC32C();
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments(directory);
+            if (segments.isEmpty()) {
+                openSegment(0, 0);
+            } else {
+                Path last = segments.get(segments.size() - 1);
+                openSegment(segmentIndexOf(last), Files.size(last));
+                recoverTail();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open journal in " + directory, e);
+        }
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                    .name("journal-flusher")
+                    .daemon(true)
+                    .factory());
+            flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    @Override
+    public void userCreated(int userId, String login) {
+        byte[] loginBytes = loginBytes(login);
+        appendLock.lock();
+        try {
+            begin(USER_CREATED, 4 + 2 + loginBytes.length)
+                    .putInt(userId)
+                    .putShort((short) loginBytes.length)
+                    .put(loginBytes);
+            commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void accountCreated(int accountId, int userId, long moneyAmount) {
+        appendLock.lock();
+        try {
+            begin(ACCOUNT_CREATED_LONG, 16).putInt(accountId).putInt(userId).putLong(moneyAmount);
+            commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void deposited(int accountId, long amount) {
+        appendLock.lock();
+        try {
+            begin(DEPOSITED_LONG, 12).putInt(accountId).putLong(amount);
+            commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void withdrawn(int accountId, long amount) {
+        appendLock.lock();
+        try {
+            begin(WITHDRAWN_LONG, 12).putInt(accountId).putLong(amount);
+            commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void transferred(int fromAccountId, int toAccountId, long debitedAmount, long creditedAmount) {
+        appendLock.lock();
+        try {
+            begin(TRANSFERRED_LONG, 24).putInt(fromAccountId).putInt(toAccountId).putLong(debitedAmount).putLong(creditedAmount);
+            commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void accountClosed(int accountId, int targetAccountId, long movedAmount) {
+        appendLock.lock();
+        try {
+            begin(ACCOUNT_CLOSED_LONG, 16).putInt(accountId).putInt(targetAccountId).putLong(movedAmount);
+            commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void replay(LedgerEvents target, int fromSegment, int toSegment) {
+        try {
+            int expectedIndex = fromSegment;
+            for (Path path : listSegments(directory)) {
+                int index = segmentIndexOf(path);
+                if (index < fromSegment || index >= toSegment) {
+                    continue;
+                }
+                if (index != expectedIndex) {
+                    throw new IllegalStateException("Journal segment %s is missing in %s".formatted(expectedIndex, directory));
+                }
+                scan(map(path, FileChannel.MapMode.READ_ONLY, Files.size(path)), target);
+                expectedIndex++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't replay journal in " + directory, e);
+        }
+    }
+
+    @Override
+    public int sealSegment() {
+        appendLock.lock();
+        try {
+            if (recordStart > 0) {
+                rollSegment(0);
+            }
+            return segmentIndex;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteSegmentsBefore(int segment) {
+        int activeSegment;
+        appendLock.lock();
+        try {
+            activeSegment = segmentIndex;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            for (Path path : listSegments(directory)) {
+                if (segmentIndexOf(path) < Math.min(segment, activeSegment)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't delete journal segments in " + directory, e);
+        }
+    }
+
+    @Override
+    public LedgerGroup newGroup() {
+        return new BufferedGroup();
+    }
+
+    @Override
+    public void append(LedgerGroup group) {
+        if (!(group instanceof BufferedGroup bufferedGroup)) {
+            throw new IllegalArgumentException("group was not created by this journal");
+        }
+        if (bufferedGroup.isEmpty()) {
+            return;
+        }
+        ByteBuffer records = bufferedGroup.buffer.duplicate().flip();
+        appendLock.lock();
+        try {
+            begin(GROUP, records.remaining()).put(records);
+            commit();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void beginBatch() {
+        appendLock.lock();
+        try {
+            batchThreads.add(Thread.currentThread());
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void endBatch() {
+        appendLock.lock();
+        try {
+            if (!batchThreads.remove(Thread.currentThread())) {
+                return;
+            }
+            // Forcing everything appended so far also covers the records of batches still open, which is harmless.
+            if (fsyncPolicy == FsyncPolicy.PER_OP
+                    || fsyncPolicy == FsyncPolicy.EVERY_N_OPS && unforcedOps >= fsyncEveryOps) {
+                forceUnforced();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public void flush() {
+        MappedByteBuffer toForce;
+        int from;
+        int to;
+        appendLock.lock();
+        try {
+            toForce = segment;
+            from = forcedPosition;
+            to = recordStart;
+            forcedPosition = recordStart;
+            unforcedOps = 0;
+        } finally {
+            appendLock.unlock();
+        }
+        if (to > from) {
+            toForce.force(from, to - from);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flush();
+    }
+
+    private MappedByteBuffer begin(byte type, int payloadBytes) {
+        int recordBytes = HEADER_BYTES + 1 + payloadBytes;
+        if (recordStart + recordBytes + HEADER_BYTES > segment.capacity()) {
+            rollSegment(recordBytes + HEADER_BYTES);
+        }
+        segment.position(recordStart + HEADER_BYTES);
+        segment.put(type);
+        return segment;
+    }
+
+    private void commit() {
+        int payloadStart = recordStart + HEADER_BYTES;
+        int recordEnd = segment.position();
+        segment.limit(recordEnd).position(payloadStart);
+        crc.reset();
+        crc.update(segment);
+        segment.limit(segment.capacity());
+        segment.putInt(recordStart + 4, (int) crc.getValue());
+        segment.putInt(recordStart, recordEnd - payloadStart);
+        recordStart = recordEnd;
+        afterAppend();
+    }
+
+    private void afterAppend() {
+        switch (fsyncPolicy) {
+            case PER_OP -> {
+                if (batchThreads.contains(Thread.currentThread())) {
+                    unforcedOps++;
+                } else {
+                    forceUnforced();
+                }
+            }
+            case EVERY_N_OPS -> {
+                if (++unforcedOps >= fsyncEveryOps && !batchThreads.contains(Thread.currentThread())) {
+                    forceUnforced();
+                }
+            }
+            case INTERVAL -> {
+                // the flusher thread forces the written range
+            }
+        }
+    }
+
+    private void forceUnforced() {
+        if (recordStart > forcedPosition) {
+            segment.force(forcedPosition, recordStart - forcedPosition);
+        }
+        forcedPosition = recordStart;
+        unforcedOps = 0;
+    }
+
+    private void rollSegment(int minBytes) {
+        forceUnforced();
+        try {
+            openSegment(segmentIndex + 1, minBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open next journal segment in " + directory, e);
+        }
+    }
+
+    private void openSegment(int index, long minBytes) throws IOException {
+        segment = map(segmentPath(directory, index), FileChannel.MapMode.READ_WRITE, Math.max(segmentSize, minBytes));
+        segmentIndex = index;
+        recordStart = 0;
+        forcedPosition = 0;
+        unforcedOps = 0;
+    }
+
+    // Finds the end of the last valid record in the active segment and wipes anything after it,
+    // so a record torn by a crash can't be mistaken for data once new records are appended.
+    private void recoverTail() {
+        recordStart = scan(segment, null);
+        for (int i = recordStart; i < segment.capacity(); i++) {
+            if (segment.get(i) != 0) {
+                segment.put(i, (byte) 0);
+            }
+        }
+        segment.force();
+        forcedPosition = recordStart;
+    }
+
+    private int scan(MappedByteBuffer buffer, LedgerEvents target) {
+        CRC32C checksum = new CRC32C();
+        int position = 0;
+        int capacity = buffer.capacity();
+        while (position + HEADER_BYTES < capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > capacity) {
+                break;
+            }
+            int payloadStart = position + HEADER_BYTES;
+            checksum.reset();
+            checksum.update(buffer.slice(payloadStart, length));
+            if ((int) checksum.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            if (target != null) {
+                dispatch(buffer.slice(payloadStart, length).order(buffer.order()), target);
+            }
+            position = payloadStart + length;
+        }
+        return position;
+    }
+
+    private static void dispatch(ByteBuffer record, LedgerEvents target) {
+        byte type = record.get();
+        switch (type) {
+            case USER_CREATED -> {
+                int userId = record.getInt();
+                byte[] login = new byte[record.getShort()];
+                record.get(login);
+                target.userCreated(userId, new String(login, StandardCharsets.UTF_8));
+            }
+            case ACCOUNT_CREATED -> target.accountCreated(record.getInt(), record.getInt(), record.getInt());
+            case DEPOSITED -> target.deposited(record.getInt(), record.getInt());
+            case WITHDRAWN -> target.withdrawn(record.getInt(), record.getInt());
+            case TRANSFERRED -> target.transferred(record.getInt(), record.getInt(), record.getInt(), record.getInt());
+            case ACCOUNT_CLOSED -> target.accountClosed(record.getInt(), record.getInt(), record.getInt());
+            case ACCOUNT_CREATED_LONG -> target.accountCreated(record.getInt(), record.getInt(), record.getLong());
+            case DEPOSITED_LONG -> target.deposited(record.getInt(), record.getLong());
+            case WITHDRAWN_LONG -> target.withdrawn(record.getInt(), record.getLong());
+            case TRANSFERRED_LONG -> target.transferred(record.getInt(), record.getInt(), record.getLong(), record.getLong());
+            case ACCOUNT_CLOSED_LONG -> target.accountClosed(record.getInt(), record.getInt(), record.getLong());
+            case GROUP -> {
+                while (record.hasRemaining()) {
+                    int length = record.getInt();
+                    dispatch(record.slice(record.position(), length).order(record.order()), target);
+                    record.position(record.position() + length);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown journal record type: " + type);
+        }
+    }
+
+    private static byte[] loginBytes(String login) {
+        byte[] loginBytes = login.getBytes(StandardCharsets.UTF_8);
+        if (loginBytes.length > MAX_LOGIN_BYTES) {
+            throw new IllegalArgumentException("login is too long");
+        }
+        return loginBytes;
+    }
+
+    private static MappedByteBuffer map(Path path, FileChannel.MapMode mode, long size) throws IOException {
+        var options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            MappedByteBuffer buffer = channel.map(mode, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    static List<Path> listSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(it -> {
+                        String name = it.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve(SEGMENT_PREFIX + "%08d".formatted(index) + SEGMENT_SUFFIX);
+    }
+
+    static int segmentIndexOf(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Encodes on the calling thread without taking the append lock.
+    private static final class BufferedGroup implements LedgerGroup {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+        @Override
+        public void userCreated(int userId, String login) {
+            byte[] loginBytes = loginBytes(login);
+            begin(USER_CREATED, 4 + 2 + loginBytes.length)
+                    .putInt(userId)
+                    .putShort((short) loginBytes.length)
+                    .put(loginBytes);
+        }
+
+        @Override
+        public void accountCreated(int accountId, int userId, long moneyAmount) {
+            begin(ACCOUNT_CREATED_LONG, 16).putInt(accountId).putInt(userId).putLong(moneyAmount);
+        }
+
+        @Override
+        public void deposited(int accountId, long amount) {
+            begin(DEPOSITED_LONG, 12).putInt(accountId).putLong(amount);
+        }
+
+        @Override
+        public void withdrawn(int accountId, long amount) {
+            begin(WITHDRAWN_LONG, 12).putInt(accountId).putLong(amount);
+        }
+
+        @Override
+        public void transferred(int fromAccountId, int toAccountId, long debitedAmount, long creditedAmount) {
+            begin(TRANSFERRED_LONG, 24).putInt(fromAccountId).putInt(toAccountId).putLong(debitedAmount).putLong(creditedAmount);
+        }
+
+        @Override
+        public void accountClosed(int accountId, int targetAccountId, long movedAmount) {
+            begin(ACCOUNT_CLOSED_LONG, 16).putInt(accountId).putInt(targetAccountId).putLong(movedAmount);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return buffer.position() == 0;
+        }
+
+        private ByteBuffer begin(byte type, int payloadBytes) {
+            int recordBytes = 4 + 1 + payloadBytes;
+            if (buffer.remaining() < recordBytes) {
+                long needed = (long) buffer.position() + recordBytes;
+                if (needed > MAX_GROUP_BYTES) {
+                    throw new IllegalArgumentException("Journal group is larger than %d bytes".formatted(MAX_GROUP_BYTES));
+                }
+                buffer = ByteBuffer.allocate((int) Math.min(Math.max(needed, 2L * buffer.capacity()), MAX_GROUP_BYTES))
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .put(buffer.flip());
+            }
+            return buffer.putInt(1 + payloadBytes).put(type);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package sorokin.java.course.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import sorokin.java.course.operations.ConsoleOperationType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Registry of command counters and service timers. Callers look their counter or timer up once
+// and keep it, so recording never goes through a map.
+@Component
+public class BankMetrics {
+
+    private final Map<ConsoleOperationType, CommandCounter> commands;
+    private final Map<String, OperationTimer> timers;
+    private final int latencySampleEvery;
+
+    public BankMetrics(@Value("${metrics.latency-sample-every:8}") int latencySampleEvery) {
+        this.commands = new EnumMap<>(ConsoleOperationType.class);
+        for (ConsoleOperationType type : ConsoleOperationType.values()) {
+            commands.put(type, new CommandCounter());
+        }
+        this.timers = new ConcurrentSkipListMap<>();
+        this.latencySampleEvery = latencySampleEvery;
+    }
+
+    public CommandCounter command(ConsoleOperationType type) {
+        return commands.get(type);
+    }
+
+    public OperationTimer timer(String name) {
+        return timers.computeIfAbsent(name, it -> new OperationTimer(it, latencySampleEvery));
+    }
+
+    public Map<ConsoleOperationType, CommandCounter> getCommands() {
+        return Collections.unmodifiableMap(commands);
+    }
+
+    // Ordered by name.
+    public Collection<OperationTimer> getTimers() {
+        return Collections.unmodifiableCollection(timers.values());
+    }
+}
@@ -0,0 +1,15 @@
+package sorokin.java.course.metrics;
+
+import java.util.Map;
+
+public interface BankMetricsMXBean {
+
+    // command -> completed count
+    Map<String, Long> getCompletedCommands();
+
+    // "command.REASON" -> failed count
+    Map<String, Long> getFailedCommands();
+
+    // "timer.count", "timer.errors.REASON", "timer.p50" ... "timer.max", latencies in ns from sampled calls
+    Map<String, Long> getServiceLatencies();
+}
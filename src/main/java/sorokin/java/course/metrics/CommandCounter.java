@@ -0,0 +1,32 @@
+package sorokin.java.course.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Outcome counts of one command type. Commands are not timed: an interactive command spends
+// most of its time waiting for input, and the service calls behind them have their own timers.
+public class CommandCounter {
+
+    private final LongAdder completed;
+    private final ErrorCounts errors;
+
+    CommandCounter() {
+        this.completed = new LongAdder();
+        this.errors = new ErrorCounts();
+    }
+
+    public void completed() {
+        completed.increment();
+    }
+
+    public void failed(Exception e) {
+        errors.record(e);
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public ErrorCounts getErrors() {
+        return errors;
+    }
+}
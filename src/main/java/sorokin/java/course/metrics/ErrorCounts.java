@@ -0,0 +1,53 @@
+package sorokin.java.course.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Failures by reason. Only touched on the error path, so a map lookup per failure is fine.
+public class ErrorCounts {
+
+    private final Map<String, LongAdder> byReason = new ConcurrentHashMap<>();
+
+    public void record(String reason) {
+        byReason.computeIfAbsent(reason, it -> new LongAdder()).increment();
+    }
+
+    public void record(Exception e) {
+        record(reasonOf(e));
+    }
+
+    public long total() {
+        long total = 0;
+        for (LongAdder count : byReason.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public Map<String, Long> byReason() {
+        Map<String, Long> counts = new TreeMap<>();
+        byReason.forEach((reason, count) -> counts.put(reason, count.sum()));
+        return counts;
+    }
+
+    // Services report failures as IllegalArgumentException/IllegalStateException with a message;
+    // the common ones get a stable name, the rest are grouped by exception type.
+    static String reasonOf(Exception e) {
+        String message = e.getMessage() == null ? "" : e.getMessage();
+        if (message.startsWith("insufficient funds")) {
+            return "INSUFFICIENT_FUNDS";
+        }
+        if (message.startsWith("No such")) {
+            return "NOT_FOUND";
+        }
+        if (e instanceof IllegalArgumentException) {
+            return "INVALID_ARGUMENT";
+        }
+        if (e instanceof IllegalStateException) {
+            return "ILLEGAL_STATE";
+        }
+        return e.getClass().getSimpleName();
+    }
+}
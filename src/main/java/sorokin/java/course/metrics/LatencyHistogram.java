@@ -0,0 +1,63 @@
+package sorokin.java.course.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear latency histogram in the spirit of HdrHistogram: every power of two is split into
+// SUB_BUCKETS linear buckets, so a recorded value is off by at most 1/SUB_BUCKETS (~3%).
+// Recording is one bucket computation and one atomic increment in the stripe of the calling
+// thread; stripes are only summed when a snapshot is read.
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values from 2^40 ns (~18 minutes) on land in the last bucket.
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeMask;
+
+    public LatencyHistogram() {
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.stripes = new AtomicLongArray[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    public void record(long nanos) {
+        int stripe = (int) (Thread.currentThread().threadId() & stripeMask);
+        stripes[stripe].getAndIncrement(bucketOf(nanos));
+    }
+
+    public LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts[bucket] += stripe.get(bucket);
+            }
+        }
+        return new LatencySnapshot(counts);
+    }
+
+    static int bucketOf(long value) {
+        long clamped = Math.min(Math.max(value, 0), MAX_VALUE);
+        if (clamped < SUB_BUCKETS) {
+            return (int) clamped;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(clamped) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (clamped >>> shift);
+    }
+
+    // Largest value that falls into the bucket, as HdrHistogram reports percentiles.
+    static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,56 @@
+package sorokin.java.course.metrics;
+
+public class LatencySnapshot {
+
+    private final long[] counts;
+    private final long count;
+
+    LatencySnapshot(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        this.count = total;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // percentile in 0..100; 0 when nothing was recorded.
+    public long getPercentileNanos(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValueOf(bucket);
+            }
+        }
+        return getMaxNanos();
+    }
+
+    public long getMaxNanos() {
+        for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+            if (counts[bucket] != 0) {
+                return LatencyHistogram.highestValueOf(bucket);
+            }
+        }
+        return 0;
+    }
+
+    public double getMeanNanos() {
+        if (count == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            sum += (double) counts[bucket] * LatencyHistogram.highestValueOf(bucket);
+        }
+        return sum / count;
+    }
+}
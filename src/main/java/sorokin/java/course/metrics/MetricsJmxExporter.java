@@ -0,0 +1,92 @@
+package sorokin.java.course.metrics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Publishes BankMetrics as the MXBean sorokin.java.course:type=BankMetrics (jconsole, jcmd, JMX exporters).
+// Values are computed when an attribute is read, never on the recording path.
+@Component
+public class MetricsJmxExporter implements BankMetricsMXBean {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final BankMetrics bankMetrics;
+    private final boolean enabled;
+    private ObjectName objectName;
+
+    public MetricsJmxExporter(BankMetrics bankMetrics, @Value("${metrics.jmx-enabled:true}") boolean enabled) {
+        this.bankMetrics = bankMetrics;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void register() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("sorokin.java.course:type=BankMetrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Can't register metrics MBean: " + e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            // already gone
+        }
+        objectName = null;
+    }
+
+    @Override
+    public Map<String, Long> getCompletedCommands() {
+        Map<String, Long> completed = new LinkedHashMap<>();
+        bankMetrics.getCommands().forEach((type, counter) -> completed.put(type.name(), counter.getCompleted()));
+        return completed;
+    }
+
+    @Override
+    public Map<String, Long> getFailedCommands() {
+        Map<String, Long> failed = new LinkedHashMap<>();
+        bankMetrics.getCommands().forEach((type, counter) -> counter.getErrors().byReason()
+                .forEach((reason, count) -> failed.put(type.name() + "." + reason, count)));
+        return failed;
+    }
+
+    @Override
+    public Map<String, Long> getServiceLatencies() {
+        Map<String, Long> latencies = new LinkedHashMap<>();
+        for (OperationTimer timer : bankMetrics.getTimers()) {
+            LatencySnapshot latency = timer.getLatency();
+            latencies.put(timer.getName() + ".count", timer.getCalls());
+            timer.getErrors().byReason().forEach((reason, count) ->
+                    latencies.put(timer.getName() + ".errors." + reason, count));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                latencies.put(timer.getName() + "." + PERCENTILE_NAMES[i], latency.getPercentileNanos(PERCENTILES[i]));
+            }
+            latencies.put(timer.getName() + ".max", latency.getMaxNanos());
+        }
+        return latencies;
+    }
+}
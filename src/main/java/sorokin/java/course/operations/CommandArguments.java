@@ -0,0 +1,103 @@
+package sorokin.java.course.operations;
+
+import java.nio.charset.StandardCharsets;
+
+// Arguments of one operation line, kept as offsets into the line bytes. Numbers are parsed
+// straight from the bytes and strings are only created when a command asks for one.
+public class CommandArguments {
+
+    private static final int MAX_ARGUMENTS = 8;
+
+    private final int[] starts;
+    private final int[] ends;
+    private byte[] line;
+    private int count;
+    private int keyStart;
+    private int keyEnd;
+
+    public CommandArguments() {
+        this.starts = new int[MAX_ARGUMENTS];
+        this.ends = new int[MAX_ARGUMENTS];
+    }
+
+    void reset(byte[] line) {
+        this.line = line;
+        this.count = 0;
+        this.keyStart = -1;
+    }
+
+    void setIdempotencyKey(int start, int end) {
+        if (keyStart >= 0) {
+            throw new IllegalArgumentException("only one idempotency key is allowed");
+        }
+        if (start == end) {
+            throw new IllegalArgumentException("idempotency key must not be blank");
+        }
+        keyStart = start;
+        keyEnd = end;
+    }
+
+    void add(int start, int end) {
+        if (count == MAX_ARGUMENTS) {
+            throw new IllegalArgumentException("too many arguments, at most " + MAX_ARGUMENTS + " allowed");
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void requireCount(int expected, String usage) {
+        if (count != expected) {
+            throw new IllegalArgumentException("expected " + expected + " arguments: " + usage);
+        }
+    }
+
+    public int getPositiveInt(int index, String fieldName) {
+        return (int) parsePositive(index, fieldName, Integer.MAX_VALUE);
+    }
+
+    public long getPositiveLong(int index, String fieldName) {
+        return parsePositive(index, fieldName, Long.MAX_VALUE);
+    }
+
+    // The @key token of the line without the '@', or null.
+    public String getIdempotencyKey() {
+        return keyStart < 0 ? null : new String(line, keyStart, keyEnd - keyStart, StandardCharsets.UTF_8);
+    }
+
+    public String getString(int index, String fieldName) {
+        int start = starts[checkIndex(index, fieldName)];
+        return new String(line, start, ends[index] - start, StandardCharsets.UTF_8);
+    }
+
+    private long parsePositive(int index, String fieldName, long max) {
+        int start = starts[checkIndex(index, fieldName)];
+        int end = ends[index];
+        if (start == end) {
+            throw new IllegalArgumentException(fieldName + " must be a number");
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9 || value > (max - digit) / 10) {
+                throw new IllegalArgumentException(fieldName + " must be a number");
+            }
+            value = value * 10 + digit;
+        }
+        if (value == 0) {
+            throw new IllegalArgumentException(fieldName + " must be > 0");
+        }
+        return value;
+    }
+
+    private int checkIndex(int index, String fieldName) {
+        if (index >= count) {
+            throw new IllegalArgumentException(fieldName + " is missing");
+        }
+        return index;
+    }
+}
@@ -1,12 +1,28 @@
 package sorokin.java.course.operations;
 
 public enum ConsoleOperationType {
-    USER_CREATE,
-    SHOW_ALL_USERS,
-    ACCOUNT_CREATE,
-    ACCOUNT_CLOSE,
-    ACCOUNT_DEPOSIT,
-    ACCOUNT_TRANSFER,
-    ACCOUNT_WITHDRAW,
-    EXIT
+    USER_CREATE("USER"),
+    USER_IMPORT("IMPORT"),
+    SHOW_ALL_USERS("USERS"),
+    ACCOUNT_CREATE("OPEN"),
+    ACCOUNT_CLOSE("CLOSE"),
+    ACCOUNT_DEPOSIT("DEPOSIT"),
+    ACCOUNT_TRANSFER("TRANSFER"),
+    ACCOUNT_TRANSFER_BATCH("TRANSFER_BATCH"),
+    ACCOUNT_WITHDRAW("WITHDRAW"),
+    ACCOUNT_STATEMENT("STATEMENT"),
+    END_OF_DAY("EOD"),
+    STATS("STATS"),
+    BANK_TOTALS("TOTALS"),
+    EXIT("EXIT");
+
+    private final String shortName;
+
+    ConsoleOperationType(String shortName) {
+        this.shortName = shortName;
+    }
+
+    public String getShortName() {
+        return shortName;
+    }
 }
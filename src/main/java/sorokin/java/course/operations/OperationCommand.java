@@ -3,4 +3,10 @@ package sorokin.java.course.operations;
 public interface OperationCommand {
     void execute();
     ConsoleOperationType getOperationType();
+
+    // Non-interactive form used by batch ingestion and the server: arguments come from one input line.
+    // Returns what the caller needs to go on, like the id of a created user or account, or null.
+    default String execute(CommandArguments arguments) {
+        throw new IllegalStateException(getOperationType() + " is not supported in batch mode");
+    }
 }
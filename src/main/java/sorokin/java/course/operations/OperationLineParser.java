@@ -0,0 +1,84 @@
+package sorokin.java.course.operations;
+
+// Parses compact operation lines such as "TRANSFER 12 34 500" or "ACCOUNT_DEPOSIT 7 100".
+// Tokens are separated by spaces, tabs or commas; both full and short operation names are
+// accepted, case-insensitively. Blank lines and lines starting with '#' are skipped. A token
+// starting with '@' is the idempotency key of the operation, as in "TRANSFER 12 34 500 @retry-7".
+public class OperationLineParser {
+
+    private static final ConsoleOperationType[] TYPES = ConsoleOperationType.values();
+    private static final byte[][] FULL_NAMES = new byte[TYPES.length][];
+    private static final byte[][] SHORT_NAMES = new byte[TYPES.length][];
+
+    static {
+        for (int i = 0; i < TYPES.length; i++) {
+            FULL_NAMES[i] = TYPES[i].name().getBytes();
+            SHORT_NAMES[i] = TYPES[i].getShortName().getBytes();
+        }
+    }
+
+    // Returns null for lines without an operation; fills arguments with everything after the name.
+    public ConsoleOperationType parse(byte[] line, int from, int to, CommandArguments arguments) {
+        arguments.reset(line);
+        int position = skipSeparators(line, from, to);
+        if (position == to || line[position] == '#') {
+            return null;
+        }
+        int nameEnd = tokenEnd(line, position, to);
+        ConsoleOperationType type = lookup(line, position, nameEnd);
+        position = skipSeparators(line, nameEnd, to);
+        while (position < to) {
+            int end = tokenEnd(line, position, to);
+            if (line[position] == '@') {
+                arguments.setIdempotencyKey(position + 1, end);
+            } else {
+                arguments.add(position, end);
+            }
+            position = skipSeparators(line, end, to);
+        }
+        return type;
+    }
+
+    private static ConsoleOperationType lookup(byte[] line, int start, int end) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (matches(line, start, end, SHORT_NAMES[i]) || matches(line, start, end, FULL_NAMES[i])) {
+                return TYPES[i];
+            }
+        }
+        throw new IllegalArgumentException("unknown command: " + new String(line, start, end - start));
+    }
+
+    private static boolean matches(byte[] line, int start, int end, byte[] name) {
+        if (end - start != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            byte b = line[start + i];
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+            }
+            if (b != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSeparators(byte[] line, int position, int to) {
+        while (position < to && isSeparator(line[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int tokenEnd(byte[] line, int position, int to) {
+        while (position < to && !isSeparator(line[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == ',' || b == '\r';
+    }
+}
@@ -4,6 +4,7 @@ import org.springframework.stereotype.Component;
 import sorokin.java.course.account.Account;
 import sorokin.java.course.account.AccountService;
 import sorokin.java.course.console.ConsoleInput;
+import sorokin.java.course.operations.CommandArguments;
 import sorokin.java.course.operations.ConsoleOperationType;
 import sorokin.java.course.operations.OperationCommand;
 import sorokin.java.course.user.UserService;
@@ -26,10 +27,17 @@ public class AccountCreateCommand implements OperationCommand {
         int userId = consoleInput.readPositiveInt("Enter user id:", "user id");
         var user = userService.findUserById(userId);
         Account account = accountService.createAccount(user);
-        user.getAccountList().add(account);
         System.out.println("Account created: " + account);
     }
 
+    @Override
+    public String execute(CommandArguments arguments) {
+        arguments.requireCount(1, "ACCOUNT_CREATE <userId>");
+        var user = userService.findUserById(arguments.getPositiveInt(0, "user id"));
+        Account account = accountService.createAccount(user, arguments.getIdempotencyKey());
+        return String.valueOf(account.getId());
+    }
+
     @Override
     public ConsoleOperationType getOperationType() {
         return ConsoleOperationType.ACCOUNT_CREATE;
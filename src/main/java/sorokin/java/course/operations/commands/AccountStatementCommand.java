@@ -0,0 +1,74 @@
+package sorokin.java.course.operations.commands;
+
+import org.springframework.stereotype.Component;
+import sorokin.java.course.account.AccountService;
+import sorokin.java.course.console.ConsoleInput;
+import sorokin.java.course.history.HistoryEntry;
+import sorokin.java.course.operations.CommandArguments;
+import sorokin.java.course.operations.ConsoleOperationType;
+import sorokin.java.course.operations.OperationCommand;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class AccountStatementCommand implements OperationCommand {
+
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private final AccountService accountService;
+    private final ConsoleInput consoleInput;
+
+    public AccountStatementCommand(AccountService accountService, ConsoleInput consoleInput) {
+        this.accountService = accountService;
+        this.consoleInput = consoleInput;
+    }
+
+    @Override
+    public void execute() {
+        int accountId = consoleInput.readPositiveInt("Enter account id:", "account id");
+        int days = consoleInput.readPositiveInt("Enter number of days:", "number of days");
+        long now = System.currentTimeMillis();
+        print(accountId, now - TimeUnit.DAYS.toMillis(days), now);
+    }
+
+    @Override
+    public String execute(CommandArguments arguments) {
+        if (arguments.size() == 1) {
+            print(arguments.getPositiveInt(0, "account id"), 0, Long.MAX_VALUE);
+            return null;
+        }
+        arguments.requireCount(3, "ACCOUNT_STATEMENT <accountId> [<fromEpochMillis> <toEpochMillis>]");
+        print(arguments.getPositiveInt(0, "account id"),
+                arguments.getPositiveLong(1, "period start"),
+                arguments.getPositiveLong(2, "period end"));
+        return null;
+    }
+
+    private void print(int accountId, long fromMillis, long toMillis) {
+        List<HistoryEntry> entries = accountService.getStatement(accountId, fromMillis, toMillis);
+        var out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), OUTPUT_BUFFER_SIZE));
+        out.printf("Statement of account %d, %d entries:%n", accountId, entries.size());
+        long incompleteBefore = accountService.getHistoryIncompleteBeforeMillis();
+        if (fromMillis < incompleteBefore) {
+            out.printf("Entries before %s may be missing: an earlier run didn't save all of its history.%n",
+                    Instant.ofEpochMilli(incompleteBefore));
+        }
+        for (HistoryEntry entry : entries) {
+            out.printf("%s %-21s %+d, balance=%d%s%n",
+                    Instant.ofEpochMilli(entry.timestampMillis()), entry.type(), entry.amount(), entry.balanceAfter(),
+                    entry.counterpartyAccountId() == 0 ? "" : ", counterparty=" + entry.counterpartyAccountId());
+        }
+        // Not closed: that would close System.out.
+        out.flush();
+    }
+
+    @Override
+    public ConsoleOperationType getOperationType() {
+        return ConsoleOperationType.ACCOUNT_STATEMENT;
+    }
+}
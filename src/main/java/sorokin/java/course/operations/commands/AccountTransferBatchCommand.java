@@ -0,0 +1,107 @@
+package sorokin.java.course.operations.commands;
+
+import org.springframework.stereotype.Component;
+import sorokin.java.course.account.AccountService;
+import sorokin.java.course.account.TransferBatchMode;
+import sorokin.java.course.account.TransferBatchResult;
+import sorokin.java.course.account.TransferRequest;
+import sorokin.java.course.account.TransferStatus;
+import sorokin.java.course.console.ConsoleInput;
+import sorokin.java.course.operations.CommandArguments;
+import sorokin.java.course.operations.ConsoleOperationType;
+import sorokin.java.course.operations.OperationCommand;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@Component
+public class AccountTransferBatchCommand implements OperationCommand {
+
+    private final AccountService accountService;
+    private final ConsoleInput consoleInput;
+
+    public AccountTransferBatchCommand(AccountService accountService, ConsoleInput consoleInput) {
+        this.accountService = accountService;
+        this.consoleInput = consoleInput;
+    }
+
+    @Override
+    public void execute() {
+        Path batchFile = Path.of(consoleInput.readRequiredString(
+                "Enter batch file path (one 'fromAccountId,toAccountId,amount' per line):", "batch file path"));
+        if (!Files.isRegularFile(batchFile)) {
+            throw new IllegalArgumentException("No such batch file: " + batchFile);
+        }
+        TransferBatchMode mode = consoleInput.readEnum("Enter mode (ATOMIC or BEST_EFFORT):", "mode", TransferBatchMode.class);
+        List<TransferRequest> requests = readRequests(batchFile);
+
+        TransferBatchResult result = accountService.transferBatch(requests, mode);
+        System.out.println("Batch completed: " + result.getCompletedCount() + " of " + result.size()
+                + " transfers applied, by status: " + result.countByStatus());
+        if (mode == TransferBatchMode.ATOMIC && !result.isFullyApplied()) {
+            for (int i = 0; i < result.size(); i++) {
+                if (result.getStatus(i) != TransferStatus.ROLLED_BACK) {
+                    System.out.println("Batch rolled back, first rejected transfer: " + requests.get(i)
+                            + " -> " + result.getStatus(i));
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String execute(CommandArguments arguments) {
+        arguments.requireCount(2, "ACCOUNT_TRANSFER_BATCH <file> <ATOMIC|BEST_EFFORT>");
+        Path batchFile = Path.of(arguments.getString(0, "batch file path"));
+        if (!Files.isRegularFile(batchFile)) {
+            throw new IllegalArgumentException("No such batch file: " + batchFile);
+        }
+        TransferBatchMode mode;
+        try {
+            mode = TransferBatchMode.valueOf(arguments.getString(1, "mode").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("mode must be one of ATOMIC, BEST_EFFORT");
+        }
+        accountService.transferBatch(readRequests(batchFile), mode, arguments.getIdempotencyKey());
+        return null;
+    }
+
+    @Override
+    public ConsoleOperationType getOperationType() {
+        return ConsoleOperationType.ACCOUNT_TRANSFER_BATCH;
+    }
+
+    private List<TransferRequest> readRequests(Path batchFile) {
+        List<TransferRequest> requests = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(batchFile)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = trimmed.split("[,;\\s]+");
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": expected fromAccountId,toAccountId,amount");
+                }
+                try {
+                    requests.add(new TransferRequest(
+                            Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Long.parseLong(fields[2])));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": values must be numbers");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read batch file " + batchFile, e);
+        }
+        return requests;
+    }
+}
@@ -3,6 +3,7 @@ package sorokin.java.course.operations.commands;
 import org.springframework.stereotype.Component;
 import sorokin.java.course.account.AccountService;
 import sorokin.java.course.console.ConsoleInput;
+import sorokin.java.course.operations.CommandArguments;
 import sorokin.java.course.operations.ConsoleOperationType;
 import sorokin.java.course.operations.OperationCommand;
 
@@ -24,11 +25,23 @@ public class AccountTransferCommand implements OperationCommand {
         if (fromAccountId == toAccountId) {
             throw new IllegalArgumentException("source and target account id must be different");
         }
-        int amount = consoleInput.readPositiveInt("Enter amount:", "amount");
+        long amount = consoleInput.readPositiveLong("Enter amount:", "amount");
         accountService.transfer(fromAccountId, toAccountId, amount);
         System.out.println("Transfer completed from account " + fromAccountId + " to account " + toAccountId + ".");
     }
 
+    @Override
+    public String execute(CommandArguments arguments) {
+        arguments.requireCount(3, "ACCOUNT_TRANSFER <fromAccountId> <toAccountId> <amount>");
+        accountService.transfer(
+                arguments.getPositiveInt(0, "source account id"),
+                arguments.getPositiveInt(1, "target account id"),
+                arguments.getPositiveLong(2, "amount"),
+                arguments.getIdempotencyKey()
+        );
+        return null;
+    }
+
     @Override
     public ConsoleOperationType getOperationType() {
         return ConsoleOperationType.ACCOUNT_TRANSFER;
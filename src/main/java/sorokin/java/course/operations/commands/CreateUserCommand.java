@@ -2,6 +2,7 @@ package sorokin.java.course.operations.commands;
 
 import org.springframework.stereotype.Component;
 import sorokin.java.course.console.ConsoleInput;
+import sorokin.java.course.operations.CommandArguments;
 import sorokin.java.course.operations.ConsoleOperationType;
 import sorokin.java.course.operations.OperationCommand;
 import sorokin.java.course.user.UserService;
@@ -24,6 +25,12 @@ public class CreateUserCommand implements OperationCommand {
         System.out.println("User created: " + user);
     }
 
+    @Override
+    public String execute(CommandArguments arguments) {
+        arguments.requireCount(1, "USER_CREATE <login>");
+        return String.valueOf(userService.createUser(arguments.getString(0, "login")).getId());
+    }
+
     @Override
     public ConsoleOperationType getOperationType() {
         return ConsoleOperationType.USER_CREATE;
@@ -3,6 +3,7 @@ package sorokin.java.course.operations.commands;
 import org.springframework.stereotype.Component;
 import sorokin.java.course.account.AccountService;
 import sorokin.java.course.console.ConsoleInput;
+import sorokin.java.course.operations.CommandArguments;
 import sorokin.java.course.operations.ConsoleOperationType;
 import sorokin.java.course.operations.OperationCommand;
 
@@ -20,12 +21,20 @@ public class DepositCommand implements OperationCommand {
     @Override
     public void execute() {
         int accountId = consoleInput.readPositiveInt("Enter account id:", "account id");
-        int amount = consoleInput.readPositiveInt("Enter amount:", "amount");
+        long amount = consoleInput.readPositiveLong("Enter amount:", "amount");
 
         accountService.deposit(accountId, amount);
         System.out.println("Deposited " + amount + " to account " + accountId + ".");
     }
 
+    @Override
+    public String execute(CommandArguments arguments) {
+        arguments.requireCount(2, "ACCOUNT_DEPOSIT <accountId> <amount>");
+        accountService.deposit(arguments.getPositiveInt(0, "account id"), arguments.getPositiveLong(1, "amount"),
+                arguments.getIdempotencyKey());
+        return null;
+    }
+
     @Override
     public ConsoleOperationType getOperationType() {
         return ConsoleOperationType.ACCOUNT_DEPOSIT;
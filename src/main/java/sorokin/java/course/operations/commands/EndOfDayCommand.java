@@ -0,0 +1,38 @@
+package sorokin.java.course.operations.commands;
+
+import org.springframework.stereotype.Component;
+import sorokin.java.course.account.AccountService;
+import sorokin.java.course.account.BulkAdjustmentResult;
+import sorokin.java.course.operations.CommandArguments;
+import sorokin.java.course.operations.ConsoleOperationType;
+import sorokin.java.course.operations.OperationCommand;
+
+@Component
+public class EndOfDayCommand implements OperationCommand {
+
+    private final AccountService accountService;
+
+    public EndOfDayCommand(AccountService accountService) {
+        this.accountService = accountService;
+    }
+
+    @Override
+    public void execute() {
+        BulkAdjustmentResult result = accountService.endOfDay();
+        // Interest and fee are netted per account, so an account either gains or pays.
+        System.out.printf("End of day: accounts=%d, changed=%d, credited=%d, charged=%d, time=%d ms%n",
+                result.accounts(), result.changed(), result.credited(), result.charged(), result.elapsedNanos() / 1_000_000);
+    }
+
+    @Override
+    public String execute(CommandArguments arguments) {
+        arguments.requireCount(0, "EOD");
+        execute();
+        return null;
+    }
+
+    @Override
+    public ConsoleOperationType getOperationType() {
+        return ConsoleOperationType.END_OF_DAY;
+    }
+}
@@ -1,6 +1,7 @@
 package sorokin.java.course.operations.commands;
 
 import org.springframework.stereotype.Component;
+import sorokin.java.course.operations.CommandArguments;
 import sorokin.java.course.operations.ConsoleOperationType;
 import sorokin.java.course.operations.OperationCommand;
 
@@ -12,6 +13,12 @@ public class ExitCommand implements OperationCommand {
         System.out.println("MiniBank stopped.");
     }
 
+    @Override
+    public String execute(CommandArguments arguments) {
+        arguments.requireCount(0, "EXIT");
+        return null;
+    }
+
     @Override
     public ConsoleOperationType getOperationType() {
         return ConsoleOperationType.EXIT;
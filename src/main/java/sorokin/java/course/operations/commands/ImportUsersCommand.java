@@ -0,0 +1,48 @@
+package sorokin.java.course.operations.commands;
+
+import org.springframework.stereotype.Component;
+import sorokin.java.course.console.ConsoleInput;
+import sorokin.java.course.operations.CommandArguments;
+import sorokin.java.course.operations.ConsoleOperationType;
+import sorokin.java.course.operations.OperationCommand;
+import sorokin.java.course.user.UserImportResult;
+import sorokin.java.course.user.UserService;
+
+import java.nio.file.Path;
+
+@Component
+public class ImportUsersCommand implements OperationCommand {
+
+    private final UserService userService;
+    private final ConsoleInput consoleInput;
+
+    public ImportUsersCommand(UserService userService, ConsoleInput consoleInput) {
+        this.userService = userService;
+        this.consoleInput = consoleInput;
+    }
+
+    @Override
+    public void execute() {
+        importUsers(consoleInput.readRequiredString(
+                "Enter import file path (one 'login[,balance,...]' per line):", "import file path"));
+    }
+
+    @Override
+    public String execute(CommandArguments arguments) {
+        arguments.requireCount(1, "IMPORT <file>");
+        importUsers(arguments.getString(0, "import file path"));
+        return null;
+    }
+
+    @Override
+    public ConsoleOperationType getOperationType() {
+        return ConsoleOperationType.USER_IMPORT;
+    }
+
+    private void importUsers(String file) {
+        UserImportResult result = userService.importUsers(Path.of(file));
+        System.out.printf("Imported %d users with %d accounts, first user id=%d, parse=%d ms, commit=%d ms%n",
+                result.users(), result.accounts(), result.firstUserId(),
+                result.parseNanos() / 1_000_000, result.commitNanos() / 1_000_000);
+    }
+}
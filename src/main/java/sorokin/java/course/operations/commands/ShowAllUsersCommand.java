@@ -1,13 +1,23 @@
 package sorokin.java.course.operations.commands;
 
 import org.springframework.stereotype.Component;
+import sorokin.java.course.operations.CommandArguments;
 import sorokin.java.course.operations.ConsoleOperationType;
 import sorokin.java.course.operations.OperationCommand;
+import sorokin.java.course.user.User;
 import sorokin.java.course.user.UserService;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.stream.Stream;
+
 @Component
 public class ShowAllUsersCommand implements OperationCommand {
 
+    // System.out flushes on every line; the listing goes through its own buffer instead.
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     private final UserService userService;
 
     public ShowAllUsersCommand(UserService userService) {
@@ -16,8 +26,35 @@ public class ShowAllUsersCommand implements OperationCommand {
 
     @Override
     public void execute() {
-        System.out.println("List of all users:");
-        userService.findAll().forEach(System.out::println);
+        print(userService.streamUsers(), null);
+    }
+
+    @Override
+    public String execute(CommandArguments arguments) {
+        if (arguments.size() == 0) {
+            execute();
+            return null;
+        }
+        arguments.requireCount(2, "SHOW_ALL_USERS [<fromUserId> <pageSize>]");
+        var page = userService.findUsers(
+                arguments.getPositiveInt(0, "user id"),
+                arguments.getPositiveInt(1, "page size")
+        );
+        print(page.getUsers().stream(), page.hasNext()
+                ? "Next page: SHOW_ALL_USERS " + page.getNextUserId() + " " + arguments.getPositiveInt(1, "page size")
+                : "End of list.");
+        return null;
+    }
+
+    private void print(Stream<User> users, String footer) {
+        var out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), OUTPUT_BUFFER_SIZE));
+        out.println("List of all users:");
+        users.forEach(out::println);
+        if (footer != null) {
+            out.println(footer);
+        }
+        // Not closed: that would close System.out.
+        out.flush();
     }
 
     @Override
@@ -0,0 +1,62 @@
+package sorokin.java.course.operations.commands;
+
+import org.springframework.stereotype.Component;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.metrics.LatencySnapshot;
+import sorokin.java.course.metrics.OperationTimer;
+import sorokin.java.course.operations.CommandArguments;
+import sorokin.java.course.operations.ConsoleOperationType;
+import sorokin.java.course.operations.OperationCommand;
+
+import java.util.Map;
+
+@Component
+public class ShowStatsCommand implements OperationCommand {
+
+    private final BankMetrics bankMetrics;
+
+    public ShowStatsCommand(BankMetrics bankMetrics) {
+        this.bankMetrics = bankMetrics;
+    }
+
+    @Override
+    public void execute() {
+        System.out.println("Commands:");
+        bankMetrics.getCommands().forEach((type, counter) -> {
+            Map<String, Long> errors = counter.getErrors().byReason();
+            if (counter.getCompleted() > 0 || !errors.isEmpty()) {
+                System.out.printf("  %s: ok=%d, errors=%d%s%n",
+                        type, counter.getCompleted(), counter.getErrors().total(), errors.isEmpty() ? "" : " " + errors);
+            }
+        });
+        System.out.println("Service latency, us (sampled calls):");
+        for (OperationTimer timer : bankMetrics.getTimers()) {
+            LatencySnapshot latency = timer.getLatency();
+            if (timer.getCalls() == 0) {
+                continue;
+            }
+            Map<String, Long> errors = timer.getErrors().byReason();
+            System.out.printf("  %s: count=%d, mean=%.1f, p50=%.1f, p90=%.1f, p99=%.1f, p99.9=%.1f, max=%.1f%s%n",
+                    timer.getName(), timer.getCalls(), latency.getMeanNanos() / 1000,
+                    micros(latency.getPercentileNanos(50)), micros(latency.getPercentileNanos(90)),
+                    micros(latency.getPercentileNanos(99)), micros(latency.getPercentileNanos(99.9)),
+                    micros(latency.getMaxNanos()), errors.isEmpty() ? "" : ", errors=" + errors);
+        }
+    }
+
+    @Override
+    public String execute(CommandArguments arguments) {
+        arguments.requireCount(0, "STATS");
+        execute();
+        return null;
+    }
+
+    @Override
+    public ConsoleOperationType getOperationType() {
+        return ConsoleOperationType.STATS;
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,47 @@
+package sorokin.java.course.operations.commands;
+
+import org.springframework.stereotype.Component;
+import sorokin.java.course.account.AccountService;
+import sorokin.java.course.account.BankTotals;
+import sorokin.java.course.operations.CommandArguments;
+import sorokin.java.course.operations.ConsoleOperationType;
+import sorokin.java.course.operations.OperationCommand;
+
+@Component
+public class ShowTotalsCommand implements OperationCommand {
+
+    private final AccountService accountService;
+
+    public ShowTotalsCommand(AccountService accountService) {
+        this.accountService = accountService;
+    }
+
+    @Override
+    public void execute() {
+        BankTotals totals = accountService.getTotals();
+        System.out.printf("Money in accounts: %d, commission collected: %d%n",
+                totals.getTotalBalance(), totals.getFeesCollected());
+        System.out.printf("Deposits: count=%d, amount=%d%n", totals.getDeposits(), totals.getDepositedAmount());
+        System.out.printf("Withdrawals: count=%d, amount=%d%n", totals.getWithdrawals(), totals.getWithdrawnAmount());
+        System.out.printf("Transfers: count=%d%n", totals.getTransfers());
+        System.out.printf("End of day: credited=%d, charged=%d%n", totals.getAdjustmentsCredited(), totals.getAdjustmentsCharged());
+        System.out.printf("Accounts: opened=%d, closed=%d%n", totals.getAccountsOpened(), totals.getAccountsClosed());
+    }
+
+    @Override
+    public String execute(CommandArguments arguments) {
+        if (arguments.size() == 0) {
+            execute();
+            return null;
+        }
+        arguments.requireCount(1, "TOTALS [<userId>]");
+        int userId = arguments.getPositiveInt(0, "user id");
+        System.out.printf("Money in accounts of user %d: %d%n", userId, accountService.getTotals().getUserBalance(userId));
+        return null;
+    }
+
+    @Override
+    public ConsoleOperationType getOperationType() {
+        return ConsoleOperationType.BANK_TOTALS;
+    }
+}
@@ -0,0 +1,190 @@
+package sorokin.java.course.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.operations.CommandArguments;
+import sorokin.java.course.operations.ConsoleOperationType;
+import sorokin.java.course.operations.OperationCommand;
+import sorokin.java.course.operations.OperationLineParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTP front end: POST /operations with one operation line per body line (same format as --batch),
+// answered with one "OK", "OK <result>" or "ERROR <message>" line per operation; USER and OPEN answer
+// "OK <new id>". Every exchange runs on its own virtual thread, so a client blocked on a slow socket or
+// an account lock costs no platform thread.
+@Component
+public class BankHttpServer {
+
+    private static final String OPERATIONS_PATH = "/operations";
+    private static final byte[] OK = "OK\n".getBytes(StandardCharsets.US_ASCII);
+    // Console-only operations: EXIT would stop nothing useful, TRANSFER_BATCH reads server-side files
+    // and SHOW_ALL_USERS prints to the server console.
+    private static final Set<ConsoleOperationType> REMOTE_OPERATIONS = EnumSet.of(
+            ConsoleOperationType.USER_CREATE,
+            ConsoleOperationType.ACCOUNT_CREATE,
+            ConsoleOperationType.ACCOUNT_CLOSE,
+            ConsoleOperationType.ACCOUNT_DEPOSIT,
+            ConsoleOperationType.ACCOUNT_WITHDRAW,
+            ConsoleOperationType.ACCOUNT_TRANSFER
+    );
+
+    private final Map<ConsoleOperationType, OperationCommand> commandMap;
+    private final OperationLineParser lineParser;
+    private final ServerProperties serverProperties;
+    private final BankMetrics bankMetrics;
+    private final CountDownLatch stopped;
+    private HttpServer httpServer;
+    private ExecutorService executor;
+
+    public BankHttpServer(
+            List<OperationCommand> operationCommandList,
+            ServerProperties serverProperties,
+            BankMetrics bankMetrics
+    ) {
+        this.commandMap = new EnumMap<>(ConsoleOperationType.class);
+        operationCommandList.stream()
+                .filter(it -> REMOTE_OPERATIONS.contains(it.getOperationType()))
+                .forEach(it -> commandMap.put(it.getOperationType(), it));
+        this.lineParser = new OperationLineParser();
+        this.serverProperties = serverProperties;
+        this.bankMetrics = bankMetrics;
+        this.stopped = new CountDownLatch(1);
+    }
+
+    public synchronized void start() {
+        if (httpServer != null) {
+            throw new IllegalStateException("Server is already started");
+        }
+        // TCP_NODELAY and the keep-alive limit are JVM-wide settings of the JDK server; Main sets them.
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(serverProperties.getPort()), serverProperties.getBacklog());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't listen on port " + serverProperties.getPort(), e);
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        httpServer.setExecutor(executor);
+        httpServer.createContext(OPERATIONS_PATH, this::handle);
+        httpServer.start();
+        System.out.println("MiniBank server listening on port " + getPort() + ".");
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            executor.close();
+            httpServer = null;
+        }
+        stopped.countDown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = readBody(exchange);
+            if (body == null) {
+                byte[] error = "ERROR request body is larger than %d bytes\n"
+                        .formatted(serverProperties.getMaxBodyBytes()).getBytes(StandardCharsets.US_ASCII);
+                // The rest of the body stays unread, so the connection can't be reused.
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(413, error.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(error);
+                }
+                return;
+            }
+            byte[] response = execute(body);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        }
+    }
+
+    // null if the body is larger than server.max-body-bytes: a declared length is checked before reading,
+    // a chunked body is read only up to one byte past the limit.
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        int maxBodyBytes = serverProperties.getMaxBodyBytes();
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        // The JDK server has already answered 400 to a Content-Length that isn't a number.
+        if (contentLength != null && Long.parseLong(contentLength.trim()) > maxBodyBytes) {
+            return null;
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(maxBodyBytes + 1);
+            return body.length > maxBodyBytes ? null : body;
+        }
+    }
+
+    private byte[] execute(byte[] body) {
+        var arguments = new CommandArguments();
+        var response = new ByteArrayOutputStream(64);
+        int lineStart = 0;
+        for (int i = 0; i <= body.length; i++) {
+            if (i == body.length || body[i] == '\n') {
+                executeLine(body, lineStart, i, arguments, response);
+                lineStart = i + 1;
+            }
+        }
+        return response.toByteArray();
+    }
+
+    private void executeLine(byte[] body, int from, int to, CommandArguments arguments, ByteArrayOutputStream response) {
+        ConsoleOperationType type = null;
+        try {
+            type = lineParser.parse(body, from, to, arguments);
+            if (type == null) {
+                return;
+            }
+            OperationCommand command = commandMap.get(type);
+            if (command == null) {
+                throw new IllegalArgumentException(type + " is not available over the network");
+            }
+            String result = command.execute(arguments);
+            bankMetrics.command(type).completed();
+            if (result == null) {
+                response.writeBytes(OK);
+            } else {
+                response.writeBytes(("OK " + result + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (RuntimeException e) {
+            if (type != null) {
+                bankMetrics.command(type).failed(e);
+            }
+            String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            response.writeBytes(("ERROR " + message.replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package sorokin.java.course.server;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ServerProperties {
+    private final int port;
+    private final int backlog;
+    private final int maxBodyBytes;
+
+    public ServerProperties(
+            @Value("${server.port}") int port,
+            @Value("${server.backlog}") int backlog,
+            @Value("${server.max-body-bytes:1048576}") int maxBodyBytes
+    ) {
+        // One byte past the limit is read to tell an oversized chunked body apart.
+        if (maxBodyBytes <= 0 || maxBodyBytes == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("server.max-body-bytes must be in 1..%d".formatted(Integer.MAX_VALUE - 1));
+        }
+        this.port = port;
+        this.backlog = backlog;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+}
@@ -0,0 +1,129 @@
+package sorokin.java.course.user;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+// Finds a user id by login, ignoring case. Logins are not stored here: an open-addressing table
+// holds the user id and the hash of its normalized login, and a hash match is confirmed against
+// the login of the User itself. That is 8 bytes a slot instead of a node, a boxed id and a key
+// per login in a HashMap.
+//
+// Inserts are serialized; lookups take no lock. An insert publishes the id after the hash, so a
+// reader that sees the id sees the hash. A resize builds a new table and publishes it at once.
+class LoginIndex {
+
+    private static final int NO_USER = 0;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final IntFunction<String> loginOfUser;
+    private volatile Table table;
+    private int size;
+
+    // loginOfUser must know a user before it is added here.
+    LoginIndex(IntFunction<String> loginOfUser) {
+        this.loginOfUser = loginOfUser;
+        this.table = new Table(INITIAL_CAPACITY);
+    }
+
+    static String normalize(String login) {
+        return login.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // 0 if no user has this login.
+    int get(String normalizedLogin) {
+        Table current = table;
+        int hash = normalizedLogin.hashCode();
+        for (int slot = current.slotOf(hash); ; slot = (slot + 1) & current.mask) {
+            int userId = (int) INT_ARRAY.getAcquire(current.userIds, slot);
+            if (userId == NO_USER) {
+                return NO_USER;
+            }
+            if (current.hashes[slot] == hash && normalize(loginOfUser.apply(userId)).equals(normalizedLogin)) {
+                return userId;
+            }
+        }
+    }
+
+    // Returns the id already indexed under the login, or 0 once userId is added.
+    synchronized int putIfAbsent(String normalizedLogin, int userId) {
+        if (userId == NO_USER) {
+            throw new IllegalArgumentException("user id must be > 0");
+        }
+        int existing = get(normalizedLogin);
+        if (existing != NO_USER) {
+            return existing;
+        }
+        if (size + 1 > table.capacity() / 4 * 3) {
+            table = table.resized(table.capacity() * 2);
+        }
+        table.insert(normalizedLogin.hashCode(), userId);
+        size++;
+        return NO_USER;
+    }
+
+    // Adds user firstUserId + i under normalizedLogins[i]; the caller has checked that the logins are
+    // distinct and not indexed yet. The table is resized once up front instead of doubling on the way.
+    synchronized void putAll(String[] normalizedLogins, int firstUserId) {
+        int capacity = table.capacity();
+        while (size + normalizedLogins.length > capacity / 4 * 3) {
+            capacity *= 2;
+        }
+        if (capacity != table.capacity()) {
+            table = table.resized(capacity);
+        }
+        for (int i = 0; i < normalizedLogins.length; i++) {
+            table.insert(normalizedLogins[i].hashCode(), firstUserId + i);
+        }
+        size += normalizedLogins.length;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private static final class Table {
+
+        private final int[] hashes;
+        private final int[] userIds;
+        private final int mask;
+        private final int shift;
+
+        private Table(int capacity) {
+            this.hashes = new int[capacity];
+            this.userIds = new int[capacity];
+            this.mask = capacity - 1;
+            this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        private int capacity() {
+            return userIds.length;
+        }
+
+        private int slotOf(int hash) {
+            // Fibonacci hashing: similar logins have String hashes that differ only in the low bits.
+            return (hash * 0x9E3779B9) >>> shift;
+        }
+
+        private void insert(int hash, int userId) {
+            int slot = slotOf(hash);
+            while (userIds[slot] != NO_USER) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            INT_ARRAY.setRelease(userIds, slot, userId);
+        }
+
+        private Table resized(int capacity) {
+            Table next = new Table(capacity);
+            for (int slot = 0; slot < userIds.length; slot++) {
+                if (userIds[slot] != NO_USER) {
+                    next.insert(hashes[slot], userIds[slot]);
+                }
+            }
+            return next;
+        }
+    }
+}
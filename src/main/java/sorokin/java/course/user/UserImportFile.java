@@ -0,0 +1,322 @@
+package sorokin.java.course.user;
+
+import sorokin.java.course.journal.LedgerJournal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// A parsed user import file: one user per line, "login" or "login,balance,balance,...", one account per
+// balance (whole minor units) and a login alone getting one account with account.default-amount. Blank
+// lines are skipped. There is no header and no quoting, so a login can't contain a comma.
+//
+// The file is cut into chunks at line ends, and every chunk is memory-mapped and parsed on the fork-join
+// pool straight from the mapped bytes; the results are joined in file order. Errors name the line of
+// the file, and of several errors the first one in the file is reported.
+final class UserImportFile {
+
+    private static final int CHUNK_BYTES = 8 << 20;
+    private static final int MAX_LINE_BYTES = 1 << 20;
+    private static final int DUPLICATE_PARTITIONS = 64;
+
+    private final String[] logins;
+    private final String[] normalizedLogins;
+    private final int[] lineNumbers;
+    private final int[] accountCounts;
+    private final long[] balances;
+
+    private UserImportFile(String[] logins, String[] normalizedLogins, int[] lineNumbers, int[] accountCounts,
+                           long[] balances) {
+        this.logins = logins;
+        this.normalizedLogins = normalizedLogins;
+        this.lineNumbers = lineNumbers;
+        this.accountCounts = accountCounts;
+        this.balances = balances;
+    }
+
+    static UserImportFile read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            Chunk[] chunks = new Chunk[bounds.length - 1];
+            IntStream.range(0, chunks.length).parallel().forEach(i -> chunks[i] = Chunk.parse(channel, bounds[i], bounds[i + 1]));
+            return join(chunks);
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("No such import file: " + file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read import file " + file, e);
+        }
+    }
+
+    int size() {
+        return logins.length;
+    }
+
+    String[] getLogins() {
+        return logins;
+    }
+
+    String[] getNormalizedLogins() {
+        return normalizedLogins;
+    }
+
+    int[] getAccountCounts() {
+        return accountCounts;
+    }
+
+    long[] getBalances() {
+        return balances;
+    }
+
+    int getLineNumber(int user) {
+        return lineNumbers[user];
+    }
+
+    // Logins are spread over partitions by hash and every partition is checked on its own, in parallel.
+    void checkUniqueLogins() {
+        int[] partitionStarts = new int[DUPLICATE_PARTITIONS + 1];
+        for (String login : normalizedLogins) {
+            partitionStarts[partition(login) + 1]++;
+        }
+        for (int partition = 1; partition <= DUPLICATE_PARTITIONS; partition++) {
+            partitionStarts[partition] += partitionStarts[partition - 1];
+        }
+        int[] next = Arrays.copyOf(partitionStarts, DUPLICATE_PARTITIONS);
+        int[] byPartition = new int[normalizedLogins.length];
+        for (int user = 0; user < normalizedLogins.length; user++) {
+            byPartition[next[partition(normalizedLogins[user])]++] = user;
+        }
+        // Users are in file order within a partition, so each partition finds its earliest repeat.
+        int firstRepeat = IntStream.range(0, DUPLICATE_PARTITIONS).parallel()
+                .map(partition -> firstRepeat(byPartition, partitionStarts[partition], partitionStarts[partition + 1]))
+                .min()
+                .orElse(Integer.MAX_VALUE);
+        if (firstRepeat != Integer.MAX_VALUE) {
+            int earlier = Arrays.asList(normalizedLogins).indexOf(normalizedLogins[firstRepeat]);
+            throw new IllegalArgumentException("import file line %d: login=%s is already used on line %d"
+                    .formatted(lineNumbers[firstRepeat], logins[firstRepeat], lineNumbers[earlier]));
+        }
+    }
+
+    private int firstRepeat(int[] byPartition, int from, int to) {
+        Map<String, Boolean> seen = new HashMap<>((to - from) * 4 / 3 + 1);
+        for (int i = from; i < to; i++) {
+            if (seen.putIfAbsent(normalizedLogins[byPartition[i]], Boolean.TRUE) != null) {
+                return byPartition[i];
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private static int partition(String normalizedLogin) {
+        return (normalizedLogin.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(DUPLICATE_PARTITIONS));
+    }
+
+    // Chunk i spans [bounds[i], bounds[i + 1]); every bound but the last is the start of a line.
+    private static long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[(int) (size / CHUNK_BYTES) + 2];
+        int count = 1;
+        ByteBuffer window = ByteBuffer.allocate(MAX_LINE_BYTES);
+        for (long nominal = CHUNK_BYTES; nominal < size; nominal = bounds[count - 1] + CHUNK_BYTES) {
+            window.clear();
+            channel.read(window, nominal - 1);
+            int newline = -1;
+            for (int i = 0; i < window.position(); i++) {
+                if (window.get(i) == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if (newline < 0) {
+                if (nominal - 1 + window.position() >= size) {
+                    break;
+                }
+                throw new IllegalArgumentException("Import file has a line longer than %d bytes".formatted(MAX_LINE_BYTES));
+            }
+            long bound = nominal + newline;
+            if (bound >= size) {
+                break;
+            }
+            bounds[count++] = bound;
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static UserImportFile join(Chunk[] chunks) {
+        int users = 0;
+        int accounts = 0;
+        int linesBefore = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.error != null) {
+                throw new IllegalArgumentException("import file line %d: %s".formatted(linesBefore + chunk.errorLine, chunk.error));
+            }
+            linesBefore += chunk.lines;
+            users += chunk.users;
+            accounts += chunk.accounts;
+        }
+        String[] logins = new String[users];
+        String[] normalizedLogins = new String[users];
+        int[] lineNumbers = new int[users];
+        int[] accountCounts = new int[users];
+        long[] balances = new long[accounts];
+        int user = 0;
+        int account = 0;
+        linesBefore = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.logins, 0, logins, user, chunk.users);
+            System.arraycopy(chunk.normalizedLogins, 0, normalizedLogins, user, chunk.users);
+            System.arraycopy(chunk.accountCounts, 0, accountCounts, user, chunk.users);
+            System.arraycopy(chunk.balances, 0, balances, account, chunk.accounts);
+            for (int i = 0; i < chunk.users; i++) {
+                lineNumbers[user + i] = linesBefore + chunk.lineNumbers[i];
+            }
+            user += chunk.users;
+            account += chunk.accounts;
+            linesBefore += chunk.lines;
+        }
+        return new UserImportFile(logins, normalizedLogins, lineNumbers, accountCounts, balances);
+    }
+
+    private static final class Chunk {
+
+        private final MappedByteBuffer bytes;
+        private byte[] scratch = new byte[64];
+        private String[] logins = new String[1024];
+        private String[] normalizedLogins = new String[1024];
+        private int[] lineNumbers = new int[1024];
+        private int[] accountCounts = new int[1024];
+        private long[] balances = new long[1024];
+        private int users;
+        private int accounts;
+        private int lines;
+        private String error;
+        private int errorLine;
+
+        private Chunk(MappedByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        static Chunk parse(FileChannel channel, long from, long to) {
+            try {
+                Chunk chunk = new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from));
+                chunk.parse();
+                return chunk;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't map import file", e);
+            }
+        }
+
+        private void parse() {
+            int limit = bytes.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && bytes.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                lines++;
+                int contentEnd = lineEnd > lineStart && bytes.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                if (!parseLine(lineStart, contentEnd)) {
+                    errorLine = lines;
+                    return;
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        // false with error set if the line is invalid.
+        private boolean parseLine(int from, int to) {
+            int loginEnd = indexOfComma(from, to);
+            String login = decode(from, loginEnd).trim();
+            if (login.isEmpty()) {
+                if (loginEnd == to) {
+                    return true;
+                }
+                error = "login must not be blank";
+                return false;
+            }
+            // Undecodable bytes come back as 3-byte replacement characters, so only the re-encoded login is exact.
+            if (loginEnd - from > LedgerJournal.MAX_LOGIN_BYTES / 3
+                    && login.getBytes(StandardCharsets.UTF_8).length > LedgerJournal.MAX_LOGIN_BYTES) {
+                error = "login is too long";
+                return false;
+            }
+            int firstBalance = accounts;
+            for (int fieldStart = loginEnd + 1; fieldStart <= to; ) {
+                int fieldEnd = indexOfComma(fieldStart, to);
+                long balance = parseAmount(fieldStart, fieldEnd);
+                if (balance < 0) {
+                    error = "balance must be a whole number >= 0: " + decode(fieldStart, fieldEnd).trim();
+                    return false;
+                }
+                if (accounts == balances.length) {
+                    balances = Arrays.copyOf(balances, accounts * 2);
+                }
+                balances[accounts++] = balance;
+                fieldStart = fieldEnd + 1;
+            }
+            if (users == logins.length) {
+                logins = Arrays.copyOf(logins, users * 2);
+                normalizedLogins = Arrays.copyOf(normalizedLogins, users * 2);
+                lineNumbers = Arrays.copyOf(lineNumbers, users * 2);
+                accountCounts = Arrays.copyOf(accountCounts, users * 2);
+            }
+            logins[users] = login;
+            normalizedLogins[users] = LoginIndex.normalize(login);
+            lineNumbers[users] = lines;
+            accountCounts[users] = accounts - firstBalance;
+            users++;
+            return true;
+        }
+
+        private int indexOfComma(int from, int to) {
+            int position = from;
+            while (position < to && bytes.get(position) != ',') {
+                position++;
+            }
+            return position;
+        }
+
+        // -1 unless the field is digits, optionally surrounded by spaces, that fit in a long.
+        private long parseAmount(int from, int to) {
+            while (from < to && bytes.get(from) == ' ') {
+                from++;
+            }
+            while (to > from && bytes.get(to - 1) == ' ') {
+                to--;
+            }
+            if (from == to) {
+                return -1;
+            }
+            long amount = 0;
+            for (int position = from; position < to; position++) {
+                int digit = bytes.get(position) - '0';
+                if (digit < 0 || digit > 9 || amount > (Long.MAX_VALUE - digit) / 10) {
+                    return -1;
+                }
+                amount = amount * 10 + digit;
+            }
+            return amount;
+        }
+
+        private String decode(int from, int to) {
+            int length = to - from;
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            bytes.get(from, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
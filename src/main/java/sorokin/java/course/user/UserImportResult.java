@@ -0,0 +1,5 @@
+package sorokin.java.course.user;
+
+// Users firstUserId .. firstUserId + users - 1 were created; firstUserId is 0 if the file had no users.
+public record UserImportResult(int users, int accounts, int firstUserId, long parseNanos, long commitNanos) {
+}
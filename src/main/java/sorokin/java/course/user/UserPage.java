@@ -0,0 +1,27 @@
+package sorokin.java.course.user;
+
+import java.util.List;
+
+// One page of users in id order. nextUserId is the cursor to pass for the following page, 0 after the last one.
+public class UserPage {
+
+    private final List<User> users;
+    private final int nextUserId;
+
+    public UserPage(List<User> users, int nextUserId) {
+        this.users = users;
+        this.nextUserId = nextUserId;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    public int getNextUserId() {
+        return nextUserId;
+    }
+
+    public boolean hasNext() {
+        return nextUserId != 0;
+    }
+}
@@ -2,39 +2,121 @@ package sorokin.java.course.user;
 
 import org.springframework.stereotype.Component;
 import sorokin.java.course.account.AccountService;
+import sorokin.java.course.journal.LedgerGroup;
+import sorokin.java.course.journal.LedgerImage;
+import sorokin.java.course.journal.LedgerJournal;
 import sorokin.java.course.user.User;
 
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Component
 public class UserService {
 
-    private int idCounter;
+    private static final int STREAM_PAGE_SIZE = 1024;
+
+    private volatile int idCounter;
     private final Map<Integer, User> userMap;
-    private final Set<String> takenLogins;
+    private final LoginIndex loginIndex;
     private final AccountService accountService;
+    private final LedgerJournal ledgerJournal;
 
-    public UserService(AccountService accountService) {
+    public UserService(AccountService accountService, LedgerJournal ledgerJournal) {
         this.idCounter = 0;
-        this.userMap = new HashMap<>();
-        this.takenLogins = new HashSet<>();
+        this.userMap = new ConcurrentHashMap<>();
+        this.loginIndex = new LoginIndex(userId -> userMap.get(userId).getLogin());
         this.accountService = accountService;
+        this.ledgerJournal = ledgerJournal;
     }
 
-    public User createUser(String login) {
-        String normalizedLogin = validateLogin(login);
-        if (takenLogins.contains(normalizedLogin)) {
-            throw new IllegalArgumentException("User already exists with login=%s".formatted(normalizedLogin));
+    // Serialized so that id assignment, the login check and the journal record stay consistent
+    // when users are created from concurrent server connections. Logins are unique ignoring case;
+    // the user keeps the login as entered.
+    public synchronized User createUser(String login) {
+        String trimmedLogin = validateLogin(login);
+        String normalizedLogin = LoginIndex.normalize(trimmedLogin);
+        if (loginIndex.get(normalizedLogin) != 0) {
+            throw new IllegalArgumentException("User already exists with login=%s".formatted(trimmedLogin));
         }
 
-        idCounter++;
-        var user = new User(idCounter, normalizedLogin, new ArrayList<>());
-        var defaultAccount = accountService.createAccount(user);
-        user.getAccountList().add(defaultAccount);
+        int userId = idCounter + 1;
+        // Accounts live in AccountService; users are stored without them and get
+        // their account list attached whenever they are read.
+        var user = new User(userId, trimmedLogin, List.of());
+        // Everything is checked by now; the user is journaled in one record with its first account.
+        LedgerGroup records = ledgerJournal.newGroup();
+        records.userCreated(userId, trimmedLogin);
+        accountService.createFirstAccount(user, records);
 
-        userMap.put(idCounter, user);
-        takenLogins.add(normalizedLogin);
-        return user;
+        idCounter = userId;
+        userMap.put(userId, user);
+        loginIndex.putIfAbsent(normalizedLogin, user.getId());
+        return withAccounts(user);
+    }
+
+    // Creates every user of an import file (see UserImportFile) with its accounts, or none of them if a line
+    // is invalid or a login is taken. Parsing and the check for repeated logins within the file run in
+    // parallel without the monitor. The commit holds it like createUser: user ids are one block, the
+    // users and logins go into the maps in bulk, each sized once, and the user count moves last, so
+    // snapshots and user listings see the whole import or nothing of it. Users and accounts are one
+    // journal record, written before memory changes: if writing it fails, the import fails with nothing
+    // applied, and a crash that tears it drops the whole import on replay.
+    public UserImportResult importUsers(Path file) {
+        long startedAt = System.nanoTime();
+        UserImportFile importFile = UserImportFile.read(file);
+        importFile.checkUniqueLogins();
+        long parsedAt = System.nanoTime();
+        int count = importFile.size();
+        if (count == 0) {
+            return new UserImportResult(0, 0, 0, parsedAt - startedAt, 0);
+        }
+        String[] logins = importFile.getLogins();
+        String[] normalizedLogins = importFile.getNormalizedLogins();
+        int firstUserId;
+        synchronized (this) {
+            // Lookups take no lock, so the logins are checked in parallel while the monitor keeps new ones out.
+            int taken = IntStream.range(0, count).parallel()
+                    .filter(user -> loginIndex.get(normalizedLogins[user]) != 0)
+                    .findFirst()
+                    .orElse(-1);
+            if (taken >= 0) {
+                throw new IllegalArgumentException("import file line %d: User already exists with login=%s"
+                        .formatted(importFile.getLineNumber(taken), logins[taken]));
+            }
+            if (count > Integer.MAX_VALUE - idCounter) {
+                throw new IllegalArgumentException("Too many users to import: %d".formatted(count));
+            }
+            accountService.checkImport(importFile.getAccountCounts(), importFile.getBalances());
+            firstUserId = idCounter + 1;
+            LedgerGroup records = ledgerJournal.newGroup();
+            for (int user = 0; user < count; user++) {
+                records.userCreated(firstUserId + user, logins[user]);
+            }
+            accountService.importAccounts(firstUserId, importFile.getAccountCounts(), importFile.getBalances(), records);
+
+            Map<Integer, User> users = new HashMap<>(count * 4 / 3 + 1);
+            for (int user = 0; user < count; user++) {
+                users.put(firstUserId + user, new User(firstUserId + user, logins[user], List.of()));
+            }
+            // ConcurrentHashMap.putAll resizes once for the whole map.
+            userMap.putAll(users);
+            loginIndex.putAll(normalizedLogins, firstUserId);
+            idCounter = firstUserId + count - 1;
+        }
+        int accounts = Arrays.stream(importFile.getAccountCounts()).map(accountCount -> Math.max(accountCount, 1)).sum();
+        return new UserImportResult(count, accounts, firstUserId, parsedAt - startedAt, System.nanoTime() - parsedAt);
+    }
+
+    // Ignores case and surrounding whitespace; takes no lock.
+    public Optional<User> findUserByLogin(String login) {
+        if (login == null || login.isBlank()) {
+            throw new IllegalArgumentException("login must not be blank");
+        }
+        int userId = loginIndex.get(LoginIndex.normalize(login));
+        return userId == 0 ? Optional.empty() : Optional.of(withAccounts(userMap.get(userId)));
     }
 
     public User findUserById(Integer id) {
@@ -45,11 +127,67 @@ public class UserService {
         if (user == null) {
             throw new IllegalArgumentException("No such user with id=%s".formatted(id));
         }
-        return user;
+        return withAccounts(user);
+    }
+
+    // Live page starting at fromUserId; every user is read as by findUserById.
+    public UserPage findUsers(int fromUserId, int pageSize) {
+        if (fromUserId <= 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("user id and page size must be > 0");
+        }
+        int maxUserId = idCounter;
+        List<User> users = new ArrayList<>(Math.min(pageSize, Math.max(maxUserId - fromUserId + 1, 0)));
+        int userId = fromUserId;
+        for (; userId <= maxUserId && users.size() < pageSize; userId++) {
+            var user = userMap.get(userId);
+            if (user != null) {
+                users.add(withAccounts(user));
+            }
+        }
+        return new UserPage(Collections.unmodifiableList(users), userId <= maxUserId ? userId : 0);
+    }
+
+    // All users, read page by page through findUsers, so only one page is held at a time. Each user is
+    // read live, as by findUserById; snapshot() is the consistent, but O(accounts), alternative.
+    public Stream<User> streamUsers() {
+        return Stream.iterate(findUsers(1, STREAM_PAGE_SIZE), Objects::nonNull,
+                        page -> page.hasNext() ? findUsers(page.getNextUserId(), STREAM_PAGE_SIZE) : null)
+                .flatMap(page -> page.getUsers().stream());
+    }
+
+    public UserSnapshot snapshot() {
+        var accounts = accountService.snapshot();
+        int maxUserId;
+        // Every user owning an account in the snapshot was fully created by the time we get the monitor.
+        synchronized (this) {
+            maxUserId = idCounter;
+        }
+        return new UserSnapshot(accounts, userMap, maxUserId);
+    }
+
+    public void restore(LedgerImage image) {
+        if (!userMap.isEmpty()) {
+            throw new IllegalStateException("Can't restore users into a non-empty service");
+        }
+        Map<Integer, User> restoredUsers = new HashMap<>(image.getMaxUserId() * 4 / 3 + 1);
+        for (int userId = 1; userId <= image.getMaxUserId(); userId++) {
+            String login = image.getLogin(userId);
+            if (login != null) {
+                restoredUsers.put(userId, new User(userId, login, List.of()));
+            }
+        }
+        userMap.putAll(restoredUsers);
+        // Logins used to be unique with case; where two of them now clash, the older user keeps the login.
+        for (int userId = 1; userId <= image.getMaxUserId(); userId++) {
+            if (restoredUsers.containsKey(userId)) {
+                loginIndex.putIfAbsent(LoginIndex.normalize(restoredUsers.get(userId).getLogin()), userId);
+            }
+        }
+        idCounter = image.getMaxUserId();
     }
 
-    public List<User> findAll() {
-        return userMap.values().stream().toList();
+    private User withAccounts(User user) {
+        return new User(user.getId(), user.getLogin(), accountService.getUserAccounts(user.getId()));
     }
 
     private String validateLogin(String login) {
@@ -0,0 +1,52 @@
+package sorokin.java.course.user;
+
+import sorokin.java.course.account.AccountSnapshot;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Users and their accounts as of one AccountSnapshot. Users are never changed or removed once
+// created, so they are looked up in the live map; a user created after the snapshot has no
+// accounts in it and is left out.
+public class UserSnapshot {
+
+    private final AccountSnapshot accounts;
+    private final Map<Integer, User> users;
+    private final int maxUserId;
+
+    UserSnapshot(AccountSnapshot accounts, Map<Integer, User> users, int maxUserId) {
+        this.accounts = accounts;
+        this.users = users;
+        this.maxUserId = maxUserId;
+    }
+
+    public long getVersion() {
+        return accounts.getVersion();
+    }
+
+    public AccountSnapshot getAccounts() {
+        return accounts;
+    }
+
+    // Lazy, in user id order: one user with its detached accounts is built at a time.
+    public Stream<User> stream() {
+        return stream(1);
+    }
+
+    public Stream<User> stream(int fromUserId) {
+        return IntStream.rangeClosed(Math.max(fromUserId, 1), maxUserId)
+                .mapToObj(this::findUser)
+                .filter(Objects::nonNull);
+    }
+
+    private User findUser(int userId) {
+        User user = users.get(userId);
+        if (user == null) {
+            return null;
+        }
+        var userAccounts = accounts.getUserAccounts(userId);
+        return userAccounts.isEmpty() ? null : new User(userId, user.getLogin(), userAccounts);
+    }
+}
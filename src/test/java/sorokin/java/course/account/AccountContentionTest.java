@@ -0,0 +1,127 @@
+package sorokin.java.course.account;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.user.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Many threads deposit to, withdraw from and transfer between a few accounts, mostly the first one.
+// Every completed operation is counted per account, so each final balance is known exactly; a
+// watcher checks meanwhile that no balance is ever seen below zero.
+class AccountContentionTest {
+
+    private static final int ACCOUNTS = 4;
+    private static final long INITIAL_AMOUNT = 500;
+    private static final int THREADS = 8;
+    private static final int OPS_PER_THREAD = 50_000;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"object", "primitive", "object-hot"})
+    void balancesAddUpAndNeverGoNegative(String store) throws InterruptedException {
+        AccountService accountService = accountService(switch (store) {
+            case "object" -> new ObjectAccountStore();
+            case "primitive" -> new PrimitiveAccountStore();
+            default -> new ObjectAccountStore(new HotAccounts(new int[]{1}, 8));
+        });
+        var user = new User(1, "merchant", List.of());
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountService.createAccount(user);
+        }
+        var changes = new AtomicLongArray(ACCOUNTS + 1);
+        var start = new CountDownLatch(1);
+        var stop = new AtomicBoolean();
+        var negative = new AtomicBoolean();
+
+        Thread watcher = Thread.ofPlatform().start(() -> {
+            while (!stop.get()) {
+                for (int accountId = 1; accountId <= ACCOUNTS; accountId++) {
+                    if (accountService.findAccountById(accountId).orElseThrow().getMoneyAmount() < 0) {
+                        negative.set(true);
+                    }
+                }
+            }
+        });
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                awaitQuietly(start);
+                var random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    // Half of all operations hit account 1.
+                    int accountId = random.nextBoolean() ? 1 : random.nextInt(1, ACCOUNTS + 1);
+                    int amount = random.nextInt(1, 100);
+                    switch (random.nextInt(3)) {
+                        case 0 -> {
+                            accountService.deposit(accountId, amount);
+                            changes.addAndGet(accountId, amount);
+                        }
+                        case 1 -> {
+                            try {
+                                accountService.withdraw(accountId, amount);
+                                changes.addAndGet(accountId, -amount);
+                            } catch (IllegalArgumentException insufficientFunds) {
+                                // expected when the balance runs low
+                            }
+                        }
+                        default -> {
+                            int toAccountId = accountId % ACCOUNTS + 1;
+                            if (accountService.tryTransfer(accountId, toAccountId, amount) == TransferStatus.COMPLETED) {
+                                changes.addAndGet(accountId, -amount);
+                                changes.addAndGet(toAccountId, amount);
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        stop.set(true);
+        watcher.join();
+
+        long total = 0;
+        for (int accountId = 1; accountId <= ACCOUNTS; accountId++) {
+            long balance = accountService.findAccountById(accountId).orElseThrow().getMoneyAmount();
+            assertEquals(INITIAL_AMOUNT + changes.get(accountId), balance, "account " + accountId);
+            total += balance;
+        }
+        long expectedTotal = ACCOUNTS * INITIAL_AMOUNT;
+        for (int accountId = 1; accountId <= ACCOUNTS; accountId++) {
+            expectedTotal += changes.get(accountId);
+        }
+        assertEquals(expectedTotal, total);
+        assertEquals(expectedTotal, accountService.snapshot().getTotalBalance());
+        assertFalse(negative.get(), "a balance was seen below zero");
+    }
+
+    private static AccountService accountService(AccountStore store) {
+        var properties = new AccountProperties(INITIAL_AMOUNT, 0, 0, 0);
+        var locks = new AccountLocks(64);
+        var totals = new BankTotals();
+        return new AccountService(properties, store, locks,
+                new LockingAccountEngine(store, locks, LedgerJournal.disabled(), AccountHistory.disabled(), totals, properties),
+                LedgerJournal.disabled(), AccountHistory.disabled(), new IdempotencyCache(1024, 600), totals, new BankMetrics(8));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package sorokin.java.course.account;
+
+import org.junit.jupiter.api.Test;
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.user.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class AccountSnapshotsTest {
+
+    @Test
+    void onlyWrittenPagesAreCopied() {
+        AccountService accountService = accountService(500);
+        openAccounts(accountService, 2 * AccountSnapshot.PAGE_SIZE + 10);
+        int accountInSecondPage = AccountSnapshot.PAGE_SIZE + 1;
+
+        AccountSnapshot first = accountService.snapshot();
+        accountService.deposit(accountInSecondPage, 10);
+        AccountSnapshot second = accountService.snapshot();
+        AccountSnapshot third = accountService.snapshot();
+
+        assertEquals(500, first.getBalance(accountInSecondPage));
+        assertEquals(510, second.getBalance(accountInSecondPage));
+        assertSame(first.getPages()[0], second.getPages()[0]);
+        assertNotSame(first.getPages()[1], second.getPages()[1]);
+        assertSame(first.getPages()[2], second.getPages()[2]);
+        for (int page = 0; page < second.getPages().length; page++) {
+            assertSame(second.getPages()[page], third.getPages()[page]);
+        }
+    }
+
+    @Test
+    void snapshotsTakenDuringTransfersAddUp() throws InterruptedException {
+        int accounts = 3 * AccountSnapshot.PAGE_SIZE;
+        AccountService accountService = accountService(100);
+        openAccounts(accountService, accounts);
+        var stop = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            writers.add(Thread.ofPlatform().start(() -> {
+                var random = ThreadLocalRandom.current();
+                while (!stop.get()) {
+                    accountService.tryTransfer(random.nextInt(1, accounts + 1), random.nextInt(1, accounts + 1), random.nextInt(1, 50));
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < 50; i++) {
+                assertEquals(100L * accounts, accountService.snapshot().getTotalBalance(), "snapshot " + i);
+            }
+        } finally {
+            stop.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+    }
+
+    private static AccountService accountService(long defaultAmount) {
+        var properties = new AccountProperties(defaultAmount, 0, 0, 0);
+        var store = new PrimitiveAccountStore();
+        var locks = new AccountLocks(64);
+        var totals = new BankTotals();
+        return new AccountService(properties, store, locks,
+                new LockingAccountEngine(store, locks, LedgerJournal.disabled(), AccountHistory.disabled(), totals, properties),
+                LedgerJournal.disabled(), AccountHistory.disabled(), new IdempotencyCache(1024, 600), totals, new BankMetrics(8));
+    }
+
+    private static void openAccounts(AccountService accountService, int count) {
+        var user = new User(1, "reporting", List.of());
+        for (int i = 0; i < count; i++) {
+            accountService.createAccount(user);
+        }
+    }
+}
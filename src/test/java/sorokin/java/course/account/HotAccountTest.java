@@ -0,0 +1,70 @@
+package sorokin.java.course.account;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HotAccountTest {
+
+    private static final int SLOTS = 4;
+
+    @Test
+    void debitGathersFromOtherSlots() throws InterruptedException {
+        var account = new HotAccount(1, 1, 30, SLOTS);
+        // Credit 100 from a thread whose home slot is neither slot 0 nor this thread's.
+        int ownSlot = (int) Thread.currentThread().threadId() & (SLOTS - 1);
+        while (true) {
+            var credited = new AtomicLong();
+            Thread thread = Thread.ofPlatform().start(() -> {
+                int slot = (int) Thread.currentThread().threadId() & (SLOTS - 1);
+                if (slot != ownSlot && slot != 0) {
+                    credited.set(account.creditAndGet(100));
+                }
+            });
+            thread.join();
+            if (credited.get() != 0) {
+                break;
+            }
+        }
+        assertEquals(130, account.getMoneyAmount());
+
+        assertEquals(10, account.debitAndGet(120));
+        assertEquals(Account.INSUFFICIENT_FUNDS, account.debitAndGet(11));
+        assertEquals(10, account.getMoneyAmount());
+        assertEquals(10, account.close());
+        assertEquals(Account.CLOSED, account.creditAndGet(1));
+        assertEquals(Account.CLOSED, account.debitAndGet(1));
+    }
+
+    @Test
+    void concurrentCreditsDebitsAndCloseLoseNothing() throws InterruptedException {
+        var account = new HotAccount(1, 1, 1_000, SLOTS);
+        var credited = new AtomicLong();
+        var debited = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            boolean debiting = t % 2 == 0;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    long result = debiting ? account.debitAndGet(3) : account.creditAndGet(2);
+                    if (result == Account.CLOSED) {
+                        return;
+                    }
+                    if (result != Account.INSUFFICIENT_FUNDS) {
+                        (debiting ? debited : credited).addAndGet(debiting ? 3 : 2);
+                    }
+                }
+            }));
+        }
+        Thread.sleep(50);
+        long swept = account.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1_000 + credited.get() - debited.get(), swept);
+    }
+}
@@ -0,0 +1,62 @@
+package sorokin.java.course.account;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyCacheTest {
+
+    // 8 keys per stripe over a 32-slot index: probe runs are common and every new key drops one.
+    private static final int MAX_ENTRIES = 64 * 8;
+
+    @Test
+    void repeatedKeyReturnsFirstOutcome() {
+        var cache = new IdempotencyCache(MAX_ENTRIES, 600);
+        var runs = new AtomicInteger();
+
+        assertEquals(1, (int) cache.execute("key", 42, runs::incrementAndGet));
+        assertEquals(1, (int) cache.execute("key", 42, runs::incrementAndGet));
+        assertEquals(1, runs.get());
+        assertThrows(IllegalArgumentException.class, () -> cache.execute("key", 43, runs::incrementAndGet));
+    }
+
+    @Test
+    void rejectionIsRememberedButOtherFailuresRunAgain() {
+        var cache = new IdempotencyCache(MAX_ENTRIES, 600);
+        var runs = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> cache.execute("rejected", 1, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("Insufficient funds");
+        }));
+        assertThrows(IllegalStateException.class, () -> cache.execute("rejected", 1, runs::incrementAndGet));
+        assertEquals(1, runs.get());
+
+        assertThrows(UnsupportedOperationException.class, () -> cache.execute("failed", 1, () -> {
+            throw new UnsupportedOperationException();
+        }));
+        assertEquals(7, (int) cache.execute("failed", 1, () -> 7));
+    }
+
+    // Every insert past the capacity drops the oldest key of its stripe and shifts its probe run back.
+    // A shift that moved an entry out of reach of its home slot would lose one of the newest keys.
+    @Test
+    void droppingOldKeysKeepsNewerOnesFindable() {
+        var cache = new IdempotencyCache(MAX_ENTRIES, 600);
+        int keys = 50_000;
+        for (int key = 0; key < keys; key++) {
+            int value = key;
+            assertEquals(value, (int) cache.execute("key-" + key, key, () -> value));
+            // The newest 8 keys are among the newest 8 of their stripes, so none of them can be dropped yet.
+            for (int recent = Math.max(0, key - 7); recent <= key; recent++) {
+                int expected = recent;
+                assertEquals(expected, (int) cache.execute("key-" + recent, recent, () -> -1), "key-" + recent);
+            }
+        }
+        assertEquals(MAX_ENTRIES, cache.size());
+        assertEquals(-1, (int) cache.execute("key-0", 0, () -> -1));
+    }
+}
@@ -0,0 +1,158 @@
+package sorokin.java.course.account;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.journal.FsyncPolicy;
+import sorokin.java.course.journal.LedgerImage;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.journal.MappedLedgerJournal;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.user.User;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedAccountEngineTest {
+
+    private static final int ACCOUNTS = 2_000;
+    private static final long INITIAL_AMOUNT = 1_000;
+
+    // Closing the engine while transfers cross shards and accounts get closed must neither lose the credits
+    // and refunds handed between shards nor leave a caller waiting.
+    @Test
+    void closeWhileTransferringKeepsAllMoney() throws InterruptedException {
+        for (int round = 0; round < 5; round++) {
+            var store = new ObjectAccountStore();
+            var totals = new BankTotals();
+            var engine = new ShardedAccountEngine(store, LedgerJournal.disabled(), AccountHistory.disabled(), totals,
+                    new AccountProperties(INITIAL_AMOUNT, 0, 0, 0), 4);
+            AccountService accountService = accountService(engine, store, totals);
+            openAccounts(accountService, ACCOUNTS);
+            var stop = new AtomicBoolean();
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                writers.add(Thread.ofPlatform().start(() -> {
+                    var random = ThreadLocalRandom.current();
+                    for (int i = 0; !stop.get(); i++) {
+                        try {
+                            if (i % 500 == 0) {
+                                accountService.closeAccount(random.nextInt(1, ACCOUNTS + 1));
+                            }
+                            accountService.tryTransfer(random.nextInt(1, ACCOUNTS + 1), random.nextInt(1, ACCOUNTS + 1), 5);
+                        } catch (IllegalArgumentException | IllegalStateException e) {
+                            if (e.getMessage().contains("engine is closed")) {
+                                return;
+                            }
+                        }
+                    }
+                }));
+            }
+            Thread.sleep(100);
+            engine.close();
+            stop.set(true);
+            for (Thread writer : writers) {
+                writer.join(10_000);
+                assertFalse(writer.isAlive(), "a writer is stuck after close");
+            }
+            assertEquals(ACCOUNTS * INITIAL_AMOUNT, accountService.snapshot().getTotalBalance());
+            assertEquals(ACCOUNTS * INITIAL_AMOUNT, totals.getTotalBalance());
+        }
+    }
+
+    @Test
+    void submitAfterCloseFails() {
+        var store = new ObjectAccountStore();
+        var totals = new BankTotals();
+        var engine = new ShardedAccountEngine(store, LedgerJournal.disabled(), AccountHistory.disabled(), totals,
+                new AccountProperties(INITIAL_AMOUNT, 0, 0, 0), 2);
+        AccountService accountService = accountService(engine, store, totals);
+        openAccounts(accountService, 2);
+        engine.close();
+
+        assertThrows(IllegalStateException.class, () -> accountService.deposit(1, 10));
+        assertEquals(INITIAL_AMOUNT, accountService.findAccountById(1).orElseThrow().getMoneyAmount());
+    }
+
+    @Test
+    void closedAccountsAreForgottenOnceNoRefundCanFollow() {
+        var store = new ObjectAccountStore();
+        var totals = new BankTotals();
+        try (var engine = new ShardedAccountEngine(store, LedgerJournal.disabled(), AccountHistory.disabled(), totals,
+                new AccountProperties(INITIAL_AMOUNT, 0, 0, 0), 2)) {
+            AccountService accountService = accountService(engine, store, totals);
+            openAccounts(accountService, 400);
+            for (int accountId = 1; accountId <= 400; accountId += 4) {
+                accountService.closeAccount(accountId);
+                accountService.transfer(accountId + 1, accountId + 2, 1);
+            }
+            assertTrue(engine.getClosedAccountsTracked() <= 2, "tracked " + engine.getClosedAccountsTracked());
+        }
+    }
+
+    // Async batches reach the shards together and each shard journals what it drains as one batch;
+    // the futures complete only after that, so everything they report is in the journal.
+    @Test
+    void asyncOperationsOnShardsAreJournaled(@TempDir Path directory) {
+        var store = new ObjectAccountStore();
+        var totals = new BankTotals();
+        int accounts = 200;
+        try (var journal = new MappedLedgerJournal(directory, 1 << 20, FsyncPolicy.PER_OP, 0, 0)) {
+            try (var engine = new ShardedAccountEngine(store, journal, AccountHistory.disabled(), totals,
+                    new AccountProperties(INITIAL_AMOUNT, 0, 0, 0), 4)) {
+                AccountService accountService = accountService(engine, store, totals, journal);
+                openAccounts(accountService, accounts);
+                try (var asyncAccountService = new AsyncAccountService(accountService, new BankMetrics(8), 1024, 64)) {
+                    var random = ThreadLocalRandom.current();
+                    List<CompletableFuture<TransferStatus>> futures = new ArrayList<>();
+                    for (int i = 0; i < 5_000; i++) {
+                        int accountId = random.nextInt(1, accounts + 1);
+                        futures.add(switch (i % 3) {
+                            case 0 -> asyncAccountService.depositAsync(accountId, 7);
+                            case 1 -> asyncAccountService.withdrawAsync(accountId, 300);
+                            default -> asyncAccountService.transferAsync(accountId, random.nextInt(1, accounts + 1), 250);
+                        });
+                    }
+                    futures.forEach(CompletableFuture::join);
+                }
+            }
+        }
+        var image = new LedgerImage();
+        try (var journal = new MappedLedgerJournal(directory, 1 << 20, FsyncPolicy.PER_OP, 0, 0)) {
+            journal.replay(image, 0, Integer.MAX_VALUE);
+        }
+        for (int accountId = 1; accountId <= accounts; accountId++) {
+            assertEquals(store.get(accountId).getMoneyAmount(), image.getBalance(accountId), "account " + accountId);
+        }
+    }
+
+    private static AccountService accountService(ShardedAccountEngine engine, AccountStore store, BankTotals totals) {
+        return accountService(engine, store, totals, LedgerJournal.disabled());
+    }
+
+    private static AccountService accountService(ShardedAccountEngine engine, AccountStore store, BankTotals totals,
+                                                 LedgerJournal journal) {
+        return new AccountService(new AccountProperties(INITIAL_AMOUNT, 0, 0, 0), store, new AccountLocks(64), engine,
+                journal, AccountHistory.disabled(), new IdempotencyCache(1024, 600), totals, new BankMetrics(8));
+    }
+
+    // Four accounts per user, so closing one always has another account of the user to move its money into.
+    private static void openAccounts(AccountService accountService, int count) {
+        User user = null;
+        for (int i = 0; i < count; i++) {
+            if (i % 4 == 0) {
+                user = new User(i / 4 + 1, "user" + (i / 4 + 1), List.of());
+            }
+            accountService.createAccount(user);
+        }
+    }
+}
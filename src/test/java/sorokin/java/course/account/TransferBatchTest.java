@@ -0,0 +1,147 @@
+package sorokin.java.course.account;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sorokin.java.course.history.AccountHistory;
+import sorokin.java.course.journal.FsyncPolicy;
+import sorokin.java.course.journal.LedgerImage;
+import sorokin.java.course.journal.LedgerJournal;
+import sorokin.java.course.journal.MappedLedgerJournal;
+import sorokin.java.course.metrics.BankMetrics;
+import sorokin.java.course.user.User;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransferBatchTest {
+
+    @Test
+    void cycleIsNettedWithinOneGroup() {
+        AccountService accountService = accountService();
+        openAccounts(accountService, 100, 0, 0, 10, 0);
+
+        // 1 -> 2 -> 3 -> 1 only works in order, on the balances the earlier transfers left; 4 -> 5 is on its own.
+        TransferBatchResult result = accountService.transferBatch(List.of(
+                new TransferRequest(1, 2, 100),
+                new TransferRequest(2, 3, 100),
+                new TransferRequest(4, 5, 10),
+                new TransferRequest(3, 1, 40)
+        ), TransferBatchMode.BEST_EFFORT);
+
+        assertEquals(4, result.getCompletedCount());
+        assertBalances(accountService, 40, 0, 60, 0, 10);
+    }
+
+    @Test
+    void atomicBatchRollsBackEveryGroup() {
+        AccountService accountService = accountService();
+        openAccounts(accountService, 100, 0, 5, 0);
+
+        TransferBatchResult result = accountService.transferBatch(List.of(
+                new TransferRequest(1, 2, 50),
+                new TransferRequest(3, 4, 10)
+        ), TransferBatchMode.ATOMIC);
+
+        assertEquals(List.of(TransferStatus.ROLLED_BACK, TransferStatus.INSUFFICIENT_FUNDS), result.getStatuses());
+        assertBalances(accountService, 100, 0, 5, 0);
+    }
+
+    // Groups share no accounts, so running them apart must give what running the requests one by one in
+    // order gives; a wrong union would simulate part of a component on balances it doesn't see change.
+    @Test
+    void randomBatchMatchesSequentialTransfers() {
+        var random = new Random(7);
+        int accounts = 64;
+        long[] balances = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            balances[i] = random.nextInt(100);
+        }
+        List<TransferRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int from = random.nextInt(1, accounts + 1);
+            int to = random.nextInt(1, accounts + 1);
+            requests.add(new TransferRequest(from, to == from ? from % accounts + 1 : to, random.nextInt(1, 60)));
+        }
+        AccountService accountService = accountService();
+        openAccounts(accountService, balances);
+
+        TransferBatchResult result = accountService.transferBatch(requests, TransferBatchMode.BEST_EFFORT);
+
+        long[] expected = balances.clone();
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            boolean possible = expected[request.fromAccountId() - 1] >= request.amount();
+            if (possible) {
+                expected[request.fromAccountId() - 1] -= request.amount();
+                expected[request.toAccountId() - 1] += request.amount();
+            }
+            assertEquals(possible ? TransferStatus.COMPLETED : TransferStatus.INSUFFICIENT_FUNDS, result.getStatus(i),
+                    "request " + i);
+        }
+        assertBalances(accountService, expected);
+    }
+
+    // Accounts start empty and there is no commission, so the expected balances are plain sums.
+    @Test
+    void journaledBatchReplaysToSameBalances(@TempDir Path directory) {
+        long[] balances;
+        try (var journal = new MappedLedgerJournal(directory, 1 << 20, FsyncPolicy.PER_OP, 0, 0)) {
+            AccountService accountService = accountService(journal);
+            openAccounts(accountService, 100, 0, 30, 0);
+            accountService.transferBatch(List.of(
+                    new TransferRequest(1, 2, 60),
+                    new TransferRequest(2, 3, 50),
+                    new TransferRequest(3, 4, 80),
+                    new TransferRequest(4, 1, 100)
+            ), TransferBatchMode.BEST_EFFORT);
+            balances = new long[4];
+            for (int i = 0; i < balances.length; i++) {
+                balances[i] = accountService.findAccountById(i + 1).orElseThrow().getMoneyAmount();
+            }
+        }
+        var image = new LedgerImage();
+        try (var journal = new MappedLedgerJournal(directory, 1 << 20, FsyncPolicy.PER_OP, 0, 0)) {
+            journal.replay(image, 0, Integer.MAX_VALUE);
+        }
+        for (int i = 0; i < balances.length; i++) {
+            assertEquals(balances[i], image.getBalance(i + 1), "account " + (i + 1));
+        }
+        assertEquals(130, Arrays.stream(balances).sum());
+    }
+
+    private static AccountService accountService() {
+        return accountService(LedgerJournal.disabled());
+    }
+
+    private static AccountService accountService(LedgerJournal journal) {
+        var properties = new AccountProperties(0, 0, 0, 0);
+        var store = new ObjectAccountStore();
+        var locks = new AccountLocks(64);
+        var totals = new BankTotals();
+        return new AccountService(properties, store, locks,
+                new LockingAccountEngine(store, locks, journal, AccountHistory.disabled(), totals, properties),
+                journal, AccountHistory.disabled(), new IdempotencyCache(1024, 600), totals, new BankMetrics(8));
+    }
+
+    // Account i + 1 gets balances[i], all of them owned by one user.
+    private static void openAccounts(AccountService accountService, long... balances) {
+        var user = new User(1, "payroll", List.of());
+        for (long balance : balances) {
+            Account account = accountService.createAccount(user);
+            if (balance > 0) {
+                accountService.deposit(account.getId(), balance);
+            }
+        }
+    }
+
+    private static void assertBalances(AccountService accountService, long... expected) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], accountService.findAccountById(i + 1).orElseThrow().getMoneyAmount(), "account " + (i + 1));
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package sorokin.java.course.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedLedgerJournalTest {
+
+    private static final int SEGMENT_SIZE = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornTailIsDroppedAndOverwritten() throws IOException {
+        try (var journal = open()) {
+            journal.userCreated(1, "alice");
+            journal.accountCreated(1, 1, 100);
+            journal.deposited(1, 20);
+        }
+        // A record whose length made it to disk but whose payload didn't.
+        int end = endOfRecords();
+        writeInts(end, 13, 0xCAFEBABE);
+
+        try (var journal = open()) {
+            LedgerImage image = replay(journal);
+            assertEquals(120, image.getBalance(1));
+            journal.withdrawn(1, 5);
+        }
+        try (var journal = open()) {
+            LedgerImage image = replay(journal);
+            assertEquals(115, image.getBalance(1));
+            assertEquals("alice", image.getLogin(1));
+        }
+    }
+
+    @Test
+    void replayStopsAtRecordWithWrongChecksum() throws IOException {
+        try (var journal = open()) {
+            journal.accountCreated(1, 1, 100);
+            journal.deposited(1, 20);
+            journal.deposited(1, 300);
+        }
+        // Flip a payload byte of the second record: it and everything after it is gone.
+        int second = recordLength(0) + 8;
+        flipByte(second + 8 + 5);
+
+        try (var journal = open()) {
+            assertEquals(100, replay(journal).getBalance(1));
+            journal.deposited(1, 7);
+        }
+        try (var journal = open()) {
+            assertEquals(107, replay(journal).getBalance(1));
+        }
+    }
+
+    @Test
+    void depositJournaledAfterCloseIsNotAppliedTwice() {
+        try (var journal = open()) {
+            journal.userCreated(1, "alice");
+            journal.accountCreated(1, 1, 100);
+            journal.accountCreated(2, 1, 50);
+            // The close moved 130: the deposit of 30 landed before the close swept the account, but its
+            // record was appended after the close record.
+            journal.accountClosed(1, 2, 130);
+            journal.deposited(1, 30);
+        }
+        try (var journal = open()) {
+            LedgerImage image = replay(journal);
+            assertFalse(image.isOpen(1));
+            assertEquals(0, image.getBalance(1));
+            assertTrue(image.isOpen(2));
+            assertEquals(180, image.getBalance(2));
+            assertEquals(2, image.getMaxAccountId());
+        }
+    }
+
+    @Test
+    void replayCrossesSegments() {
+        try (var journal = open()) {
+            journal.accountCreated(1, 1, 0);
+            for (int i = 0; i < 1000; i++) {
+                journal.deposited(1, 1);
+                if (i % 250 == 0) {
+                    journal.sealSegment();
+                }
+            }
+        }
+        try (var journal = open()) {
+            assertEquals(1000, replay(journal).getBalance(1));
+        }
+    }
+
+    @Test
+    void groupIsReplayedWholeOrNotAtAll() throws IOException {
+        try (var journal = open()) {
+            journal.accountCreated(1, 1, 1000);
+            journal.accountCreated(2, 1, 0);
+            LedgerGroup group = journal.newGroup();
+            for (int i = 0; i < 100; i++) {
+                group.transferred(1, 2, 5, 5);
+            }
+            journal.append(group);
+        }
+        try (var journal = open()) {
+            LedgerImage image = replay(journal);
+            assertEquals(500, image.getBalance(1));
+            assertEquals(500, image.getBalance(2));
+        }
+        // A byte near the end of the group: the transfers before it are dropped with it.
+        int group = recordLength(0) + 8 + recordLength(recordLength(0) + 8) + 8;
+        flipByte(group + 8 + recordLength(group) - 3);
+        try (var journal = open()) {
+            LedgerImage image = replay(journal);
+            assertEquals(1000, image.getBalance(1));
+            assertEquals(0, image.getBalance(2));
+        }
+    }
+
+    @Test
+    void groupLargerThanSegmentGetsLargerSegment() {
+        int deposits = SEGMENT_SIZE / 10;
+        try (var journal = open()) {
+            journal.accountCreated(1, 1, 0);
+            LedgerGroup group = journal.newGroup();
+            for (int i = 0; i < deposits; i++) {
+                group.deposited(1, 1);
+            }
+            journal.append(group);
+            journal.deposited(1, 1);
+        }
+        try (var journal = open()) {
+            assertEquals(deposits + 1, replay(journal).getBalance(1));
+            journal.deposited(1, 1);
+        }
+        try (var journal = open()) {
+            assertEquals(deposits + 2, replay(journal).getBalance(1));
+        }
+    }
+
+    private MappedLedgerJournal open() {
+        return new MappedLedgerJournal(directory, SEGMENT_SIZE, FsyncPolicy.PER_OP, 0, 0);
+    }
+
+    private static LedgerImage replay(LedgerJournal journal) {
+        var image = new LedgerImage();
+        journal.replay(image, 0, Integer.MAX_VALUE);
+        return image;
+    }
+
+    private Path firstSegment() {
+        return MappedLedgerJournal.segmentPath(directory, 0);
+    }
+
+    private int recordLength(int position) throws IOException {
+        return readInt(position);
+    }
+
+    private int endOfRecords() throws IOException {
+        int position = 0;
+        for (int length; (length = readInt(position)) != 0; ) {
+            position += 8 + length;
+        }
+        return position;
+    }
+
+    private int readInt(int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(firstSegment(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(buffer, position);
+            return buffer.getInt(0);
+        }
+    }
+
+    private void writeInts(int position, int... values) throws IOException {
+        try (FileChannel channel = FileChannel.open(firstSegment(), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int value : values) {
+                buffer.putInt(value);
+            }
+            channel.write(buffer.flip(), position);
+        }
+    }
+
+    private void flipByte(int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(firstSegment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) ~buffer.get(0));
+            channel.write(buffer.rewind(), position);
+        }
+    }
+}